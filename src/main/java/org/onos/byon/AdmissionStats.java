@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Counters of the admission control of network mutations.
+ */
+public final class AdmissionStats {
+
+    private final long admitted;
+    private final long delayed;
+    private final long throttled;
+    private final long overQuota;
+    private final int queued;
+
+    /**
+     * Creates a new set of admission counters.
+     *
+     * @param admitted mutations admitted
+     * @param delayed admitted mutations that had to wait for their tokens
+     * @param throttled mutations rejected as their tokens did not come in time
+     * @param overQuota mutations rejected as they would exceed a quota
+     * @param queued mutations currently waiting for their tokens
+     */
+    public AdmissionStats(long admitted, long delayed, long throttled, long overQuota, int queued) {
+        this.admitted = admitted;
+        this.delayed = delayed;
+        this.throttled = throttled;
+        this.overQuota = overQuota;
+        this.queued = queued;
+    }
+
+    /**
+     * Returns the number of mutations admitted.
+     *
+     * @return admitted count
+     */
+    public long admitted() {
+        return admitted;
+    }
+
+    /**
+     * Returns the number of admitted mutations that had to wait for their
+     * tokens.
+     *
+     * @return delayed count
+     */
+    public long delayed() {
+        return delayed;
+    }
+
+    /**
+     * Returns the number of mutations rejected by the rate limits.
+     *
+     * @return throttled count
+     */
+    public long throttled() {
+        return throttled;
+    }
+
+    /**
+     * Returns the number of mutations rejected by the quotas.
+     *
+     * @return over quota count
+     */
+    public long overQuota() {
+        return overQuota;
+    }
+
+    /**
+     * Returns the number of mutations currently waiting for their tokens.
+     *
+     * @return queue depth
+     */
+    public int queued() {
+        return queued;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("admitted", admitted)
+                .add("delayed", delayed)
+                .add("throttled", throttled)
+                .add("overQuota", overQuota)
+                .add("queued", queued)
+                .toString();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Counters of a local read cache.
+ */
+public final class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long invalidations;
+
+    /**
+     * Creates a new set of cache counters.
+     *
+     * @param hits reads served from the cache
+     * @param misses reads that had to load from the backing store
+     * @param invalidations cached snapshots discarded because they went stale
+     */
+    public CacheStats(long hits, long misses, long invalidations) {
+        this.hits = hits;
+        this.misses = misses;
+        this.invalidations = invalidations;
+    }
+
+    /**
+     * Returns the number of reads served from the cache.
+     *
+     * @return hit count
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of reads that had to load from the backing store.
+     *
+     * @return miss count
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of cached snapshots discarded because the backing
+     * store changed after they were loaded.
+     *
+     * @return stale snapshot count
+     */
+    public long invalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Returns the fraction of reads served from the cache.
+     *
+     * @return hit ratio; 0 if there were no reads
+     */
+    public double hitRatio() {
+        long reads = hits + misses;
+        return reads == 0 ? 0 : (double) hits / reads;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("hits", hits)
+                .add("misses", misses)
+                .add("invalidations", invalidations)
+                .toString();
+    }
+}
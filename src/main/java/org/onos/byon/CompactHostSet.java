@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.HostId;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of host ids, held as a sorted array of primitive longs.
+ * <p>
+ * Each host id is encoded in a single long, with the MAC address in the
+ * upper 48 bits and the VLAN id in the lower 16 bits, so a set costs 8
+ * bytes per host rather than the host id, MAC address, VLAN id and hash
+ * entry objects of a regular set. Host ids are decoded as they are
+ * iterated, and looked up by binary search.
+ * </p>
+ */
+final class CompactHostSet extends AbstractSet<HostId> {
+
+    private static final CompactHostSet EMPTY = new CompactHostSet(new long[0]);
+
+    private static final int VLAN_BITS = 16;
+    private static final long VLAN_MASK = 0xffffL;
+
+    // sorted, without duplicates
+    private final long[] ids;
+
+    private CompactHostSet(long[] ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Returns the empty set.
+     *
+     * @return empty host set
+     */
+    static CompactHostSet of() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the set of the given encoded host ids.
+     *
+     * @param ids encoded host ids, sorted and without duplicates; not copied
+     * @return host set
+     */
+    static CompactHostSet ofSorted(long[] ids) {
+        return ids.length == 0 ? EMPTY : new CompactHostSet(ids);
+    }
+
+    /**
+     * Returns the set of the given host ids.
+     *
+     * @param hostIds host ids
+     * @return host set
+     */
+    static CompactHostSet copyOf(Collection<HostId> hostIds) {
+        if (hostIds instanceof CompactHostSet) {
+            return (CompactHostSet) hostIds;
+        }
+        long[] ids = hostIds.stream().mapToLong(CompactHostSet::encode).sorted().distinct().toArray();
+        return ofSorted(ids);
+    }
+
+    /**
+     * Encodes a host id into a long.
+     *
+     * @param hostId host id
+     * @return encoded host id
+     */
+    static long encode(HostId hostId) {
+        return hostId.mac().toLong() << VLAN_BITS | hostId.vlanId().toShort() & VLAN_MASK;
+    }
+
+    /**
+     * Decodes a host id from a long.
+     *
+     * @param id encoded host id
+     * @return host id
+     */
+    static HostId decode(long id) {
+        return HostId.hostId(MacAddress.valueOf(id >>> VLAN_BITS),
+                             VlanId.vlanId((short) (id & VLAN_MASK)));
+    }
+
+    /**
+     * Returns the encoded host ids of the set, in order.
+     *
+     * @return array of encoded host ids; must not be modified
+     */
+    long[] encoded() {
+        return ids;
+    }
+
+    /**
+     * Returns the host ids of the set with the given MAC address. These are
+     * adjacent in the set, since the MAC address makes up the upper bits.
+     *
+     * @param mac MAC address
+     * @return host ids with the MAC address, whatever their VLAN id
+     */
+    List<HostId> withMac(MacAddress mac) {
+        long low = mac.toLong() << VLAN_BITS;
+        int index = Arrays.binarySearch(ids, low);
+        List<HostId> hostIds = new ArrayList<>();
+        for (int i = index >= 0 ? index : -index - 1;
+             i < ids.length && ids[i] >>> VLAN_BITS == mac.toLong(); i++) {
+            hostIds.add(decode(ids[i]));
+        }
+        return hostIds;
+    }
+
+    /**
+     * Returns the host ids that come after a cursor, in encoded order.
+     * The cursor need not be in the set.
+     *
+     * @param after cursor; null to start from the first host
+     * @param limit maximum number of host ids on the page
+     * @return page of host ids
+     */
+    Page<HostId> page(HostId after, int limit) {
+        int from = 0;
+        if (after != null) {
+            int index = Arrays.binarySearch(ids, encode(after));
+            from = index >= 0 ? index + 1 : -index - 1;
+        }
+        int to = (int) Math.min((long) from + limit, ids.length);
+        List<HostId> items = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            items.add(decode(ids[i]));
+        }
+        return new Page<>(items, to < ids.length && to > from ? items.get(items.size() - 1) : null);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof HostId && Arrays.binarySearch(ids, encode((HostId) o)) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public Iterator<HostId> iterator() {
+        return new Iterator<HostId>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < ids.length;
+            }
+
+            @Override
+            public HostId next() {
+                if (next >= ids.length) {
+                    throw new NoSuchElementException();
+                }
+                return decode(ids[next++]);
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof CompactHostSet) {
+            return Arrays.equals(ids, ((CompactHostSet) o).ids);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+/**
+ * How the hosts of a network are connected to each other.
+ */
+public enum ConnectivityMode {
+
+    /**
+     * One host to host intent between every pair of hosts; N(N-1)/2 intents.
+     */
+    MESH,
+
+    /**
+     * One host to host intent between the hub and every other host; N-1
+     * intents. The first hub is the host with the lowest host id, and is
+     * kept until it leaves the network; spokes only reach the hub.
+     */
+    HUB_AND_SPOKE,
+
+    /**
+     * One multi-point to single-point intent towards every host, shared by
+     * all the other hosts of the network; N intents.
+     */
+    SHARED_TREE,
+
+    /**
+     * One host to host intent between every pair of hosts that exchanged
+     * traffic, submitted upon their first packet and withdrawn once the
+     * pair stays idle; at most N(N-1)/2 intents.
+     */
+    REACTIVE
+}
@@ -16,15 +16,24 @@
 
 package org.onos.byon;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onlab.util.KryoNamespace;
+import org.onlab.util.Tools;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.net.HostId;
 import org.onosproject.store.AbstractStore;
 import org.onosproject.store.serializers.KryoNamespaces;
@@ -33,142 +42,571 @@ import org.onosproject.store.service.MapEvent;
 import org.onosproject.store.service.MapEventListener;
 import org.onosproject.store.service.Serializer;
 import org.onosproject.store.service.StorageService;
+import org.onosproject.store.service.TransactionContext;
+import org.onosproject.store.service.TransactionalMap;
 import org.onosproject.store.service.Versioned;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.isNullOrEmpty;
 
 /**
  * Network Store implementation backed by consistent map.
+ * <p>
+ * Networks and their connectivity modes are kept in one map, and every
+ * membership of a host in a network is a separate entry of a second map.
+ * A membership change therefore replicates a single small entry, rather
+ * than the whole host set of the network.
+ * </p>
+ * <p>
+ * Both maps are split into shards, each network going to the shard its
+ * name hashes to along with its memberships, so that the writes of
+ * unrelated networks are ordered by different maps and proceed in
+ * parallel. The first node to start fixes the number of shards for the
+ * whole cluster, since networks cannot be found once spread differently.
+ * </p>
+ * <p> The hosts of each network are
+ * tracked locally from the membership map events, so that they can be
+ * read without scanning the membership map. A reverse index from each host
+ * to its networks is kept along with them.
+ * </p>
+ * <p>
+ * Host ids are held as primitive longs, both in the local host sets and in
+ * the serialized membership entries; see {@link CompactHostSet}.
+ * </p>
+ * <p>
+ * Membership entries are only ever changed with putIfAbsent and remove,
+ * so exactly one caller observes each change. A membership added while
+ * its network is being removed is rolled back once the network is found
+ * to be gone.
+ * </p>
+ * <p>
+ * The networks are likewise tracked locally, in a sorted index kept up to
+ * date from the network map events, so that names can be looked up and
+ * paged by prefix without copying the whole inventory.
+ * </p>
+ * <p>
+ * Reads are served from immutable snapshots in a near-cache, which map
+ * events invalidate whenever the networks or the hosts of a network change.
+ * Updates still check the network against the consistent map itself.
+ * </p>
  */
 @Component(immediate = true)
 @Service
 public class DistributedNetworkStore
-        // TODO Lab 6: Extend the AbstractStore class for the store delegate
+        extends AbstractStore<NetworkEvent, NetworkStoreDelegate>
         implements NetworkStore {
 
     private static Logger log = LoggerFactory.getLogger(DistributedNetworkStore.class);
 
-    /*
-     * TODO Lab 5: Get a reference to the storage service
+    private static final String NETWORKS = "networks";
+    private static final String HOSTS = "hosts";
+    private static final String SHARDS = "shards";
+
+    private static final int DEFAULT_NETWORK_SHARDS = 8;
+    private static final int MAX_TRANSACTION_ATTEMPTS = 5;
+
+    private static final Serializer SERIALIZER = Serializer.using(
+            KryoNamespace.newBuilder()
+                    .register(KryoNamespaces.API)
+                    .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID)
+                    .register(ConnectivityMode.class)
+                    .register(new MembershipSerializer(), Membership.class)
+                    .build());
+
+    @Property(name = "networkShards", intValue = DEFAULT_NETWORK_SHARDS,
+            label = "Number of maps the networks are spread over; only used by the first " +
+                    "node to start, and fixed for the cluster from then on")
+    int networkShards = DEFAULT_NETWORK_SHARDS;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected StorageService storageService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService cfgService;
+
+    // shard -> network -> connectivity mode
+    private List<ConsistentMap<String, ConnectivityMode>> networks;
+    // shard -> (network, host) -> membership marker
+    private List<ConsistentMap<Membership, Boolean>> memberships;
+
+    // network -> encoded hosts, as seen in the membership map
+    private final ConcurrentMap<String, LongHashSet> hosts = Maps.newConcurrentMap();
+    // encoded host -> networks of the host, sorted so that the hosts with a
+    // MAC address are adjacent; updated along with the host sets
+    private final ConcurrentNavigableMap<Long, ImmutableSet<String>> hostNetworks =
+            new ConcurrentSkipListMap<>();
+    private final MapEventListener<Membership, Boolean> membershipListener =
+            new InternalMembershipListener();
+
+    // network -> connectivity mode, as seen in the network map, sorted by name
+    private final ConcurrentNavigableMap<String, ConnectivityMode> networkIndex =
+            new ConcurrentSkipListMap<>();
+    // size of the network index, which the skip list does not keep
+    private final AtomicInteger networkCount = new AtomicInteger();
+    // snapshot of all networks and their modes, sorted by name
+    private NearCache<String, ImmutableSortedMap<String, ConnectivityMode>> networkCache;
+    // network -> snapshot of its hosts
+    NearCache<String, CompactHostSet> hostCache;
+    private final MapEventListener<String, ConnectivityMode> networkListener =
+            new InternalNetworkListener();
+
+    @Activate
+    public void activate(ComponentContext context) {
+        cfgService.registerProperties(getClass());
+        Dictionary<?, ?> properties = context != null ? context.getProperties() : new Properties();
+        String shards = Tools.get(properties, "networkShards");
+        try {
+            networkShards = isNullOrEmpty(shards) ? networkShards : Integer.parseInt(shards.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value {} for property networkShards", shards);
+        }
+        networkCache = new NearCache<>();
+        hostCache = new NearCache<>();
+        int count = agreedShardCount(Math.max(networkShards, 1));
+        networks = Lists.newArrayListWithCapacity(count);
+        memberships = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            networks.add(storageService.<String, ConnectivityMode>consistentMapBuilder()
+                                 .withName(shardName("byon-networks", i))
+                                 .withSerializer(SERIALIZER)
+                                 .build());
+            memberships.add(storageService.<Membership, Boolean>consistentMapBuilder()
+                                    .withName(shardName("byon-memberships", i))
+                                    .withSerializer(SERIALIZER)
+                                    .build());
+        }
+
+        for (int i = 0; i < count; i++) {
+            networks.get(i).addListener(networkListener);
+            memberships.get(i).addListener(membershipListener);
+            networks.get(i).asJavaMap().forEach(this::indexNetwork);
+            memberships.get(i).keySet().forEach(this::hostAdded);
+        }
+        log.info("Started with {} network shards", count);
+    }
+
+    @Deactivate
+    public void deactivate() {
+        networks.forEach(shard -> shard.removeListener(networkListener));
+        memberships.forEach(shard -> shard.removeListener(membershipListener));
+        hosts.clear();
+        hostNetworks.clear();
+        networkIndex.clear();
+        networkCount.set(0);
+        cfgService.unregisterProperties(getClass(), false);
+        log.info("Stopped");
+    }
+
+    /**
+     * Returns the number of shards of the cluster, recording the given one
+     * if this node is the first to start. Networks stored before sharding
+     * was introduced are all in the first shard, which keeps its name, so
+     * such a store keeps a single shard.
      *
-     * All you need to do is uncomment the following two lines.
+     * @param configured number of shards configured on this node
+     * @return number of shards to use
      */
-    //@Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
-    //protected StorageService storageService;
+    private int agreedShardCount(int configured) {
+        ConsistentMap<String, Integer> layout = storageService.<String, Integer>consistentMapBuilder()
+                .withName("byon-store-layout")
+                .withSerializer(SERIALIZER)
+                .build();
+        ConsistentMap<String, ConnectivityMode> unsharded =
+                storageService.<String, ConnectivityMode>consistentMapBuilder()
+                        .withName(shardName("byon-networks", 0))
+                        .withSerializer(SERIALIZER)
+                        .build();
+        int proposed = layout.containsKey(SHARDS) || unsharded.isEmpty() ? configured : 1;
+        Versioned<Integer> agreed = layout.putIfAbsent(SHARDS, proposed);
+        if (agreed != null && agreed.value() != configured) {
+            log.warn("Using the {} network shards of the cluster instead of the {} configured",
+                     agreed.value(), configured);
+        }
+        return agreed == null ? proposed : agreed.value();
+    }
 
-    /*
-     * TODO Lab 5: Replace the ConcurrentMap with ConsistentMap
+    /**
+     * Returns the name of a shard of a map. The first shard keeps the name
+     * of the map from before sharding.
+     *
+     * @param name map name
+     * @param shard shard index
+     * @return shard name
      */
-    private ConcurrentMap<String, Set<HostId>> networks;
+    static String shardName(String name, int shard) {
+        return shard == 0 ? name : name + "-" + shard;
+    }
 
-    /*
-     * TODO Lab 6: Create a listener instance of InternalListener
+    /**
+     * Returns the index of the shards of a network and its memberships.
      *
-     * You will first need to implement the class (at the bottom of the file).
+     * @param network network name
+     * @return shard index
      */
+    int shard(String network) {
+        return Math.floorMod(network.hashCode(), networks.size());
+    }
 
-    @Activate
-    public void activate() {
-        /**
-         * TODO Lab 5: Replace the ConcurrentHashMap with ConsistentMap
-         *
-         * You should use storageService.consistentMapBuilder(), and the
-         * serializer: Serializer.using(KryoNamespaces.API)
-         */
-        networks = Maps.newConcurrentMap();
-
-        /*
-         * TODO Lab 6: Add the listener to the networks map
-         *
-         * Use networks.addListener()
-         */
-        log.info("Started");
+    private ConsistentMap<String, ConnectivityMode> networks(String network) {
+        return networks.get(shard(network));
     }
 
-    @Deactivate
-    public void deactivate() {
-        /*
-         * TODO Lab 6: Remove the listener from the networks map
-         *
-         * Use networks.removeListener()
-         */
-        log.info("Stopped");
+    private ConsistentMap<Membership, Boolean> memberships(String network) {
+        return memberships.get(shard(network));
     }
 
     @Override
-    public void putNetwork(String network) {
-        networks.putIfAbsent(network, Sets.<HostId>newHashSet());
+    public void putNetwork(String network, ConnectivityMode mode) {
+        if (networks(network).putIfAbsent(network, mode) == null) {
+            // the map event will do the same, but the caller expects to read its write
+            if (networkIndex.putIfAbsent(network, mode) == null) {
+                networkCount.incrementAndGet();
+            }
+            networkCache.invalidate(NETWORKS);
+        }
     }
 
     @Override
     public void removeNetwork(String network) {
-        networks.remove(network);
+        if (networks(network).remove(network) != null) {
+            unindexNetwork(network);
+            networkCache.invalidate(NETWORKS);
+        }
+        for (HostId hostId : hosts(network)) {
+            removeMembership(new Membership(network, hostId));
+        }
     }
 
     @Override
     public Set<String> getNetworks() {
-        return ImmutableSet.copyOf(networks.keySet());
+        return cachedNetworks().keySet();
+    }
+
+    @Override
+    public NavigableSet<String> getNetworks(String prefix) {
+        NavigableSet<String> names = Collections.unmodifiableNavigableSet(
+                networkIndex.navigableKeySet());
+        if (prefix.isEmpty()) {
+            return names;
+        }
+        // the names starting with the prefix lie between the prefix and the
+        // smallest string above all of them: the prefix without its trailing
+        // max chars, with its last char incremented
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            return names.tailSet(prefix, true);
+        }
+        String upper = prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+        return names.subSet(prefix, true, upper, false);
+    }
+
+    @Override
+    public int getNetworkCount() {
+        return networkCount.get();
+    }
+
+    @Override
+    public ConnectivityMode getConnectivityMode(String network) {
+        return checkNotNull(networkIndex.get(network), "Network %s does not exist", network);
+    }
+
+    @Override
+    public ConnectivityMode findConnectivityMode(String network) {
+        return networkIndex.get(network);
     }
 
     @Override
     public boolean addHost(String network, HostId hostId) {
-        /*
-         * TODO Lab 5: Update the Set to Versioned<Set<HostId>>
-         *
-         * You will also need to extract the value in the if statement.
-         */
-        Set<HostId> existingHosts = checkNotNull(networks.get(network),
-                                                            "Network %s does not exist", network);
-        if (existingHosts.contains(hostId)) {
+        checkNetwork(network);
+        Membership membership = new Membership(network, hostId);
+        if (!addMembership(membership)) {
             return false;
         }
-
-        networks.computeIfPresent(network,
-                                  (k, v) -> {
-                                      Set<HostId> result = Sets.newHashSet(v);
-                                      result.add(hostId);
-                                      return result;
-                                  });
+        confirmNetwork(network, ImmutableSet.of(membership));
         return true;
     }
 
     @Override
-    public void removeHost(String network, HostId hostId) {
-        /*
-         * TODO Lab 5: Update the Set to Versioned<Set<HostId>>
-         */
-        Set<HostId> hosts =
-                networks.computeIfPresent(network,
-                                          (k, v) -> {
-                                              Set<HostId> result = Sets.newHashSet(v);
-                                              result.remove(hostId);
-                                              return result;
-                                          });
-        checkNotNull(hosts, "Network %s does not exist", network);
+    public boolean removeHost(String network, HostId hostId) {
+        checkNetwork(network);
+        return removeMembership(new Membership(network, hostId));
+    }
+
+    @Override
+    public Map<HostId, Boolean> addHosts(String network, Collection<HostId> hostIds) {
+        return updateHosts(network, hostIds, true);
+    }
+
+    @Override
+    public Map<HostId, Boolean> removeHosts(String network, Collection<HostId> hostIds) {
+        return updateHosts(network, hostIds, false);
     }
 
     @Override
     public Set<HostId> getHosts(String network) {
-        /*
-         * TODO Lab 5: Update return value
-         *
-         * ConsistentMap returns a Versioned<V>, so you need to extract the value
-         */
-        return checkNotNull(networks.get(network),
-                            "Please create the network first");
+        return checkNotNull(findHosts(network), "Please create the network first");
     }
 
-    /*
-     * TODO Lab 6: Implement an InternalListener class for remote map events
+    @Override
+    public Set<HostId> findHosts(String network) {
+        if (!networkIndex.containsKey(network)) {
+            return null;
+        }
+        CompactHostSet hosts = hostCache.get(network, this::hosts);
+        if (!networkIndex.containsKey(network)) {
+            // removed while loading; leave nothing cached for it
+            hostCache.remove(network);
+            return null;
+        }
+        return hosts;
+    }
+
+    @Override
+    public Set<String> getNetworks(HostId hostId) {
+        return hostNetworks.getOrDefault(CompactHostSet.encode(hostId), ImmutableSet.of());
+    }
+
+    @Override
+    public Set<String> getNetworks(MacAddress mac) {
+        long low = CompactHostSet.encode(HostId.hostId(mac, VlanId.vlanId((short) 0)));
+        Set<String> networks = Sets.newHashSet();
+        hostNetworks.subMap(low, true, low | 0xffffL, true).values().forEach(networks::addAll);
+        return ImmutableSet.copyOf(networks);
+    }
+
+    @Override
+    public Map<String, CacheStats> getCacheStats() {
+        return ImmutableMap.of(NETWORKS, networkCache.stats(), HOSTS, hostCache.stats());
+    }
+
+    private ImmutableSortedMap<String, ConnectivityMode> cachedNetworks() {
+        return networkCache.get(NETWORKS, k -> ImmutableSortedMap.copyOfSorted(networkIndex));
+    }
+
+    private void checkNetwork(String network) {
+        checkNotNull(networks(network).get(network), "Network %s does not exist", network);
+    }
+
+    /**
+     * Checks that a network still exists after memberships were added to it.
+     * If the network was removed in the meantime, the memberships are
+     * removed as well, since the removal of the network may have missed them.
      *
-     * The class should implement the MapEventListener interface and
-     * its event method.
+     * @param network network name
+     * @param added memberships added to the network
+     * @throws NullPointerException if the network no longer exists
      */
+    private void confirmNetwork(String network, Set<Membership> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        Versioned<ConnectivityMode> mode = networks(network).get(network);
+        if (mode == null) {
+            added.forEach(this::removeMembership);
+        }
+        checkNotNull(mode, "Network %s does not exist", network);
+    }
 
+    // adds a network to the local index; its mode is updated if already there
+    private void indexNetwork(String network, ConnectivityMode mode) {
+        if (networkIndex.put(network, mode) == null) {
+            networkCount.incrementAndGet();
+        }
+    }
+
+    private void unindexNetwork(String network) {
+        if (networkIndex.remove(network) != null) {
+            networkCount.decrementAndGet();
+        }
+        hostCache.remove(network);
+    }
+
+    // returns a snapshot of the local host set of a network
+    private CompactHostSet hosts(String network) {
+        AtomicReference<CompactHostSet> snapshot = new AtomicReference<>(CompactHostSet.of());
+        hosts.computeIfPresent(network, (k, v) -> {
+            snapshot.set(CompactHostSet.ofSorted(v.toSortedArray()));
+            return v;
+        });
+        return snapshot.get();
+    }
+
+    /**
+     * Adds or removes the memberships of several hosts in a single
+     * transaction, which also reads the network entry, so that the whole
+     * change commits as one store update and only while the network exists.
+     * The transaction is retried when a concurrent update conflicts with it.
+     *
+     * @param network network name
+     * @param hostIds hosts to add or remove
+     * @param add true to add the hosts; false to remove them
+     * @return whether each host was added or removed
+     * @throws NullPointerException if the network does not exist
+     */
+    private Map<HostId, Boolean> updateHosts(String network, Collection<HostId> hostIds, boolean add) {
+        for (int attempt = 0; attempt < MAX_TRANSACTION_ATTEMPTS; attempt++) {
+            Map<Membership, Boolean> results = Maps.newLinkedHashMap();
+            TransactionContext context = storageService.transactionContextBuilder().build();
+            context.begin();
+            try {
+                TransactionalMap<String, ConnectivityMode> networkMap =
+                        context.getTransactionalMap(networks(network).name(), SERIALIZER);
+                checkNotNull(networkMap.get(network), "Network %s does not exist", network);
+                TransactionalMap<Membership, Boolean> membershipMap =
+                        context.getTransactionalMap(memberships(network).name(), SERIALIZER);
+                for (HostId hostId : hostIds) {
+                    Membership membership = new Membership(network, hostId);
+                    results.put(membership, add ? membershipMap.putIfAbsent(membership, true) == null
+                            : membershipMap.remove(membership) != null);
+                }
+            } catch (RuntimeException e) {
+                context.abort();
+                throw e;
+            }
+            if (context.commit()) {
+                Map<HostId, Boolean> changes = Maps.newLinkedHashMap();
+                results.forEach((membership, changed) -> {
+                    // the map events will do the same, but the caller expects to read its writes
+                    if (changed && add) {
+                        hostAdded(membership);
+                    } else if (changed) {
+                        hostRemoved(membership);
+                    }
+                    changes.put(membership.hostId(), changed);
+                });
+                return ImmutableMap.copyOf(changes);
+            }
+        }
+        throw new IllegalStateException("Could not update the hosts of network " + network);
+    }
+
+    // adds the membership entry; true if it was not there before
+    private boolean addMembership(Membership membership) {
+        if (memberships(membership.network()).putIfAbsent(membership, true) != null) {
+            return false;
+        }
+        // the map event will do the same, but the caller expects to read its write
+        hostAdded(membership);
+        return true;
+    }
+
+    // removes the membership entry; true if it was there before
+    private boolean removeMembership(Membership membership) {
+        if (memberships(membership.network()).remove(membership) == null) {
+            return false;
+        }
+        hostRemoved(membership);
+        return true;
+    }
+
+    // the reverse index is updated while the host set of the network is
+    // locked, so that the changes of a membership reach both in the same order
+    private void hostAdded(Membership membership) {
+        AtomicBoolean changed = new AtomicBoolean();
+        long id = CompactHostSet.encode(membership.hostId());
+        hosts.compute(membership.network(), (k, v) -> {
+            LongHashSet set = v == null ? new LongHashSet() : v;
+            if (set.add(id)) {
+                changed.set(true);
+                hostNetworks.compute(id, (h, networks) -> networks == null ?
+                        ImmutableSet.of(k) :
+                        ImmutableSet.<String>builder().addAll(networks).add(k).build());
+            }
+            return set;
+        });
+        if (changed.get()) {
+            hostCache.invalidate(membership.network());
+        }
+    }
+
+    private void hostRemoved(Membership membership) {
+        AtomicBoolean changed = new AtomicBoolean();
+        long id = CompactHostSet.encode(membership.hostId());
+        hosts.computeIfPresent(membership.network(), (k, v) -> {
+            if (v.remove(id)) {
+                changed.set(true);
+                hostNetworks.computeIfPresent(id, (h, networks) -> {
+                    Set<String> rest = Sets.difference(networks, ImmutableSet.of(k));
+                    return rest.isEmpty() ? null : ImmutableSet.copyOf(rest);
+                });
+            }
+            return v.isEmpty() ? null : v;
+        });
+        if (changed.get()) {
+            hostCache.invalidate(membership.network());
+        }
+    }
+
+    // Keeps the network index in sync with the network map, invalidates the
+    // cached networks and notifies the delegate of network map changes
+    private class InternalNetworkListener implements MapEventListener<String, ConnectivityMode> {
+        @Override
+        public void event(MapEvent<String, ConnectivityMode> event) {
+            if (event.type() == MapEvent.Type.REMOVE) {
+                unindexNetwork(event.key());
+            } else {
+                indexNetwork(event.key(), event.value().value());
+            }
+            networkCache.invalidate(NETWORKS);
+            switch (event.type()) {
+                case INSERT:
+                    notifyDelegate(new NetworkEvent(NetworkEvent.Type.NETWORK_ADDED, event.key()));
+                    break;
+                case REMOVE:
+                    notifyDelegate(new NetworkEvent(NetworkEvent.Type.NETWORK_REMOVED, event.key()));
+                    break;
+                case UPDATE:
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Keeps the local host sets in sync with the membership map
+    private class InternalMembershipListener implements MapEventListener<Membership, Boolean> {
+        @Override
+        public void event(MapEvent<Membership, Boolean> event) {
+            Membership membership = event.key();
+            switch (event.type()) {
+                case INSERT:
+                    hostAdded(membership);
+                    notifyDelegate(new NetworkEvent(NetworkEvent.Type.NETWORK_UPDATED,
+                                                    membership.network(),
+                                                    ImmutableSet.of(membership.hostId()),
+                                                    ImmutableSet.of()));
+                    break;
+                case REMOVE:
+                    hostRemoved(membership);
+                    notifyDelegate(new NetworkEvent(NetworkEvent.Type.NETWORK_UPDATED,
+                                                    membership.network(),
+                                                    ImmutableSet.of(),
+                                                    ImmutableSet.of(membership.hostId())));
+                    break;
+                case UPDATE:
+                default:
+                    break;
+            }
+        }
+    }
 }
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onos.byon;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.IntentEvent;
+import org.onosproject.net.intent.IntentListener;
+import org.onosproject.net.intent.IntentService;
+import org.onosproject.net.intent.Key;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Collects intent operations and hands them to the intent service in
+ * bounded batches from a single thread.
+ * <p>
+ * A batch is flushed once it reaches the maximum batch size, or once its
+ * oldest operation has waited for the maximum linger time. Callers block
+ * while the number of queued operations plus the number of operations the
+ * intent service has not yet completed exceeds the pending limit.
+ * </p>
+ * <p>
+ * Every operation carries a future that completes once the intent service
+ * reports the intent installed or withdrawn, and completes exceptionally
+ * if the intent fails, the operation is rejected, or no report arrives in
+ * time. An operation superseded by a later one on the same key completes
+ * along with the later one; reports that end an operation of the other
+ * type, such as the installation of an intent whose withdrawal is in
+ * flight, are ignored.
+ * </p>
+ */
+final class IntentBatcher {
+
+    /**
+     * Type of a batched operation.
+     */
+    enum Operation {
+        SUBMIT,
+        WITHDRAW
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(IntentBatcher.class);
+
+    // in-flight operations not confirmed by then are failed with a timeout
+    private static final long IN_FLIGHT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final IntentService intentService;
+    private final BiConsumer<Operation, Intent> failureHandler;
+    private final IntentListener listener = new InternalIntentListener();
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+    private final Queue<Op> queue = new ArrayDeque<>();
+    // key -> operation handed to the intent service
+    private final Map<Key, Op> inFlight = Maps.newHashMap();
+    // key -> latest operation queued for it, until it completes
+    private final Map<Key, Op> latest = Maps.newConcurrentMap();
+
+    private volatile int maxBatchSize;
+    private volatile long maxLingerNanos;
+    private volatile int maxPending;
+
+    private ExecutorService executor;
+    private boolean running;
+
+    /**
+     * Creates a new intent batcher.
+     *
+     * @param intentService intent service
+     * @param failureHandler invoked with operations the intent service rejected
+     */
+    IntentBatcher(IntentService intentService, BiConsumer<Operation, Intent> failureHandler) {
+        this.intentService = intentService;
+        this.failureHandler = failureHandler;
+    }
+
+    /**
+     * Updates the batching limits.
+     *
+     * @param maxBatchSize maximum number of operations per batch
+     * @param maxLingerMs maximum time in millis an operation waits for its batch
+     * @param maxPending maximum number of queued and in-flight operations
+     */
+    void setLimits(int maxBatchSize, long maxLingerMs, int maxPending) {
+        checkArgument(maxBatchSize > 0, "Batch size must be positive");
+        checkArgument(maxLingerMs >= 0, "Linger time cannot be negative");
+        checkArgument(maxPending >= maxBatchSize, "Pending limit must be at least the batch size");
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMs);
+        this.maxPending = maxPending;
+        lock.lock();
+        try {
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts flushing batches on the given executor.
+     *
+     * @param executor single thread executor
+     */
+    void start(ExecutorService executor) {
+        lock.lock();
+        try {
+            checkState(!running, "Batcher already started");
+            running = true;
+        } finally {
+            lock.unlock();
+        }
+        this.executor = executor;
+        intentService.addListener(listener);
+        executor.execute(this::flushLoop);
+    }
+
+    /**
+     * Flushes the queued operations and stops the batcher.
+     */
+    void stop() {
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        intentService.removeListener(listener);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Timed out flushing intent batches");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            // nobody is listening for their completion any more
+            inFlight.values().forEach(op -> op.future.cancel(false));
+            inFlight.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues an intent for submission, blocking while too many operations
+     * are pending.
+     *
+     * @param intent intent to submit
+     * @return future completed once the intent is installed
+     */
+    CompletableFuture<Void> submit(Intent intent) {
+        return enqueue(new Op(Operation.SUBMIT, intent));
+    }
+
+    /**
+     * Queues an intent for withdrawal, blocking while too many operations
+     * are pending.
+     *
+     * @param intent intent to withdraw
+     * @return future completed once the intent is withdrawn
+     */
+    CompletableFuture<Void> withdraw(Intent intent) {
+        return enqueue(new Op(Operation.WITHDRAW, intent));
+    }
+
+    /**
+     * Returns the completion of the latest operation queued for a key.
+     *
+     * @param key intent key
+     * @return future of the operation; completed if none is pending
+     */
+    CompletableFuture<Void> completion(Key key) {
+        Op op = latest.get(key);
+        return op == null ? CompletableFuture.completedFuture(null) : op.future;
+    }
+
+    /**
+     * Returns the intent of the latest operation queued for a key.
+     *
+     * @param key intent key
+     * @return intent of the operation; null if none is pending
+     */
+    Intent pending(Key key) {
+        Op op = latest.get(key);
+        return op == null ? null : op.intent;
+    }
+
+    /**
+     * Returns the number of queued operations.
+     *
+     * @return queue depth
+     */
+    int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of operations not yet completed by the intent service.
+     *
+     * @return in-flight operation count
+     */
+    int inFlight() {
+        lock.lock();
+        try {
+            return inFlight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(Op op) {
+        Key key = op.intent.key();
+        latest.put(key, op);
+        op.future.whenComplete((r, e) -> latest.remove(key, op));
+        lock.lock();
+        try {
+            while (running && queue.size() + inFlight.size() >= maxPending) {
+                notFull.await(IN_FLIGHT_TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+                expireInFlight();
+            }
+            checkState(running, "Intent batcher is not running");
+            queue.add(op);
+            if (queue.size() == 1 || queue.size() >= maxBatchSize) {
+                notEmpty.signal();
+            }
+            return op.future;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            op.future.cancel(false);
+            throw new IllegalStateException("Interrupted while waiting to queue intent", e);
+        } catch (IllegalStateException e) {
+            op.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        List<Op> batch;
+        while ((batch = nextBatch()) != null) {
+            for (Op op : batch) {
+                apply(op);
+            }
+        }
+    }
+
+    // waits for a full or lingering batch; null once stopped and drained
+    private List<Op> nextBatch() {
+        lock.lock();
+        try {
+            while (running && queue.isEmpty()) {
+                notEmpty.awaitUninterruptibly();
+            }
+            long deadline = System.nanoTime() + maxLingerNanos;
+            long remaining;
+            while (running && queue.size() < maxBatchSize &&
+                    (remaining = deadline - System.nanoTime()) > 0) {
+                notEmpty.awaitNanos(remaining);
+            }
+            if (queue.isEmpty()) {
+                return null;
+            }
+            expireInFlight();
+            int size = Math.min(queue.size(), maxBatchSize);
+            List<Op> batch = Lists.newArrayListWithCapacity(size);
+            long now = System.nanoTime();
+            for (int i = 0; i < size; i++) {
+                Op op = queue.poll();
+                op.since = now;
+                Op superseded = inFlight.put(op.intent.key(), op);
+                if (superseded != null) {
+                    op.future.whenComplete((r, e) -> complete(superseded.future, e));
+                }
+                batch.add(op);
+            }
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expireInFlight() {
+        long expired = System.nanoTime() - IN_FLIGHT_TIMEOUT_NANOS;
+        Iterator<Op> it = inFlight.values().iterator();
+        while (it.hasNext()) {
+            Op op = it.next();
+            if (op.since - expired < 0) {
+                it.remove();
+                op.future.completeExceptionally(new TimeoutException(
+                        "No completion reported for intent " + op.intent.key()));
+            }
+        }
+    }
+
+    private void apply(Op op) {
+        try {
+            if (op.operation == Operation.SUBMIT) {
+                intentService.submit(op.intent);
+            } else {
+                intentService.withdraw(op.intent);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to {} intent {}", op.operation, op.intent.key(), e);
+            complete(op.intent.key(), op.operation, e);
+            failureHandler.accept(op.operation, op.intent);
+        }
+    }
+
+    /**
+     * Releases the in-flight slot of a key and completes its operation,
+     * provided the operation is of the given type.
+     *
+     * @param key intent key
+     * @param operation type of the operation that ended; null for either
+     * @param error cause of the failure of the operation; null on success
+     */
+    private void complete(Key key, Operation operation, Throwable error) {
+        Op op;
+        lock.lock();
+        try {
+            op = inFlight.get(key);
+            if (op == null || (operation != null && op.operation != operation)) {
+                return;
+            }
+            inFlight.remove(key);
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        complete(op.future, error);
+    }
+
+    private static void complete(CompletableFuture<Void> future, Throwable error) {
+        if (error == null) {
+            future.complete(null);
+        } else {
+            future.completeExceptionally(error);
+        }
+    }
+
+    // Queued intent operation
+    private static final class Op {
+        private final Operation operation;
+        private final Intent intent;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        // time the operation was handed to the intent service
+        private long since;
+
+        private Op(Operation operation, Intent intent) {
+            this.operation = operation;
+            this.intent = intent;
+        }
+    }
+
+    // Releases in-flight slots as the intent service completes operations
+    private class InternalIntentListener implements IntentListener {
+        @Override
+        public void event(IntentEvent event) {
+            switch (event.type()) {
+                case INSTALLED:
+                    complete(event.subject().key(), Operation.SUBMIT, null);
+                    break;
+                case WITHDRAWN:
+                case PURGED:
+                    complete(event.subject().key(), Operation.WITHDRAW, null);
+                    break;
+                case FAILED:
+                    // the intent service reports failed submissions and withdrawals alike
+                    complete(event.subject().key(), null,
+                             new IllegalStateException("Intent " + event.subject().key() + " failed"));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+import org.onosproject.net.intent.Key;
+
+import java.util.Set;
+
+/**
+ * Difference between the intents a network should have, given its hosts
+ * and connectivity mode, and the intents it actually has.
+ */
+public final class IntentDrift {
+
+    private final String network;
+    private final int expected;
+    private final Set<Key> missing;
+    private final Set<Key> orphaned;
+
+    /**
+     * Creates a new network intent drift.
+     *
+     * @param network network name
+     * @param expected number of intents the network should have
+     * @param missing keys of the intents the network lacks
+     * @param orphaned keys of the intents the network should not have
+     */
+    public IntentDrift(String network, int expected, Set<Key> missing, Set<Key> orphaned) {
+        this.network = network;
+        this.expected = expected;
+        this.missing = ImmutableSet.copyOf(missing);
+        this.orphaned = ImmutableSet.copyOf(orphaned);
+    }
+
+    /**
+     * Returns the name of the network.
+     *
+     * @return network name
+     */
+    public String network() {
+        return network;
+    }
+
+    /**
+     * Returns the number of intents the network should have.
+     *
+     * @return expected intent count
+     */
+    public int expected() {
+        return expected;
+    }
+
+    /**
+     * Returns the keys of the intents the network should have but lacks.
+     *
+     * @return immutable set of intent keys
+     */
+    public Set<Key> missing() {
+        return missing;
+    }
+
+    /**
+     * Returns the keys of the intents the network has but should not.
+     *
+     * @return immutable set of intent keys
+     */
+    public Set<Key> orphaned() {
+        return orphaned;
+    }
+
+    /**
+     * Returns true if the network has exactly the intents it should.
+     *
+     * @return true if there is no drift
+     */
+    public boolean isEmpty() {
+        return missing.isEmpty() && orphaned.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("network", network)
+                .add("expected", expected)
+                .add("missing", missing.size())
+                .add("orphaned", orphaned.size())
+                .toString();
+    }
+}
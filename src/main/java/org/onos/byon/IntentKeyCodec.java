@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onos.byon;
+
+import org.onlab.packet.VlanId;
+import org.onosproject.net.HostId;
+
+/**
+ * Encodes and decodes the intent keys of BYON networks.
+ * <p>
+ * Keys between two hosts have the layout {@code network,hostOne~hostTwo},
+ * with the two host ids in lexicographic order; keys owned by a single host
+ * have the layout {@code network,host}. Decoding works on character offsets
+ * within the key, and host fields are compared against the MAC address and
+ * VLAN id of the host as numbers, so matching a key never splits it or
+ * builds intermediate strings.
+ * </p>
+ */
+public final class IntentKeyCodec {
+
+    /**
+     * Separates the network name from the host portion of the key.
+     */
+    public static final char NETWORK_SEPARATOR = ',';
+
+    /**
+     * Separates the two hosts of the key.
+     */
+    public static final char HOST_SEPARATOR = '~';
+
+    // layout of the string form of a host id: MAC address, slash, VLAN id
+    private static final int MAC_OCTETS = 6;
+    private static final int MAC_LENGTH = 3 * MAC_OCTETS - 1;
+    private static final char VLAN_SEPARATOR = '/';
+    private static final String ANY_VLAN = VlanId.ANY.toString();
+
+    // non-instantiable
+    private IntentKeyCodec() {
+    }
+
+    /**
+     * Encodes the key of the intent between two hosts of a network.
+     *
+     * @param network network name
+     * @param one host one
+     * @param two host two
+     * @return string key, independent of the order of the hosts
+     */
+    public static String encode(String network, HostId one, HostId two) {
+        String first = one.toString();
+        String second = two.toString();
+        if (first.compareTo(second) > 0) {
+            String tmp = first;
+            first = second;
+            second = tmp;
+        }
+        return new StringBuilder(network.length() + first.length() + second.length() + 2)
+                .append(network).append(NETWORK_SEPARATOR)
+                .append(first).append(HOST_SEPARATOR)
+                .append(second).toString();
+    }
+
+    /**
+     * Encodes the key of an intent owned by a single host of a network.
+     *
+     * @param network network name
+     * @param hostId host id
+     * @return string key
+     */
+    public static String encode(String network, HostId hostId) {
+        return network + NETWORK_SEPARATOR + hostId;
+    }
+
+    /**
+     * Returns the host of a key owned by a single host.
+     *
+     * @param key string key
+     * @return host id; null if the key is not owned by a single host
+     */
+    public static HostId host(String key) {
+        int comma = key.indexOf(NETWORK_SEPARATOR);
+        if (comma < 0 || key.indexOf(HOST_SEPARATOR, comma + 1) >= 0) {
+            return null;
+        }
+        return HostId.hostId(key.substring(comma + 1));
+    }
+
+    /**
+     * Returns the network name of a key.
+     *
+     * @param key string key
+     * @return network name; null if the key was not produced by this codec
+     */
+    public static String network(String key) {
+        int comma = key.indexOf(NETWORK_SEPARATOR);
+        return comma < 0 ? null : key.substring(0, comma);
+    }
+
+    /**
+     * Returns whether a key belongs to the given network.
+     *
+     * @param key string key
+     * @param network network name
+     * @return true if the network field of the key equals the network name
+     */
+    public static boolean matches(String key, String network) {
+        int length = network.length();
+        return key.length() > length &&
+                key.charAt(length) == NETWORK_SEPARATOR &&
+                key.startsWith(network);
+    }
+
+    /**
+     * Returns whether a key belongs to the given network and host.
+     *
+     * @param key string key
+     * @param network network name
+     * @param hostId host id
+     * @return true if the network field equals the network name and one of
+     * the host fields equals the host id
+     */
+    public static boolean matches(String key, String network, HostId hostId) {
+        if (!matches(key, network)) {
+            return false;
+        }
+        int start = network.length() + 1;
+        int tilde = key.indexOf(HOST_SEPARATOR, start);
+        if (tilde < 0) {
+            return hostField(key, start, key.length(), hostId);
+        }
+        return hostField(key, start, tilde, hostId) || hostField(key, tilde + 1, key.length(), hostId);
+    }
+
+    // returns whether key[start, end) is the string form of the host id
+    private static boolean hostField(String key, int start, int end, HostId hostId) {
+        if (end - start <= MAC_LENGTH + 1 || key.charAt(start + MAC_LENGTH) != VLAN_SEPARATOR) {
+            return false;
+        }
+        long mac = hostId.mac().toLong();
+        for (int i = 0; i < MAC_OCTETS; i++) {
+            int at = start + 3 * i;
+            int high = Character.digit(key.charAt(at), 16);
+            int low = Character.digit(key.charAt(at + 1), 16);
+            if (high < 0 || low < 0 || (high << 4 | low) != (int) (mac >>> 8 * (MAC_OCTETS - 1 - i) & 0xff)) {
+                return false;
+            }
+        }
+        return vlanField(key, start + MAC_LENGTH + 1, end, hostId.vlanId());
+    }
+
+    // returns whether key[start, end) is the string form of the VLAN id
+    private static boolean vlanField(String key, int start, int end, VlanId vlanId) {
+        if (vlanId.equals(VlanId.ANY)) {
+            return end - start == ANY_VLAN.length() && key.regionMatches(start, ANY_VLAN, 0, ANY_VLAN.length());
+        }
+        int value = vlanId.toShort();
+        int magnitude = Math.abs(value);
+        int at = end;
+        // compares the decimal digits from the last one
+        do {
+            if (at == start || key.charAt(--at) != (char) ('0' + magnitude % 10)) {
+                return false;
+            }
+            magnitude /= 10;
+        } while (magnitude > 0);
+        if (value < 0 && (at == start || key.charAt(--at) != '-')) {
+            return false;
+        }
+        return at == start;
+    }
+}
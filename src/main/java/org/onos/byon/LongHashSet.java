@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive longs, using open addressing with linear probing.
+ * <p>
+ * Zero marks a free slot, so zero itself is tracked apart. Not thread-safe.
+ * </p>
+ */
+final class LongHashSet {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] slots = new long[MIN_CAPACITY];
+    private int mask = MIN_CAPACITY - 1;
+    // number of non-zero values in the slots
+    private int used = 0;
+    private boolean containsZero = false;
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value value
+     * @return true if the value was not in the set
+     */
+    boolean add(long value) {
+        if (value == 0) {
+            boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+        int pos = slot(value);
+        while (slots[pos] != 0) {
+            if (slots[pos] == value) {
+                return false;
+            }
+            pos = (pos + 1) & mask;
+        }
+        slots[pos] = value;
+        if (++used * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a value from the set.
+     *
+     * @param value value
+     * @return true if the value was in the set
+     */
+    boolean remove(long value) {
+        if (value == 0) {
+            boolean removed = containsZero;
+            containsZero = false;
+            return removed;
+        }
+        int pos = slot(value);
+        while (slots[pos] != 0) {
+            if (slots[pos] == value) {
+                used--;
+                shiftKeys(pos);
+                return true;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the set contains a value.
+     *
+     * @param value value
+     * @return true if the value is in the set
+     */
+    boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int pos = slot(value);
+        while (slots[pos] != 0) {
+            if (slots[pos] == value) {
+                return true;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of values in the set.
+     *
+     * @return set size
+     */
+    int size() {
+        return used + (containsZero ? 1 : 0);
+    }
+
+    /**
+     * Returns true if the set has no values.
+     *
+     * @return true if empty
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the values of the set, sorted.
+     *
+     * @return new sorted array of the values
+     */
+    long[] toSortedArray() {
+        long[] values = new long[size()];
+        int i = 0;
+        if (containsZero) {
+            values[i++] = 0;
+        }
+        for (long slot : slots) {
+            if (slot != 0) {
+                values[i++] = slot;
+            }
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    private int slot(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    // closes the gap left at a position by moving back the values probed past it
+    private void shiftKeys(int pos) {
+        while (true) {
+            int last = pos;
+            pos = (pos + 1) & mask;
+            long value;
+            while (true) {
+                value = slots[pos];
+                if (value == 0) {
+                    slots[last] = 0;
+                    return;
+                }
+                int slot = slot(value);
+                // the value may move to the gap unless its home slot lies in (last, pos]
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            slots[last] = value;
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity];
+        mask = capacity - 1;
+        for (long value : old) {
+            if (value != 0) {
+                int pos = slot(value);
+                while (slots[pos] != 0) {
+                    pos = (pos + 1) & mask;
+                }
+                slots[pos] = value;
+            }
+        }
+    }
+}
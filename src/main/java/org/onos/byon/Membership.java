@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.base.MoreObjects;
+import org.onosproject.net.HostId;
+
+import java.util.Objects;
+
+/**
+ * Membership of a host in a network; the key of a membership entry in
+ * the distributed network store.
+ */
+final class Membership {
+
+    private final String network;
+    private final HostId hostId;
+
+    /**
+     * Creates a new membership.
+     *
+     * @param network network name
+     * @param hostId host id
+     */
+    Membership(String network, HostId hostId) {
+        this.network = network;
+        this.hostId = hostId;
+    }
+
+    /**
+     * Returns the network name.
+     *
+     * @return network name
+     */
+    String network() {
+        return network;
+    }
+
+    /**
+     * Returns the host id.
+     *
+     * @return host id
+     */
+    HostId hostId() {
+        return hostId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(network, hostId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof Membership) {
+            Membership that = (Membership) obj;
+            return Objects.equals(this.network, that.network) &&
+                    Objects.equals(this.hostId, that.hostId);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("network", network)
+                .add("hostId", hostId)
+                .toString();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo serializer for {@link Membership}, writing the host id as a single
+ * long rather than as host id, MAC address and VLAN id objects.
+ */
+final class MembershipSerializer extends Serializer<Membership> {
+
+    /**
+     * Creates a serializer for immutable memberships.
+     */
+    MembershipSerializer() {
+        super(false, true);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, Membership membership) {
+        output.writeString(membership.network());
+        output.writeLong(CompactHostSet.encode(membership.hostId()));
+    }
+
+    @Override
+    public Membership read(Kryo kryo, Input input, Class<Membership> type) {
+        String network = input.readString();
+        return new Membership(network, CompactHostSet.decode(input.readLong()));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onos.byon;
+
+import com.google.common.collect.Maps;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Local cache of immutable snapshots of distributed state.
+ * <p>
+ * A snapshot is loaded on the first read after the state it was built
+ * from changes, and served as is until the next change. A load starts
+ * from the entry of its key and stores its snapshot only if that entry
+ * is still there; invalidating a key replaces its entry, and removing a
+ * key drops it. A load that overlaps an invalidation or a removal is
+ * therefore never served again, even if it completes after them, and
+ * the cache holds nothing for keys that were removed.
+ * </p>
+ *
+ * @param <K> key type
+ * @param <V> snapshot type; must be immutable
+ */
+final class NearCache<K, V> {
+
+    private final ConcurrentMap<K, Entry<V>> entries = Maps.newConcurrentMap();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Returns the snapshot cached for a key, loading it if there is no
+     * current one.
+     *
+     * @param key key
+     * @param loader builds the snapshot of a key from the backing state
+     * @return snapshot
+     */
+    V get(K key, Function<K, V> loader) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.value != null) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        if (entry == null) {
+            Entry<V> empty = new Entry<>(null);
+            entry = entries.putIfAbsent(key, empty);
+            if (entry == null) {
+                entry = empty;
+            }
+        }
+        V value = loader.apply(key);
+        entries.replace(key, entry, new Entry<>(value));
+        return value;
+    }
+
+    /**
+     * Discards the snapshot of a key, if any, because the state it was
+     * built from has changed.
+     *
+     * @param key key
+     */
+    void invalidate(K key) {
+        entries.computeIfPresent(key, (k, entry) -> {
+            if (entry.value != null) {
+                invalidations.increment();
+            }
+            return new Entry<>(null);
+        });
+    }
+
+    /**
+     * Drops a key whose backing state is gone, along with its snapshot.
+     *
+     * @param key key
+     */
+    void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Returns the number of keys the cache holds an entry for.
+     *
+     * @return number of keys
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the counters of the cache.
+     *
+     * @return cache statistics
+     */
+    CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), invalidations.sum());
+    }
+
+    // Snapshot of a key; null until loaded. Entries are compared by identity.
+    private static final class Entry<V> {
+        private final V value;
+
+        private Entry(V value) {
+            this.value = value;
+        }
+    }
+}
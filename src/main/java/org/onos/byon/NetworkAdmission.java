@@ -0,0 +1,308 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Admission control of the mutations of the networks this node owns.
+ * <p>
+ * Host additions take tokens from a bucket of their network and from a
+ * bucket shared by all networks, one per host, and from a global intent
+ * bucket, one per intent they are expected to submit. A mutation waits
+ * for its tokens, before taking the lock of its network, for up to the
+ * queueing time, and is rejected if they cannot come in time; it takes
+ * its tokens from every bucket at once, or from none. Quotas bound the
+ * number of hosts of each network and the number of networks. A limit of
+ * zero is no limit.
+ * </p>
+ * <p>
+ * Mutations are admitted, and counted, by the node that owns their
+ * network, so the limits apply per node.
+ * </p>
+ */
+final class NetworkAdmission {
+
+    private volatile int maxNetworks = 0;
+    private volatile int maxHostsPerNetwork = 0;
+    private volatile double networkHostRate = 0;
+    private volatile long queueMillis = 0;
+
+    private final TokenBucket hostBucket = new TokenBucket();
+    private final TokenBucket intentBucket = new TokenBucket();
+    // held while checking and taking the tokens of a mutation from all buckets
+    private final Object buckets = new Object();
+
+    // network -> bucket and counters of the network
+    private final Map<String, Tenant> tenants = Maps.newConcurrentMap();
+    private final Counters total = new Counters();
+    // networks admitted and not yet stored
+    private final AtomicInteger creating = new AtomicInteger();
+
+    /**
+     * Sets the limits. Networks keep their tokens across changes.
+     *
+     * @param maxNetworks maximum number of networks
+     * @param maxHostsPerNetwork maximum number of hosts per network
+     * @param networkHostRate host additions per second to a network
+     * @param hostRate host additions per second to all networks
+     * @param intentRate intent submissions per second for all networks
+     * @param queueMillis time a mutation may wait for its tokens
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    void setLimits(int maxNetworks, int maxHostsPerNetwork, double networkHostRate,
+                   double hostRate, double intentRate, long queueMillis) {
+        checkArgument(maxNetworks >= 0 && maxHostsPerNetwork >= 0, "Quotas cannot be negative");
+        checkArgument(networkHostRate >= 0 && hostRate >= 0 && intentRate >= 0,
+                      "Rate limits cannot be negative");
+        checkArgument(queueMillis >= 0, "Queueing time cannot be negative");
+        this.maxNetworks = maxNetworks;
+        this.maxHostsPerNetwork = maxHostsPerNetwork;
+        this.queueMillis = queueMillis;
+        hostBucket.setRate(hostRate);
+        intentBucket.setRate(intentRate);
+        this.networkHostRate = networkHostRate;
+        tenants.values().forEach(tenant -> tenant.bucket.setRate(networkHostRate));
+    }
+
+    /**
+     * Admits the creation of a network and reserves its place in the
+     * network quota until {@link #networkCreated()} is called. Reservations
+     * count against the quota, so concurrent creations on this node cannot
+     * exceed it; creations admitted at the same time by other nodes are not
+     * seen, so across the cluster the quota is best-effort.
+     *
+     * @param network network name
+     * @param networks supplies the number of networks in the store, read
+     *                 once the reservation is made
+     * @throws IllegalStateException if the network quota is reached
+     */
+    void admitNetwork(String network, IntSupplier networks) {
+        int max = maxNetworks;
+        int reserved = creating.incrementAndGet();
+        if (max > 0 && networks.getAsInt() + reserved > max) {
+            creating.decrementAndGet();
+            total.overQuota.incrementAndGet();
+            throw new IllegalStateException(String.format(
+                    "Cannot create network %s: the quota of %d networks is reached", network, max));
+        }
+        total.admitted.incrementAndGet();
+    }
+
+    /**
+     * Releases the reservation of an admitted network, once it is stored or
+     * failed to be.
+     */
+    void networkCreated() {
+        creating.decrementAndGet();
+    }
+
+    /**
+     * Waits for the tokens of hosts joining a network. To be called before
+     * taking the lock of the network, so that a throttled mutation does not
+     * hold up the other networks of its lock stripe. The tokens are taken
+     * from all buckets at once, when every bucket can give them, so that a
+     * mutation rejected by one bucket leaves the others untouched.
+     *
+     * @param network network name
+     * @param hosts number of hosts of the network
+     * @param added number of hosts joining the network
+     * @param intents number of intents the hosts are expected to submit
+     * @return true if the hosts had to wait for their tokens
+     * @throws IllegalStateException if the hosts would exceed the host quota,
+     * or their tokens do not come within the queueing time
+     */
+    boolean awaitHosts(String network, int hosts, int added, int intents) {
+        Tenant tenant = tenants.computeIfAbsent(network, k -> new Tenant(networkHostRate));
+        checkHostQuota(tenant, network, hosts, added);
+
+        tenant.queued.incrementAndGet();
+        total.queued.incrementAndGet();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(queueMillis);
+        boolean admitted;
+        try {
+            admitted = acquire(tenant.bucket, added, added, intents, deadline);
+        } finally {
+            tenant.queued.decrementAndGet();
+            total.queued.decrementAndGet();
+        }
+        if (!admitted) {
+            tenant.throttled.incrementAndGet();
+            total.throttled.incrementAndGet();
+            throw new IllegalStateException(String.format(
+                    "Cannot add %d hosts to network %s: rate limit exceeded for more than %dms",
+                    added, network, queueMillis));
+        }
+        return System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Admits hosts joining a network once they got their tokens. To be
+     * called while holding the lock of the network, so that the host quota
+     * holds.
+     *
+     * @param network network name
+     * @param hosts number of hosts of the network
+     * @param added number of hosts joining the network
+     * @param delayed true if the hosts had to wait for their tokens
+     * @throws IllegalStateException if the hosts would exceed the host quota
+     */
+    void admitHosts(String network, int hosts, int added, boolean delayed) {
+        Tenant tenant = tenants.computeIfAbsent(network, k -> new Tenant(networkHostRate));
+        checkHostQuota(tenant, network, hosts, added);
+        for (Counters counters : new Counters[]{tenant, total}) {
+            counters.admitted.incrementAndGet();
+            if (delayed) {
+                counters.delayed.incrementAndGet();
+            }
+        }
+    }
+
+    private void checkHostQuota(Tenant tenant, String network, int hosts, int added) {
+        int max = maxHostsPerNetwork;
+        if (max > 0 && hosts + added > max) {
+            tenant.overQuota.incrementAndGet();
+            total.overQuota.incrementAndGet();
+            throw new IllegalStateException(String.format(
+                    "Cannot add %d hosts to network %s: its quota of %d hosts would be exceeded",
+                    added, network, max));
+        }
+    }
+
+    /**
+     * Takes tokens from the bucket of a network and from the global buckets,
+     * all at once, waiting for them until the deadline. No lock is held
+     * while waiting.
+     *
+     * @param tenantBucket bucket of the network
+     * @param networkHosts tokens to take from the bucket of the network
+     * @param hosts tokens to take from the global host bucket
+     * @param intents tokens to take from the global intent bucket
+     * @param deadline time after which to give up, in nanoseconds
+     * @return true if the tokens were taken
+     */
+    private boolean acquire(TokenBucket tenantBucket, int networkHosts, int hosts, int intents,
+                            long deadline) {
+        while (true) {
+            long now = System.nanoTime();
+            long wait;
+            synchronized (buckets) {
+                wait = Math.max(tenantBucket.waitNanos(now),
+                                Math.max(hostBucket.waitNanos(now), intentBucket.waitNanos(now)));
+                if (wait == 0) {
+                    tenantBucket.take(networkHosts);
+                    hostBucket.take(hosts);
+                    intentBucket.take(intents);
+                    return true;
+                }
+            }
+            if (now + wait > deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * Forgets the bucket and counters of a deleted network.
+     *
+     * @param network network name
+     */
+    void forget(String network) {
+        tenants.remove(network);
+    }
+
+    /**
+     * Returns the admission counters of a network, or of all networks.
+     *
+     * @param network network name; null for all networks
+     * @return admission statistics
+     */
+    AdmissionStats stats(String network) {
+        Counters counters = network == null ? total : tenants.get(network);
+        return counters == null ? new AdmissionStats(0, 0, 0, 0, 0) : counters.stats();
+    }
+
+    // Admission counters
+    private static class Counters {
+        final AtomicLong admitted = new AtomicLong();
+        final AtomicLong delayed = new AtomicLong();
+        final AtomicLong throttled = new AtomicLong();
+        final AtomicLong overQuota = new AtomicLong();
+        final AtomicInteger queued = new AtomicInteger();
+
+        AdmissionStats stats() {
+            return new AdmissionStats(admitted.get(), delayed.get(), throttled.get(),
+                                      overQuota.get(), queued.get());
+        }
+    }
+
+    // Host bucket and admission counters of a network
+    private static final class Tenant extends Counters {
+        private final TokenBucket bucket = new TokenBucket();
+
+        private Tenant(double rate) {
+            bucket.setRate(rate);
+        }
+    }
+
+    /**
+     * Bucket holding up to a second's worth of tokens. It lets a request
+     * through whenever it is not in debt, taking all the tokens the request
+     * needs, so that a request larger than the bucket is paid for by the
+     * requests after it. A rate of zero is no limit.
+     */
+    private static final class TokenBucket {
+        private double rate = 0;
+        private double tokens = 0;
+        private long updated = System.nanoTime();
+
+        synchronized void setRate(double rate) {
+            refill(System.nanoTime());
+            this.rate = rate;
+        }
+
+        // returns the time until the bucket lets a request through; 0 if now
+        synchronized long waitNanos(long now) {
+            refill(now);
+            return rate == 0 || tokens >= 0 ? 0 : (long) Math.ceil(-tokens / rate * 1e9);
+        }
+
+        synchronized void take(int permits) {
+            if (rate > 0) {
+                tokens -= permits;
+            }
+        }
+
+        private void refill(long now) {
+            if (rate > 0) {
+                tokens = Math.min(rate, tokens + (now - updated) * rate / 1e9);
+            }
+            updated = now;
+        }
+    }
+}
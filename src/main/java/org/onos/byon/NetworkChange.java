@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+import org.onosproject.net.HostId;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Change to a network, as recorded in the network journal.
+ */
+public final class NetworkChange {
+
+    private final long time;
+    private final NetworkEvent.Type type;
+    private final String network;
+    private final ConnectivityMode mode;
+    private final Set<HostId> addedHosts;
+    private final Set<HostId> removedHosts;
+
+    /**
+     * Creates a new network change.
+     *
+     * @param time time of the change in millis
+     * @param type kind of change
+     * @param network network name
+     * @param mode connectivity mode of a created network; null otherwise
+     * @param addedHosts hosts added to the network
+     * @param removedHosts hosts removed from the network
+     */
+    public NetworkChange(long time, NetworkEvent.Type type, String network, ConnectivityMode mode,
+                         Set<HostId> addedHosts, Set<HostId> removedHosts) {
+        this.time = time;
+        this.type = type;
+        this.network = network;
+        this.mode = mode;
+        this.addedHosts = ImmutableSet.copyOf(addedHosts);
+        this.removedHosts = ImmutableSet.copyOf(removedHosts);
+    }
+
+    /**
+     * Returns the time of the change.
+     *
+     * @return time in millis
+     */
+    public long time() {
+        return time;
+    }
+
+    /**
+     * Returns the kind of change.
+     *
+     * @return change type
+     */
+    public NetworkEvent.Type type() {
+        return type;
+    }
+
+    /**
+     * Returns the name of the changed network.
+     *
+     * @return network name
+     */
+    public String network() {
+        return network;
+    }
+
+    /**
+     * Returns the connectivity mode of a created network.
+     *
+     * @return connectivity mode; null if the change did not create the
+     * network, or the mode was unknown
+     */
+    public ConnectivityMode mode() {
+        return mode;
+    }
+
+    /**
+     * Returns the hosts added to the network.
+     *
+     * @return set of host ids
+     */
+    public Set<HostId> addedHosts() {
+        return addedHosts;
+    }
+
+    /**
+     * Returns the hosts removed from the network.
+     *
+     * @return set of host ids
+     */
+    public Set<HostId> removedHosts() {
+        return removedHosts;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof NetworkChange)) {
+            return false;
+        }
+        NetworkChange that = (NetworkChange) obj;
+        return time == that.time && type == that.type && network.equals(that.network) &&
+                mode == that.mode && addedHosts.equals(that.addedHosts) &&
+                removedHosts.equals(that.removedHosts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(time, type, network, mode, addedHosts, removedHosts);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("time", time)
+                .add("type", type)
+                .add("network", network)
+                .add("mode", mode)
+                .add("addedHosts", addedHosts)
+                .add("removedHosts", removedHosts)
+                .toString();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+import org.onosproject.event.AbstractEvent;
+import org.onosproject.net.HostId;
+
+import java.util.Set;
+
+/**
+ * Describes a change to a network.
+ */
+public class NetworkEvent extends AbstractEvent<NetworkEvent.Type, String> {
+
+    /**
+     * Type of network events.
+     */
+    public enum Type {
+        /**
+         * A network was created.
+         */
+        NETWORK_ADDED,
+
+        /**
+         * A network was removed.
+         */
+        NETWORK_REMOVED,
+
+        /**
+         * Hosts were added to, or removed from, a network.
+         */
+        NETWORK_UPDATED
+    }
+
+    private final Set<HostId> addedHosts;
+    private final Set<HostId> removedHosts;
+
+    /**
+     * Creates an event of the given type for the given network.
+     *
+     * @param type event type
+     * @param network network name
+     */
+    public NetworkEvent(Type type, String network) {
+        this(type, network, ImmutableSet.of(), ImmutableSet.of());
+    }
+
+    /**
+     * Creates an event of the given type for the given network, with the
+     * hosts that joined and left the network.
+     *
+     * @param type event type
+     * @param network network name
+     * @param addedHosts hosts added to the network
+     * @param removedHosts hosts removed from the network
+     */
+    public NetworkEvent(Type type, String network,
+                        Set<HostId> addedHosts, Set<HostId> removedHosts) {
+        super(type, network);
+        this.addedHosts = ImmutableSet.copyOf(addedHosts);
+        this.removedHosts = ImmutableSet.copyOf(removedHosts);
+    }
+
+    /**
+     * Returns the hosts added to the network.
+     *
+     * @return set of host ids
+     */
+    public Set<HostId> addedHosts() {
+        return addedHosts;
+    }
+
+    /**
+     * Returns the hosts removed from the network.
+     *
+     * @return set of host ids
+     */
+    public Set<HostId> removedHosts() {
+        return removedHosts;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("type", type())
+                .add("network", subject())
+                .add("addedHosts", addedHosts)
+                .add("removedHosts", removedHosts)
+                .toString();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.onosproject.net.HostId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Groups the network events of a short window into one event per network.
+ * <p>
+ * Consecutive host updates of a network are merged into a single
+ * {@link NetworkEvent.Type#NETWORK_UPDATED} event carrying the net delta,
+ * so a host added and removed within the window is not reported at all.
+ * Network additions and removals are never merged, and the events of a
+ * network are delivered in the order they happened.
+ * </p>
+ * <p>
+ * Events are merged and delivered on a dedicated executor; adding an event
+ * never waits on the delivery of earlier events.
+ * </p>
+ */
+final class NetworkEventCoalescer {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Consumer<NetworkEvent> sink;
+    private final ScheduledExecutorService executor;
+    private volatile long windowMs;
+
+    // network -> events pending delivery, in order
+    private Map<String, Deque<PendingEvent>> pending = Maps.newLinkedHashMap();
+    private boolean scheduled = false;
+
+    /**
+     * Creates a new coalescer.
+     *
+     * @param sink receives the coalesced events
+     * @param executor executor that coalesces and delivers the events
+     * @param windowMs window during which events are coalesced, in millis
+     */
+    NetworkEventCoalescer(Consumer<NetworkEvent> sink,
+                          ScheduledExecutorService executor, long windowMs) {
+        this.sink = sink;
+        this.executor = executor;
+        setWindow(windowMs);
+    }
+
+    /**
+     * Changes the window during which events are coalesced. The change
+     * applies from the next window on.
+     *
+     * @param windowMs window in millis; 0 delivers events as soon as possible
+     */
+    void setWindow(long windowMs) {
+        checkArgument(windowMs >= 0, "Event window cannot be negative");
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * Queues an event for delivery.
+     *
+     * @param event network event
+     */
+    synchronized void add(NetworkEvent event) {
+        Deque<PendingEvent> events =
+                pending.computeIfAbsent(event.subject(), k -> Lists.newLinkedList());
+        PendingEvent last = events.peekLast();
+        if (last == null || !last.merge(event)) {
+            events.addLast(new PendingEvent(event));
+        }
+        if (!scheduled) {
+            scheduled = true;
+            executor.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Delivers all pending events now, on the calling thread.
+     */
+    void flush() {
+        Map<String, Deque<PendingEvent>> events;
+        synchronized (this) {
+            events = pending;
+            pending = Maps.newLinkedHashMap();
+            scheduled = false;
+        }
+        for (Deque<PendingEvent> networkEvents : events.values()) {
+            for (PendingEvent event : networkEvents) {
+                if (!event.isEmpty()) {
+                    deliver(event.toEvent());
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers the pending events and shuts the executor down.
+     */
+    void stop() {
+        executor.shutdown();
+        flush();
+    }
+
+    private void deliver(NetworkEvent event) {
+        try {
+            sink.accept(event);
+        } catch (RuntimeException e) {
+            log.warn("Unable to deliver {}", event, e);
+        }
+    }
+
+    // Event pending delivery, to which later host updates may be merged
+    private static final class PendingEvent {
+        private final NetworkEvent.Type type;
+        private final String network;
+        private final Set<HostId> added = Sets.newLinkedHashSet();
+        private final Set<HostId> removed = Sets.newLinkedHashSet();
+
+        private PendingEvent(NetworkEvent event) {
+            this.type = event.type();
+            this.network = event.subject();
+            added.addAll(event.addedHosts());
+            removed.addAll(event.removedHosts());
+        }
+
+        // merges the hosts of an update; false if the events cannot be merged
+        private boolean merge(NetworkEvent event) {
+            if (type != NetworkEvent.Type.NETWORK_UPDATED ||
+                    event.type() != NetworkEvent.Type.NETWORK_UPDATED) {
+                return false;
+            }
+            for (HostId hostId : event.addedHosts()) {
+                if (!removed.remove(hostId)) {
+                    added.add(hostId);
+                }
+            }
+            for (HostId hostId : event.removedHosts()) {
+                if (!added.remove(hostId)) {
+                    removed.add(hostId);
+                }
+            }
+            return true;
+        }
+
+        // true if the event is an update that cancelled itself out
+        private boolean isEmpty() {
+            return type == NetworkEvent.Type.NETWORK_UPDATED && added.isEmpty() && removed.isEmpty();
+        }
+
+        private NetworkEvent toEvent() {
+            return new NetworkEvent(type, network, added, removed);
+        }
+    }
+}
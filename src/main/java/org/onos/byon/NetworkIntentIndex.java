@@ -0,0 +1,347 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.onosproject.net.HostId;
+import org.onosproject.net.intent.Key;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Index of the intent keys submitted on behalf of network hosts.
+ * <p>
+ * Each key is recorded under both of its hosts, so the keys of a single
+ * host can be found without looking at the rest of the network, nor at
+ * the intents of any other network. Keys owned by a single host are
+ * recorded with the host as its own peer. Each network has its own lock,
+ * so that the intents of different networks are indexed in parallel.
+ * </p>
+ * <p>
+ * Keys recorded and forgotten are also written to the network journal, if
+ * any, so that the index can be restored on restart; clearing the index
+ * leaves the journal as is. The journal is written once the lock of the
+ * network is released. It is a restart aid checked against the intent
+ * service, so the records of two changes racing on the same pair of hosts
+ * may reach it in either order.
+ * </p>
+ */
+final class NetworkIntentIndex {
+
+    // network -> keys of the network
+    private final ConcurrentMap<String, NetworkKeys> networks = Maps.newConcurrentMap();
+    private final NetworkJournal journal;
+
+    // Keys of a network, guarded by the monitor of the instance
+    private static final class NetworkKeys {
+        // host -> peer host -> key
+        private final Map<HostId, Map<HostId, Key>> hosts = Maps.newHashMap();
+        // set once the keys are unlinked from the index, which must then be retried
+        private boolean removed;
+    }
+
+    /**
+     * Creates a new index that is not journaled.
+     */
+    NetworkIntentIndex() {
+        this(null);
+    }
+
+    /**
+     * Creates a new index journaling its changes.
+     *
+     * @param journal network journal; null for none
+     */
+    NetworkIntentIndex(NetworkJournal journal) {
+        this.journal = journal;
+    }
+
+    // runs an update on the keys of a network, creating them if need be
+    private <T> T update(String network, Function<NetworkKeys, T> update) {
+        while (true) {
+            NetworkKeys keys = networks.computeIfAbsent(network, k -> new NetworkKeys());
+            synchronized (keys) {
+                if (!keys.removed) {
+                    T result = update.apply(keys);
+                    if (keys.hosts.isEmpty()) {
+                        unlink(network, keys);
+                    }
+                    return result;
+                }
+            }
+        }
+    }
+
+    // runs a read of the keys of a network; the default if it has none
+    private <T> T read(String network, Function<NetworkKeys, T> read, T none) {
+        NetworkKeys keys = networks.get(network);
+        if (keys == null) {
+            return none;
+        }
+        synchronized (keys) {
+            return keys.removed ? none : read.apply(keys);
+        }
+    }
+
+    // removes the keys of a network from the index; to be called under their lock
+    private void unlink(String network, NetworkKeys keys) {
+        keys.removed = true;
+        networks.remove(network, keys);
+    }
+
+    /**
+     * Records the key of the intent between two hosts of a network.
+     *
+     * @param network network name
+     * @param one host one
+     * @param two host two
+     * @param key intent key
+     */
+    void add(String network, HostId one, HostId two, Key key) {
+        update(network, keys -> {
+            put(keys, one, two, key);
+            return null;
+        });
+        if (journal != null) {
+            journal.intentAdded(network, one, two, key);
+        }
+    }
+
+    private static void put(NetworkKeys keys, HostId one, HostId two, Key key) {
+        keys.hosts.computeIfAbsent(one, k -> Maps.newHashMap()).put(two, key);
+        keys.hosts.computeIfAbsent(two, k -> Maps.newHashMap()).put(one, key);
+    }
+
+    /**
+     * Records the key of the intent between two hosts of a network, unless
+     * a key is already recorded for them.
+     *
+     * @param network network name
+     * @param one host one
+     * @param two host two
+     * @param key intent key
+     * @return true if the key was recorded
+     */
+    boolean addIfAbsent(String network, HostId one, HostId two, Key key) {
+        boolean added = update(network, keys -> {
+            Map<HostId, Key> peers = keys.hosts.get(one);
+            if (peers != null && peers.containsKey(two)) {
+                return false;
+            }
+            put(keys, one, two, key);
+            return true;
+        });
+        if (added && journal != null) {
+            journal.intentAdded(network, one, two, key);
+        }
+        return added;
+    }
+
+    /**
+     * Forgets the key of the intent between two hosts of a network.
+     *
+     * @param network network name
+     * @param one host one
+     * @param two host two
+     */
+    void remove(String network, HostId one, HostId two) {
+        if (!networks.containsKey(network)) {
+            return;
+        }
+        Key key = update(network, keys -> {
+            Map<HostId, Key> peers = keys.hosts.get(one);
+            Key removed = peers == null ? null : peers.get(two);
+            removePeer(keys.hosts, one, two);
+            removePeer(keys.hosts, two, one);
+            return removed;
+        });
+        if (key != null && journal != null) {
+            journal.intentRemoved(network, key);
+        }
+    }
+
+    private void removePeer(Map<HostId, Map<HostId, Key>> hosts, HostId host, HostId peer) {
+        Map<HostId, Key> peers = hosts.get(host);
+        if (peers != null) {
+            peers.remove(peer);
+            if (peers.isEmpty()) {
+                hosts.remove(host);
+            }
+        }
+    }
+
+    /**
+     * Returns the keys of the intents of a host, indexed by the peer host.
+     *
+     * @param network network name
+     * @param host host id
+     * @return immutable snapshot of peer host to intent key
+     */
+    Map<HostId, Key> keys(String network, HostId host) {
+        return read(network, keys -> {
+            Map<HostId, Key> peers = keys.hosts.get(host);
+            return peers == null ? ImmutableMap.<HostId, Key>of() : ImmutableMap.copyOf(peers);
+        }, ImmutableMap.of());
+    }
+
+    /**
+     * Returns the host of a network with the most indexed intents among
+     * some hosts; ties go to the host with the lowest id.
+     *
+     * @param network network name
+     * @param among hosts to choose from
+     * @return host id; null if none of the hosts has an indexed intent
+     */
+    HostId mostConnected(String network, Set<HostId> among) {
+        return read(network, keys -> {
+            HostId most = null;
+            int count = 0;
+            for (Map.Entry<HostId, Map<HostId, Key>> entry : keys.hosts.entrySet()) {
+                HostId host = entry.getKey();
+                int peers = entry.getValue().size();
+                if (among.contains(host) && (peers > count || peers == count &&
+                        host.toString().compareTo(most.toString()) < 0)) {
+                    most = host;
+                    count = peers;
+                }
+            }
+            return most;
+        }, null);
+    }
+
+    /**
+     * Returns the key of the intent between two hosts of a network.
+     *
+     * @param network network name
+     * @param one host one
+     * @param two host two
+     * @return intent key; null if none is indexed
+     */
+    Key key(String network, HostId one, HostId two) {
+        return read(network, keys -> {
+            Map<HostId, Key> peers = keys.hosts.get(one);
+            return peers == null ? null : peers.get(two);
+        }, null);
+    }
+
+    /**
+     * Returns the intents of a network, with their pair of hosts.
+     *
+     * @param network network name
+     * @return immutable snapshot of intent key to hosts of the intent
+     */
+    Map<Key, Map.Entry<HostId, HostId>> intents(String network) {
+        return read(network, keys -> {
+            Map<Key, Map.Entry<HostId, HostId>> intents = Maps.newHashMap();
+            keys.hosts.forEach((host, peers) -> peers.forEach(
+                    (peer, key) -> intents.putIfAbsent(key, Maps.immutableEntry(host, peer))));
+            return ImmutableMap.copyOf(intents);
+        }, ImmutableMap.of());
+    }
+
+    /**
+     * Returns the intents of every network, with their pair of hosts. Each
+     * network is read under its own lock, one at a time.
+     *
+     * @return network to intent key to hosts of the intent
+     */
+    Map<String, Map<Key, Map.Entry<HostId, HostId>>> intents() {
+        ImmutableMap.Builder<String, Map<Key, Map.Entry<HostId, HostId>>> builder = ImmutableMap.builder();
+        for (String network : networks.keySet()) {
+            Map<Key, Map.Entry<HostId, HostId>> intents = intents(network);
+            if (!intents.isEmpty()) {
+                builder.put(network, intents);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the hosts of a network that have at least one indexed intent.
+     *
+     * @param network network name
+     * @return immutable snapshot of host ids
+     */
+    Set<HostId> hosts(String network) {
+        return read(network, keys -> ImmutableSet.copyOf(keys.hosts.keySet()), ImmutableSet.of());
+    }
+
+    /**
+     * Returns the networks that have at least one indexed intent.
+     *
+     * @return immutable snapshot of network names
+     */
+    Set<String> networks() {
+        return ImmutableSet.copyOf(networks.keySet());
+    }
+
+    /**
+     * Returns the total number of indexed keys in a network.
+     *
+     * @param network network name
+     * @return number of keys
+     */
+    int size(String network) {
+        return read(network, keys -> {
+            // every key is recorded under both of its hosts, unless both are the same
+            int size = 0;
+            for (Map.Entry<HostId, Map<HostId, Key>> entry : keys.hosts.entrySet()) {
+                size += entry.getValue().size();
+                if (entry.getValue().containsKey(entry.getKey())) {
+                    size++;
+                }
+            }
+            return size / 2;
+        }, 0);
+    }
+
+    /**
+     * Forgets all indexed keys of a network.
+     *
+     * @param network network name
+     */
+    void remove(String network) {
+        NetworkKeys keys = networks.get(network);
+        if (keys != null) {
+            synchronized (keys) {
+                unlink(network, keys);
+            }
+        }
+        if (journal != null) {
+            journal.intentsRemoved(network);
+        }
+    }
+
+    /**
+     * Forgets all indexed keys.
+     */
+    void clear() {
+        for (String network : networks.keySet()) {
+            NetworkKeys keys = networks.get(network);
+            if (keys != null) {
+                synchronized (keys) {
+                    unlink(network, keys);
+                }
+            }
+        }
+    }
+}
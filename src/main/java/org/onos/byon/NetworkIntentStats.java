@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.codahale.metrics.Snapshot;
+import com.google.common.base.MoreObjects;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intent counts and convergence times of a network.
+ * <p>
+ * Convergence is the time from a host joining the network until all the
+ * intents connecting it to the rest of the network are installed.
+ * </p>
+ */
+public final class NetworkIntentStats {
+
+    private final long pending;
+    private final long installed;
+    private final long failed;
+    private final long converged;
+    private final long convergenceFailures;
+    private final Snapshot convergence;
+
+    /**
+     * Creates new network intent statistics.
+     *
+     * @param pending intents submitted but not yet installed
+     * @param installed installed intents
+     * @param failed failed intents
+     * @param converged host joins that converged
+     * @param convergenceFailures host joins that did not converge
+     * @param convergence recent convergence times in nanoseconds
+     */
+    public NetworkIntentStats(long pending, long installed, long failed,
+                              long converged, long convergenceFailures,
+                              Snapshot convergence) {
+        this.pending = pending;
+        this.installed = installed;
+        this.failed = failed;
+        this.converged = converged;
+        this.convergenceFailures = convergenceFailures;
+        this.convergence = convergence;
+    }
+
+    /**
+     * Returns the number of intents submitted but not yet installed.
+     *
+     * @return pending intent count
+     */
+    public long pending() {
+        return pending;
+    }
+
+    /**
+     * Returns the number of installed intents.
+     *
+     * @return installed intent count
+     */
+    public long installed() {
+        return installed;
+    }
+
+    /**
+     * Returns the number of failed intents.
+     *
+     * @return failed intent count
+     */
+    public long failed() {
+        return failed;
+    }
+
+    /**
+     * Returns the number of host joins whose intents failed or timed out.
+     *
+     * @return convergence failure count
+     */
+    public long convergenceFailures() {
+        return convergenceFailures;
+    }
+
+    /**
+     * Returns the number of host joins that converged.
+     *
+     * @return convergence count
+     */
+    public long converged() {
+        return converged;
+    }
+
+    /**
+     * Returns the given quantile of the recent convergence times.
+     *
+     * @param quantile quantile, between 0 and 1
+     * @return convergence time in millis
+     */
+    public double convergenceMillis(double quantile) {
+        return toMillis(convergence.getValue(quantile));
+    }
+
+    /**
+     * Returns the longest of the recent convergence times.
+     *
+     * @return convergence time in millis
+     */
+    public double maxConvergenceMillis() {
+        return toMillis(convergence.getMax());
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("pending", pending)
+                .add("installed", installed)
+                .add("failed", failed)
+                .add("converged", converged)
+                .add("convergenceFailures", convergenceFailures)
+                .toString();
+    }
+}
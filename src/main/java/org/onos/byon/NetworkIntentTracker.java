@@ -0,0 +1,287 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Maps;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.intent.IntentEvent;
+import org.onosproject.net.intent.IntentListener;
+import org.onosproject.net.intent.IntentService;
+import org.onosproject.net.intent.IntentState;
+import org.onosproject.net.intent.Key;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the state of the intents of each network, and how long host
+ * joins take to converge.
+ * <p>
+ * The counts and convergence times of every network are also registered
+ * with the metrics service, as the "byon" component with one feature per
+ * network.
+ * </p>
+ */
+final class NetworkIntentTracker {
+
+    private static final String COMPONENT = "byon";
+
+    // Tracked state of an intent
+    private enum State {
+        PENDING,
+        INSTALLED,
+        FAILED
+    }
+
+    private final ApplicationId appId;
+    private final MetricsService metricsService;
+    private final MetricsComponent metricsComponent;
+    private final IntentListener listener = new InternalIntentListener();
+    private final ConcurrentMap<String, NetworkIntents> networks = Maps.newConcurrentMap();
+
+    /**
+     * Creates a new tracker for the intents of an application.
+     *
+     * @param appId application id
+     * @param metricsService metrics service
+     */
+    NetworkIntentTracker(ApplicationId appId, MetricsService metricsService) {
+        this.appId = appId;
+        this.metricsService = metricsService;
+        this.metricsComponent = metricsService.registerComponent(COMPONENT);
+    }
+
+    /**
+     * Starts following the events of the intent service.
+     *
+     * @param intentService intent service
+     */
+    void start(IntentService intentService) {
+        intentService.addListener(listener);
+    }
+
+    /**
+     * Stops following the events of the intent service, and unregisters the
+     * metrics of all networks.
+     *
+     * @param intentService intent service
+     */
+    void stop(IntentService intentService) {
+        intentService.removeListener(listener);
+        networks.keySet().forEach(this::removed);
+    }
+
+    /**
+     * Records the submission of an intent of a network.
+     *
+     * @param network network name
+     * @param key intent key
+     */
+    void submitted(String network, Key key) {
+        intents(network).update(key, State.PENDING);
+    }
+
+    /**
+     * Records an intent found in the intent service, in its current state.
+     *
+     * @param network network name
+     * @param key intent key
+     * @param state intent state; null if unknown
+     */
+    void restored(String network, Key key, IntentState state) {
+        if (state == IntentState.INSTALLED) {
+            intents(network).update(key, State.INSTALLED);
+        } else if (state == IntentState.FAILED) {
+            intents(network).update(key, State.FAILED);
+        } else {
+            intents(network).update(key, State.PENDING);
+        }
+    }
+
+    /**
+     * Stops tracking an intent that is being withdrawn.
+     *
+     * @param network network name
+     * @param key intent key
+     */
+    void withdrawn(String network, Key key) {
+        NetworkIntents intents = networks.get(network);
+        if (intents != null) {
+            intents.update(key, null);
+        }
+    }
+
+    /**
+     * Records a host join that converged, unless the network has been
+     * removed since.
+     *
+     * @param network network name
+     * @param startNanos time the host joined, as given by System.nanoTime()
+     */
+    void converged(String network, long startNanos) {
+        NetworkIntents intents = networks.get(network);
+        if (intents != null) {
+            intents.convergence.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records a host join whose intents failed or timed out, unless the
+     * network has been removed since.
+     *
+     * @param network network name
+     */
+    void convergenceFailed(String network) {
+        NetworkIntents intents = networks.get(network);
+        if (intents != null) {
+            intents.convergenceFailures.inc();
+        }
+    }
+
+    /**
+     * Forgets a network and unregisters its metrics.
+     *
+     * @param network network name
+     */
+    void removed(String network) {
+        NetworkIntents intents = networks.remove(network);
+        if (intents != null) {
+            intents.unregister();
+        }
+    }
+
+    /**
+     * Returns the intent statistics of a network.
+     *
+     * @param network network name
+     * @return network intent statistics
+     */
+    NetworkIntentStats stats(String network) {
+        return intents(network).stats();
+    }
+
+    private NetworkIntents intents(String network) {
+        return networks.computeIfAbsent(network, NetworkIntents::new);
+    }
+
+    // Intents and metrics of a network
+    private final class NetworkIntents {
+        private static final String CONVERGENCE = "convergence";
+        private static final String CONVERGENCE_FAILURES = "convergenceFailures";
+        private static final String PENDING = "pendingIntents";
+        private static final String INSTALLED = "installedIntents";
+        private static final String FAILED = "failedIntents";
+
+        private final MetricsFeature feature;
+        private final Map<Key, State> states = Maps.newHashMap();
+        private final long[] counts = new long[State.values().length];
+        private final Timer convergence;
+        private final Counter convergenceFailures;
+
+        private NetworkIntents(String network) {
+            feature = metricsComponent.registerFeature(network);
+            convergence = metricsService.createTimer(metricsComponent, feature, CONVERGENCE);
+            convergenceFailures = metricsService.createCounter(metricsComponent, feature,
+                                                               CONVERGENCE_FAILURES);
+            registerGauge(PENDING, State.PENDING);
+            registerGauge(INSTALLED, State.INSTALLED);
+            registerGauge(FAILED, State.FAILED);
+        }
+
+        private void registerGauge(String name, State state) {
+            metricsService.registerMetric(metricsComponent, feature, name,
+                                          (Gauge<Long>) () -> count(state));
+        }
+
+        private void unregister() {
+            for (String name : new String[]{CONVERGENCE, CONVERGENCE_FAILURES,
+                    PENDING, INSTALLED, FAILED}) {
+                metricsService.removeMetric(metricsComponent, feature, name);
+            }
+        }
+
+        // moves an intent to a new state; null to forget it
+        private synchronized void update(Key key, State state) {
+            State previous = state == null ? states.remove(key) : states.put(key, state);
+            if (previous != null) {
+                counts[previous.ordinal()]--;
+            }
+            if (state != null) {
+                counts[state.ordinal()]++;
+            }
+        }
+
+        // moves a tracked intent to a new state
+        private synchronized void updateIfTracked(Key key, State state) {
+            if (states.containsKey(key)) {
+                update(key, state);
+            }
+        }
+
+        private synchronized long count(State state) {
+            return counts[state.ordinal()];
+        }
+
+        private synchronized NetworkIntentStats stats() {
+            return new NetworkIntentStats(counts[State.PENDING.ordinal()],
+                                          counts[State.INSTALLED.ordinal()],
+                                          counts[State.FAILED.ordinal()],
+                                          convergence.getCount(),
+                                          convergenceFailures.getCount(),
+                                          convergence.getSnapshot());
+        }
+    }
+
+    // Follows the state of the intents of the application
+    private class InternalIntentListener implements IntentListener {
+        @Override
+        public boolean isRelevant(IntentEvent event) {
+            return Objects.equals(appId, event.subject().appId());
+        }
+
+        @Override
+        public void event(IntentEvent event) {
+            Key key = event.subject().key();
+            NetworkIntents intents = networks.get(IntentKeyCodec.network(key.toString()));
+            if (intents == null) {
+                return;
+            }
+            switch (event.type()) {
+                case INSTALLED:
+                    intents.updateIfTracked(key, State.INSTALLED);
+                    break;
+                case FAILED:
+                    intents.updateIfTracked(key, State.FAILED);
+                    break;
+                case WITHDRAWN:
+                case PURGED:
+                    intents.update(key, null);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.CountingInputStream;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.HostId;
+import org.onosproject.net.intent.Key;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Local append-only journal of the changes to the networks, and of the
+ * intents this node indexed on their behalf.
+ * <p>
+ * Records are queued in memory, and written to a buffered journal file by
+ * {@link #flush()}, which runs periodically on a thread of its own, and on
+ * close; callers never wait for the file. Once enough records have been
+ * written, and the journal has grown to half the size of the last
+ * snapshot, so that the snapshots written add up to a small multiple of
+ * the journal, the flushing thread writes the state they add up to - the
+ * intents of the intent index and the recent changes of each network - to
+ * a snapshot file that atomically replaces the previous one, and the
+ * journal starts over empty. Records queued while the snapshot is taken
+ * go to the new journal, and replay idempotently over the snapshot.
+ * Opening the journal replays the snapshot and then the journal tail; a
+ * record torn by a crash ends the replay and is cut off the journal.
+ * </p>
+ * <p>
+ * The journal is a restart aid and an audit trail, not the source of
+ * truth: the network store holds the networks, and the intent service the
+ * intents. Without a directory, nothing is persisted and only the recent
+ * changes are kept, in memory.
+ * </p>
+ */
+final class NetworkJournal {
+
+    static final String SNAPSHOT = "byon-snapshot";
+    static final String JOURNAL = "byon-journal";
+
+    private static final int MAGIC = 0x42594f4e;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // the journal is compacted once it is this fraction of the last snapshot
+    private static final int SNAPSHOT_FRACTION = 2;
+
+    private static final byte CHANGE = 1;
+    private static final byte INTENT_ADDED = 2;
+    private static final byte INTENT_REMOVED = 3;
+    private static final byte INTENTS_REMOVED = 4;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final File directory;
+    private final ApplicationId appId;
+    private final int historySize;
+    private final Supplier<Map<String, Map<Key, Map.Entry<HostId, HostId>>>> intentSource;
+    private volatile int compactionThreshold;
+
+    // network -> recent changes, oldest first; guarded by this
+    private final Map<String, Deque<NetworkChange>> history = Maps.newHashMap();
+    // records not yet written to the journal file
+    private final Queue<RecordWriter> pending = new ConcurrentLinkedQueue<>();
+    private volatile boolean journaling = false;
+    // network -> intent key -> hosts of the intent, as replayed on open
+    private Map<String, Map<Key, Map.Entry<HostId, HostId>>> replayed = Maps.newHashMap();
+
+    // guards the journal file
+    private final Object io = new Object();
+    private DataOutputStream out;
+    private int written = 0;
+    // bytes of the journal file, of the last snapshot, and written since opened
+    private long journalSize = 0;
+    private long snapshotSize = 0;
+    private long bytesWritten = 0;
+
+    // writes a record to the journal or to a snapshot
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Creates a new journal.
+     *
+     * @param directory directory of the journal files; null to persist nothing
+     * @param appId application id of the journaled intent keys
+     * @param compactionThreshold least number of records written between snapshots
+     * @param historySize number of recent changes kept per network
+     * @param intentSource supplies the indexed intents of each network when
+     *                     a snapshot is written
+     */
+    NetworkJournal(File directory, ApplicationId appId, int compactionThreshold, int historySize,
+                   Supplier<Map<String, Map<Key, Map.Entry<HostId, HostId>>>> intentSource) {
+        this.directory = directory;
+        this.appId = appId;
+        this.compactionThreshold = compactionThreshold;
+        this.historySize = historySize;
+        this.intentSource = intentSource;
+    }
+
+    /**
+     * Replays the snapshot and the journal, and opens the journal for
+     * appending. The journal is left closed if its files cannot be used.
+     */
+    void open() {
+        if (directory == null) {
+            return;
+        }
+        synchronized (io) {
+            try {
+                Files.createDirectories(directory.toPath());
+                File snapshot = new File(directory, SNAPSHOT);
+                if (snapshot.exists()) {
+                    replay(snapshot);
+                    snapshotSize = snapshot.length();
+                }
+                File journal = new File(directory, JOURNAL);
+                long valid = journal.exists() ? replay(journal) : 0;
+                if (valid == 0) {
+                    out = newJournal();
+                } else {
+                    try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+                        file.setLength(valid);
+                    }
+                    out = new DataOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(journal, true), BUFFER_SIZE));
+                    journalSize = valid;
+                }
+                journaling = true;
+            } catch (IOException e) {
+                log.warn("Unable to open the network journal in {}; changes are not journaled",
+                         directory, e);
+                out = null;
+            }
+        }
+    }
+
+    /**
+     * Writes the queued records and a snapshot, so that the next replay is
+     * a short one, and closes the journal.
+     */
+    void close() {
+        synchronized (io) {
+            if (out == null) {
+                return;
+            }
+            try {
+                compact();
+                out.close();
+            } catch (IOException e) {
+                log.warn("Unable to close the network journal in {}", directory, e);
+            }
+            out = null;
+            journaling = false;
+            pending.clear();
+        }
+    }
+
+    /**
+     * Writes the queued records to the journal file, and writes a snapshot
+     * once enough records piled up. To be run on a thread of its own.
+     */
+    void flush() {
+        synchronized (io) {
+            if (out == null) {
+                return;
+            }
+            try {
+                write(drain());
+                out.flush();
+                if (written >= compactionThreshold
+                        && journalSize >= snapshotSize / SNAPSHOT_FRACTION) {
+                    compact();
+                }
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+    }
+
+    /**
+     * Sets the least number of records written between snapshots.
+     *
+     * @param threshold number of records
+     */
+    void setCompactionThreshold(int threshold) {
+        compactionThreshold = threshold;
+    }
+
+    /**
+     * Records a change to a network.
+     *
+     * @param change network change
+     */
+    void changed(NetworkChange change) {
+        // queued along with the history update, so that a snapshot of the
+        // history holds exactly the changes queued before it
+        synchronized (this) {
+            addChange(change);
+            append(out -> writeChange(out, change));
+        }
+    }
+
+    /**
+     * Records the intent between two hosts of a network.
+     *
+     * @param network network name
+     * @param one host one
+     * @param two host two
+     * @param key intent key
+     */
+    void intentAdded(String network, HostId one, HostId two, Key key) {
+        append(out -> writeIntent(out, network, one, two, key));
+    }
+
+    /**
+     * Forgets an intent of a network.
+     *
+     * @param network network name
+     * @param key intent key
+     */
+    void intentRemoved(String network, Key key) {
+        append(out -> {
+            out.writeByte(INTENT_REMOVED);
+            out.writeUTF(network);
+            out.writeUTF(key.toString());
+        });
+    }
+
+    /**
+     * Forgets all the intents of a network.
+     *
+     * @param network network name
+     */
+    void intentsRemoved(String network) {
+        append(out -> {
+            out.writeByte(INTENTS_REMOVED);
+            out.writeUTF(network);
+        });
+    }
+
+    /**
+     * Returns the intents recorded for each network when the journal was
+     * opened, and forgets them; the intent index holds them from then on.
+     *
+     * @return network to intent key to hosts of the intent
+     */
+    synchronized Map<String, Map<Key, Map.Entry<HostId, HostId>>> intents() {
+        ImmutableMap.Builder<String, Map<Key, Map.Entry<HostId, HostId>>> builder = ImmutableMap.builder();
+        replayed.forEach((network, keys) -> builder.put(network, ImmutableMap.copyOf(keys)));
+        replayed = Maps.newHashMap();
+        return builder.build();
+    }
+
+    /**
+     * Returns the recent changes to a network.
+     *
+     * @param network network name
+     * @return changes, oldest first
+     */
+    synchronized List<NetworkChange> history(String network) {
+        Deque<NetworkChange> changes = history.get(network);
+        return changes == null ? ImmutableList.of() : ImmutableList.copyOf(changes);
+    }
+
+    private void addChange(NetworkChange change) {
+        Deque<NetworkChange> changes = history.computeIfAbsent(change.network(), k -> Lists.newLinkedList());
+        changes.addLast(change);
+        if (changes.size() > historySize) {
+            changes.removeFirst();
+        }
+    }
+
+    private void addIntent(String network, HostId one, HostId two, Key key) {
+        replayed.computeIfAbsent(network, k -> Maps.newHashMap()).put(key, Maps.immutableEntry(one, two));
+    }
+
+    private void removeIntent(String network, Key key) {
+        Map<Key, Map.Entry<HostId, HostId>> keys = replayed.get(network);
+        if (keys != null && keys.remove(key) != null && keys.isEmpty()) {
+            replayed.remove(network);
+        }
+    }
+
+    // queues a record for the journal file
+    private void append(RecordWriter writer) {
+        if (journaling) {
+            pending.add(writer);
+        }
+    }
+
+    // takes the queued records
+    private List<RecordWriter> drain() {
+        List<RecordWriter> records = Lists.newArrayList();
+        for (RecordWriter record = pending.poll(); record != null; record = pending.poll()) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Returns the number of bytes written to the journal and the snapshots
+     * since the journal was opened.
+     *
+     * @return number of bytes
+     */
+    long bytesWritten() {
+        synchronized (io) {
+            return bytesWritten;
+        }
+    }
+
+    private void write(List<RecordWriter> records) throws IOException {
+        int size = out.size();
+        for (RecordWriter record : records) {
+            record.write(out);
+        }
+        written += records.size();
+        journalSize += out.size() - size;
+        bytesWritten += out.size() - size;
+    }
+
+    private void failed(IOException e) {
+        log.warn("Unable to write the network journal in {}; changes are no longer journaled",
+                 directory, e);
+        journaling = false;
+        pending.clear();
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // already failing
+        }
+        out = null;
+    }
+
+    /**
+     * Writes the intents of the intent index and the recent changes of the
+     * networks to a new snapshot, and empties the journal. The history of
+     * deleted networks is dropped. Only the history is copied under the
+     * monitor of the journal; the intents are read from the index, and the
+     * files written, without holding any lock but the one of the file.
+     *
+     * @throws IOException if the snapshot or the journal cannot be written
+     */
+    private void compact() throws IOException {
+        List<RecordWriter> records;
+        List<NetworkChange> changes = Lists.newArrayList();
+        synchronized (this) {
+            records = drain();
+            history.values().removeIf(c -> c.getLast().type() == NetworkEvent.Type.NETWORK_REMOVED);
+            history.values().forEach(changes::addAll);
+        }
+        // the journal holds everything up to the snapshot, should writing it fail
+        write(records);
+        out.flush();
+        Map<String, Map<Key, Map.Entry<HostId, HostId>>> intents = intentSource.get();
+
+        File temporary = new File(directory, SNAPSHOT + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary)) {
+            DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE));
+            snapshot.writeInt(MAGIC);
+            for (NetworkChange change : changes) {
+                writeChange(snapshot, change);
+            }
+            for (Map.Entry<String, Map<Key, Map.Entry<HostId, HostId>>> entry : intents.entrySet()) {
+                for (Map.Entry<Key, Map.Entry<HostId, HostId>> intent : entry.getValue().entrySet()) {
+                    writeIntent(snapshot, entry.getKey(), intent.getValue().getKey(),
+                                intent.getValue().getValue(), intent.getKey());
+                }
+            }
+            snapshot.flush();
+            file.getFD().sync();
+            snapshotSize = snapshot.size();
+            bytesWritten += snapshotSize;
+        }
+        Files.move(temporary.toPath(), new File(directory, SNAPSHOT).toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        out.close();
+        out = newJournal();
+        written = 0;
+    }
+
+    // creates an empty journal file
+    private DataOutputStream newJournal() throws IOException {
+        DataOutputStream journal = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(new File(directory, JOURNAL), false), BUFFER_SIZE));
+        journal.writeInt(MAGIC);
+        journal.flush();
+        journalSize = journal.size();
+        return journal;
+    }
+
+    /**
+     * Applies the records of a file.
+     *
+     * @param file snapshot or journal file
+     * @return length of the file up to the last complete record; 0 if the
+     * file is not a journal file
+     * @throws IOException if the file cannot be read
+     */
+    private long replay(File file) throws IOException {
+        try (CountingInputStream counter = new CountingInputStream(
+                new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            DataInputStream in = new DataInputStream(counter);
+            if (file.length() < Integer.BYTES || in.readInt() != MAGIC) {
+                log.warn("Ignoring {}, which is not a network journal file", file);
+                return 0;
+            }
+            long valid = counter.getCount();
+            int records = 0;
+            while (valid < file.length()) {
+                try {
+                    readRecord(in);
+                } catch (EOFException | RuntimeException e) {
+                    log.warn("Ignoring the torn end of {} past {} bytes", file, valid);
+                    break;
+                }
+                valid = counter.getCount();
+                records++;
+            }
+            log.info("Replayed {} records of {}", records, file);
+            return valid;
+        }
+    }
+
+    // reads a whole record before applying it, so that a torn one is not applied
+    private void readRecord(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        String network;
+        switch (type) {
+            case CHANGE:
+                long time = in.readLong();
+                NetworkEvent.Type changeType = NetworkEvent.Type.values()[in.readByte()];
+                network = in.readUTF();
+                byte mode = in.readByte();
+                Set<HostId> added = readHosts(in);
+                Set<HostId> removed = readHosts(in);
+                addChange(new NetworkChange(time, changeType, network,
+                                            mode < 0 ? null : ConnectivityMode.values()[mode],
+                                            added, removed));
+                break;
+            case INTENT_ADDED:
+                network = in.readUTF();
+                HostId one = CompactHostSet.decode(in.readLong());
+                HostId two = CompactHostSet.decode(in.readLong());
+                Key key = Key.of(in.readUTF(), appId);
+                addIntent(network, one, two, key);
+                break;
+            case INTENT_REMOVED:
+                network = in.readUTF();
+                removeIntent(network, Key.of(in.readUTF(), appId));
+                break;
+            case INTENTS_REMOVED:
+                replayed.remove(in.readUTF());
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record " + type);
+        }
+    }
+
+    private static Set<HostId> readHosts(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        // not presized, as the count of a torn record may be garbage
+        Set<HostId> hosts = Sets.newHashSet();
+        for (int i = 0; i < count; i++) {
+            hosts.add(CompactHostSet.decode(in.readLong()));
+        }
+        return hosts;
+    }
+
+    private static void writeChange(DataOutputStream out, NetworkChange change) throws IOException {
+        out.writeByte(CHANGE);
+        out.writeLong(change.time());
+        out.writeByte(change.type().ordinal());
+        out.writeUTF(change.network());
+        out.writeByte(change.mode() == null ? -1 : change.mode().ordinal());
+        writeHosts(out, change.addedHosts());
+        writeHosts(out, change.removedHosts());
+    }
+
+    private static void writeHosts(DataOutputStream out, Set<HostId> hosts) throws IOException {
+        out.writeInt(hosts.size());
+        for (HostId hostId : hosts) {
+            out.writeLong(CompactHostSet.encode(hostId));
+        }
+    }
+
+    private static void writeIntent(DataOutputStream out, String network, HostId one, HostId two, Key key)
+            throws IOException {
+        out.writeByte(INTENT_ADDED);
+        out.writeUTF(network);
+        out.writeLong(CompactHostSet.encode(one));
+        out.writeLong(CompactHostSet.encode(two));
+        out.writeUTF(key.toString());
+    }
+}
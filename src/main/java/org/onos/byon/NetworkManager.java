@@ -15,33 +15,98 @@
  */
 package org.onos.byon;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Striped;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onlab.util.Tools;
+import org.onosproject.cfg.ComponentConfigService;
+import org.onosproject.cluster.ClusterService;
+import org.onosproject.cluster.NodeId;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
 import org.onosproject.event.EventDeliveryService;
 import org.onosproject.event.ListenerRegistry;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
 import org.onosproject.net.HostId;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowRuleService;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.criteria.Criterion;
+import org.onosproject.net.flow.criteria.EthCriterion;
+import org.onosproject.net.host.HostEvent;
+import org.onosproject.net.host.HostListener;
+import org.onosproject.net.host.HostService;
 import org.onosproject.net.intent.HostToHostIntent;
 import org.onosproject.net.intent.Intent;
 import org.onosproject.net.intent.IntentService;
 import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.MultiPointToSinglePointIntent;
+import org.onosproject.net.intent.PartitionService;
+import org.onosproject.net.packet.PacketContext;
+import org.onosproject.net.packet.PacketPriority;
+import org.onosproject.net.packet.PacketProcessor;
+import org.onosproject.net.packet.PacketService;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
-import static java.lang.String.format;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static com.google.common.base.Strings.nullToEmpty;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static org.onlab.util.Tools.groupedThreads;
 
 /**
  * BYON Application component.
@@ -52,213 +117,2224 @@ public class NetworkManager implements NetworkService {
 
     private static Logger log = LoggerFactory.getLogger(NetworkManager.class);
 
+    // Layout of the keys produced by IntentKeyCodec
     public static final String HOST_FORMAT = "%s~%s";
     public static final String KEY_FORMAT = "%s,%s";
 
+    private static final int DEFAULT_MAX_BATCH_SIZE = 500;
+    private static final int DEFAULT_MAX_BATCH_LINGER_MS = 50;
+    private static final int DEFAULT_MAX_PENDING_INTENTS = 20000;
+    private static final int DEFAULT_EVENT_WINDOW_MS = 50;
+    private static final int DEFAULT_RECONCILE_INTERVAL_SEC = 60;
+    private static final int DEFAULT_RECONCILE_RATE = 100;
+    private static final boolean DEFAULT_REPLACE_RETAGGED_HOSTS = true;
+    private static final int DEFAULT_REACTIVE_IDLE_TIMEOUT_SEC = 300;
+    private static final int DEFAULT_JOURNAL_COMPACTION_THRESHOLD = 100000;
+    private static final int DEFAULT_MAX_NETWORKS = 0;
+    private static final int DEFAULT_MAX_HOSTS_PER_NETWORK = 0;
+    private static final int DEFAULT_NETWORK_HOST_ADD_RATE = 0;
+    private static final int DEFAULT_HOST_ADD_RATE = 0;
+    private static final int DEFAULT_INTENT_SUBMIT_RATE = 0;
+    private static final int DEFAULT_ADMISSION_QUEUE_MS = 1000;
+    private static final int JOURNAL_HISTORY_SIZE = 100;
+    private static final long JOURNAL_FLUSH_MS = 1000;
+    private static final int ASYNC_THREADS = 8;
+    private static final int TEARDOWN_THREADS = 4;
+    // time done teardowns remain listed
+    private static final long TEARDOWN_RETENTION_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final int NETWORK_LOCK_STRIPES = 1024;
+    private static final int REQUEST_THREADS = 8;
+    private static final long FORWARD_TIMEOUT_SEC = 30;
+
+    @Property(name = "maxBatchSize", intValue = DEFAULT_MAX_BATCH_SIZE,
+            label = "Maximum number of intent operations handed to the intent service at once")
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    @Property(name = "maxBatchLingerMs", intValue = DEFAULT_MAX_BATCH_LINGER_MS,
+            label = "Maximum time in millis an intent operation waits for its batch to fill")
+    private int maxBatchLingerMs = DEFAULT_MAX_BATCH_LINGER_MS;
+
+    @Property(name = "maxPendingIntents", intValue = DEFAULT_MAX_PENDING_INTENTS,
+            label = "Maximum number of queued and uncompleted intent operations " +
+                    "before callers are blocked")
+    private int maxPendingIntents = DEFAULT_MAX_PENDING_INTENTS;
+
+    @Property(name = "eventWindowMs", intValue = DEFAULT_EVENT_WINDOW_MS,
+            label = "Window in millis during which the host updates of a network " +
+                    "are coalesced into a single event")
+    private int eventWindowMs = DEFAULT_EVENT_WINDOW_MS;
+
+    @Property(name = "reconcileIntervalSec", intValue = DEFAULT_RECONCILE_INTERVAL_SEC,
+            label = "Interval in seconds between two reconciliations of the network " +
+                    "memberships with the installed intents; 0 disables reconciliation")
+    private int reconcileIntervalSec = DEFAULT_RECONCILE_INTERVAL_SEC;
+
+    @Property(name = "reconcileRate", intValue = DEFAULT_RECONCILE_RATE,
+            label = "Maximum number of intents submitted or withdrawn per second " +
+                    "to repair drift found by reconciliation")
+    private int reconcileRate = DEFAULT_RECONCILE_RATE;
+
+    @Property(name = "replaceRetaggedHosts", boolValue = DEFAULT_REPLACE_RETAGGED_HOSTS,
+            label = "Replace a host of a network that disappears by the one host that appears " +
+                    "with the same MAC address and another VLAN id")
+    private boolean replaceRetaggedHosts = DEFAULT_REPLACE_RETAGGED_HOSTS;
+
+    @Property(name = "reactiveIdleTimeoutSec", intValue = DEFAULT_REACTIVE_IDLE_TIMEOUT_SEC,
+            label = "Time in seconds after which the intent of a pair of hosts of a reactive " +
+                    "network is withdrawn if the pair exchanges no traffic; 0 keeps them")
+    private int reactiveIdleTimeoutSec = DEFAULT_REACTIVE_IDLE_TIMEOUT_SEC;
+
+    @Property(name = "journalCompactionThreshold", intValue = DEFAULT_JOURNAL_COMPACTION_THRESHOLD,
+            label = "Least number of records appended to the network journal before it is " +
+                    "compacted into a snapshot; it is also left to grow to half the snapshot")
+    private int journalCompactionThreshold = DEFAULT_JOURNAL_COMPACTION_THRESHOLD;
+
+    @Property(name = "maxNetworks", intValue = DEFAULT_MAX_NETWORKS,
+            label = "Maximum number of networks; 0 for no limit")
+    private int maxNetworks = DEFAULT_MAX_NETWORKS;
+
+    @Property(name = "maxHostsPerNetwork", intValue = DEFAULT_MAX_HOSTS_PER_NETWORK,
+            label = "Maximum number of hosts in a network; 0 for no limit")
+    private int maxHostsPerNetwork = DEFAULT_MAX_HOSTS_PER_NETWORK;
+
+    @Property(name = "networkHostAddRate", intValue = DEFAULT_NETWORK_HOST_ADD_RATE,
+            label = "Maximum number of hosts added per second to a network; 0 for no limit")
+    private int networkHostAddRate = DEFAULT_NETWORK_HOST_ADD_RATE;
+
+    @Property(name = "hostAddRate", intValue = DEFAULT_HOST_ADD_RATE,
+            label = "Maximum number of hosts added per second to all the networks; 0 for no limit")
+    private int hostAddRate = DEFAULT_HOST_ADD_RATE;
+
+    @Property(name = "intentSubmitRate", intValue = DEFAULT_INTENT_SUBMIT_RATE,
+            label = "Maximum number of intents per second the added hosts are expected " +
+                    "to submit for all the networks; 0 for no limit")
+    private int intentSubmitRate = DEFAULT_INTENT_SUBMIT_RATE;
+
+    @Property(name = "admissionQueueMs", intValue = DEFAULT_ADMISSION_QUEUE_MS,
+            label = "Maximum time in millis a host addition waits for the rate limits " +
+                    "before it is rejected; 0 rejects it right away")
+    private int admissionQueueMs = DEFAULT_ADMISSION_QUEUE_MS;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected NetworkStore store;
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CoreService coreService;
 
-    /*
-     * TODO Lab 3: Get a reference to the intent service
-     *
-     * All you need to do is uncomment the following two lines.
-     */
-    //@Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
-    //protected IntentService intentService;
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected IntentService intentService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService cfgService;
 
-    /*
-     * TODO Lab 6: Get a reference to the event delivery service
-     *
-     * All you need to do is uncomment the following two lines.
-     */
-    //@Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
-    //protected EventDeliveryService eventDispatcher;
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected HostService hostService;
 
-    /*
-     * TODO Lab 6: Construct a ListenerRegistry<NetworkEvent, NetworkListener>
-     *
-     * This will be used to keep track of external listeners.
-     */
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected EventDeliveryService eventDispatcher;
 
-    /*
-     * TODO Lab 6: Instantiate a NetworkStoreDelegate
-     *
-     * You will first need to implement the class (at the bottom of the file).
-     */
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected PartitionService partitionService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ClusterService clusterService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ClusterCommunicationService clusterCommunicator;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected PacketService packetService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected FlowRuleService flowRuleService;
+
+    private final ListenerRegistry<NetworkEvent, NetworkListener> listenerRegistry =
+            new ListenerRegistry<>();
+
+    private final NetworkStoreDelegate delegate = new InternalStoreDelegate();
+    private final HostListener hostListener = new InternalHostListener();
+    private NetworkEventCoalescer eventCoalescer;
 
     protected ApplicationId appId;
 
+    // directory of the network journal; none outside of Karaf, as in unit tests
+    File journalDirectory = System.getProperty("karaf.data") == null ? null :
+            new File(System.getProperty("karaf.data"), "byon");
+    private NetworkJournal journal;
+    // writes and compacts the journal, apart from the intent work
+    private ScheduledExecutorService journalExecutor;
+
+    private NetworkIntentIndex intentIndex;
+
+    // limits the rate of host additions and the size of the networks
+    private final NetworkAdmission admission = new NetworkAdmission();
+    private IntentBatcher intentBatcher;
+    private NetworkIntentTracker intentTracker;
+
+    // serializes the mutations of each network; see withNetworkLock
+    private final Striped<Lock> networkLocks = Striped.lock(NETWORK_LOCK_STRIPES);
+
+    private ExecutorService asyncExecutor;
+    // network -> latest asynchronous operation queued on the network
+    private final Map<String, CompletableFuture<?>> networkTails = Maps.newConcurrentMap();
+
+    private final RateLimiter reconcileLimiter = RateLimiter.create(DEFAULT_RECONCILE_RATE);
+    private final Object reconcileLock = new Object();
+    private ScheduledExecutorService reconcileExecutor;
+    private ScheduledFuture<?> reconcileTask;
+    private final AtomicBoolean rebalancePending = new AtomicBoolean();
+
+    private ExecutorService teardownExecutor;
+    // network -> latest teardown of the network
+    private final Map<String, NetworkTeardown> teardowns = Maps.newConcurrentMap();
+
+    // decides which node does the intent work of each network
+    private NetworkOwnership ownership;
+    private ExecutorService requestExecutor;
+
+    // pairs of hosts of reactive networks connected on their first packet
+    private final ReactivePairs reactivePairs = new ReactivePairs(System::currentTimeMillis);
+    private final PacketProcessor packetProcessor = new InternalPacketProcessor();
+    // MACs of the hosts of reactive networks, whose packets are requested; guarded by itself
+    private final Set<MacAddress> packetMacs = Sets.newHashSet();
+    // packet service calls queued in order on the async executor; guarded by packetMacs
+    private CompletableFuture<Void> packetCalls = CompletableFuture.completedFuture(null);
+    // set once the packet requests are cancelled on deactivation; guarded by packetMacs
+    private boolean packetsStopped;
+    private ScheduledFuture<?> idleTask;
+
     @Activate
-    protected void activate() {
+    protected void activate(ComponentContext context) {
+        cfgService.registerProperties(getClass());
         appId = coreService.registerApplication("org.onos.byon");
-        /*
-         * TODO Lab 6: Remove delegate and event sink
-         *
-         * 1. Add the listener registry to the event dispatcher using eventDispatcher.addSink()
-         * 2. Set the delegate in the store
-         */
+        intentTracker = new NetworkIntentTracker(appId, metricsService);
+        ownership = new NetworkOwnership(appId, partitionService, clusterService,
+                                         clusterCommunicator, FORWARD_TIMEOUT_SEC);
+        journal = new NetworkJournal(journalDirectory, appId, journalCompactionThreshold,
+                                     JOURNAL_HISTORY_SIZE, () -> intentIndex.intents());
+        journal.open();
+        intentIndex = new NetworkIntentIndex(journal);
+        boolean restored = rebuildIntentIndex();
+        intentTracker.start(intentService);
+        intentBatcher = new IntentBatcher(intentService, this::batchFailed);
+        eventCoalescer = new NetworkEventCoalescer(
+                eventDispatcher::post,
+                newSingleThreadScheduledExecutor(groupedThreads("onos/byon", "event-coalescer")),
+                eventWindowMs);
+        reconcileExecutor = newSingleThreadScheduledExecutor(groupedThreads("onos/byon", "reconciler"));
+        journalExecutor = newSingleThreadScheduledExecutor(groupedThreads("onos/byon", "journal"));
+        journalExecutor.scheduleWithFixedDelay(journal::flush, JOURNAL_FLUSH_MS, JOURNAL_FLUSH_MS,
+                                               TimeUnit.MILLISECONDS);
+        modified(context);
+        intentBatcher.start(newSingleThreadExecutor(groupedThreads("onos/byon", "intent-batcher")));
+        asyncExecutor = newFixedThreadPool(ASYNC_THREADS, groupedThreads("onos/byon", "async-%d"));
+        teardownExecutor = newFixedThreadPool(TEARDOWN_THREADS, groupedThreads("onos/byon", "teardown-%d"));
+        eventDispatcher.addSink(NetworkEvent.class, listenerRegistry);
+        store.setDelegate(delegate);
+        hostService.addListener(hostListener);
+        requestReactivePackets();
+        requestExecutor = newFixedThreadPool(REQUEST_THREADS, groupedThreads("onos/byon", "request-%d"));
+        ownership.start(this::handleRequest, requestExecutor,
+                        this::scheduleRebalance);
+        resumeTeardowns();
+        if (restored) {
+            // adopts, in the background, the intents the journal missed
+            scheduleRebalance();
+        }
         log.info("Started");
     }
 
     @Deactivate
     protected void deactivate() {
-        /*
-         * TODO Lab 6: Remove delegate and event sink
-         *
-         * 1. Remove the event class from the event dispatcher using eventDispatcher.removeSink()
-         * 2. Unset the delegate from the store
-         */
+        ownership.stop();
+        requestExecutor.shutdown();
+        cancelReactivePackets();
+        hostService.removeListener(hostListener);
+        reconcileExecutor.shutdownNow();
+        teardowns.values().forEach(NetworkTeardown::cancel);
+        teardownExecutor.shutdown();
+        asyncExecutor.shutdown();
+        store.unsetDelegate(delegate);
+        eventCoalescer.stop();
+        eventDispatcher.removeSink(NetworkEvent.class);
+        intentBatcher.stop();
+        intentTracker.stop(intentService);
+        // a flush still running finishes before the journal closes
+        journalExecutor.shutdown();
+        journal.close();
+        cfgService.unregisterProperties(getClass(), false);
         log.info("Stopped");
     }
 
+    @Modified
+    protected void modified(ComponentContext context) {
+        Dictionary<?, ?> properties = context != null ? context.getProperties() : new Properties();
+        int batchSize = getIntegerProperty(properties, "maxBatchSize", maxBatchSize);
+        int lingerMs = getIntegerProperty(properties, "maxBatchLingerMs", maxBatchLingerMs);
+        int pending = getIntegerProperty(properties, "maxPendingIntents", maxPendingIntents);
+        int windowMs = getIntegerProperty(properties, "eventWindowMs", eventWindowMs);
+        int intervalSec = getIntegerProperty(properties, "reconcileIntervalSec", reconcileIntervalSec);
+        int rate = getIntegerProperty(properties, "reconcileRate", reconcileRate);
+        boolean replaceRetagged = getBooleanProperty(properties, "replaceRetaggedHosts",
+                                                     replaceRetaggedHosts);
+        int idleSec = getIntegerProperty(properties, "reactiveIdleTimeoutSec", reactiveIdleTimeoutSec);
+        int compactionThreshold = getIntegerProperty(properties, "journalCompactionThreshold",
+                                                     journalCompactionThreshold);
+        int networks = getIntegerProperty(properties, "maxNetworks", maxNetworks);
+        int hostsPerNetwork = getIntegerProperty(properties, "maxHostsPerNetwork", maxHostsPerNetwork);
+        int networkHostRate = getIntegerProperty(properties, "networkHostAddRate", networkHostAddRate);
+        int hostRate = getIntegerProperty(properties, "hostAddRate", hostAddRate);
+        int intentRate = getIntegerProperty(properties, "intentSubmitRate", intentSubmitRate);
+        int queueMs = getIntegerProperty(properties, "admissionQueueMs", admissionQueueMs);
+        try {
+            checkArgument(intervalSec >= 0, "Reconciliation interval cannot be negative");
+            checkArgument(idleSec >= 0, "Reactive idle timeout cannot be negative");
+            checkArgument(rate > 0, "Reconciliation rate must be positive");
+            checkArgument(compactionThreshold > 0, "Journal compaction threshold must be positive");
+            intentBatcher.setLimits(batchSize, lingerMs, pending);
+            eventCoalescer.setWindow(windowMs);
+            admission.setLimits(networks, hostsPerNetwork, networkHostRate, hostRate, intentRate, queueMs);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring intent batch, event, reconciliation and admission configuration: {}",
+                     e.getMessage());
+            return;
+        }
+        maxBatchSize = batchSize;
+        maxBatchLingerMs = lingerMs;
+        maxPendingIntents = pending;
+        eventWindowMs = windowMs;
+        reconcileRate = rate;
+        reconcileLimiter.setRate(rate);
+        replaceRetaggedHosts = replaceRetagged;
+        journalCompactionThreshold = compactionThreshold;
+        maxNetworks = networks;
+        maxHostsPerNetwork = hostsPerNetwork;
+        networkHostAddRate = networkHostRate;
+        hostAddRate = hostRate;
+        intentSubmitRate = intentRate;
+        admissionQueueMs = queueMs;
+        journal.setCompactionThreshold(compactionThreshold);
+        if (intervalSec != reconcileIntervalSec || reconcileTask == null) {
+            reconcileIntervalSec = intervalSec;
+            scheduleReconciliation();
+        }
+        if (idleSec != reactiveIdleTimeoutSec || idleTask == null) {
+            reactiveIdleTimeoutSec = idleSec;
+            scheduleIdleWithdrawal();
+        }
+        log.info("Configured. Intent batches of at most {} lingering {}ms, {} pending; " +
+                         "events coalesced over {}ms; reconciliation every {}s at {} repairs/s; " +
+                         "retagged hosts replaced: {}; reactive pairs idle after {}s; " +
+                         "journal compacted every {} records; at most {} networks of {} hosts; " +
+                         "{} host adds/s per network, {} host adds/s, {} intents/s, queued {}ms",
+                 maxBatchSize, maxBatchLingerMs, maxPendingIntents, eventWindowMs,
+                 reconcileIntervalSec, reconcileRate, replaceRetaggedHosts, reactiveIdleTimeoutSec,
+                 journalCompactionThreshold, maxNetworks, maxHostsPerNetwork, networkHostAddRate,
+                 hostAddRate, intentSubmitRate, admissionQueueMs);
+    }
+
+    // (re)starts the periodic reconciliation at the configured interval
+    private void scheduleReconciliation() {
+        if (reconcileTask != null) {
+            reconcileTask.cancel(false);
+        }
+        reconcileTask = reconcileIntervalSec == 0 ? null :
+                reconcileExecutor.scheduleWithFixedDelay(this::reconcilePeriodically,
+                                                         reconcileIntervalSec, reconcileIntervalSec,
+                                                         TimeUnit.SECONDS);
+    }
+
+    // (re)starts looking for idle reactive pairs, twice per idle timeout
+    private void scheduleIdleWithdrawal() {
+        if (idleTask != null) {
+            idleTask.cancel(false);
+        }
+        long periodMs = TimeUnit.SECONDS.toMillis(reactiveIdleTimeoutSec) / 2;
+        idleTask = reactiveIdleTimeoutSec == 0 ? null :
+                reconcileExecutor.scheduleWithFixedDelay(this::withdrawIdlePairs, periodMs, periodMs,
+                                                         TimeUnit.MILLISECONDS);
+    }
+
+    private void reconcilePeriodically() {
+        try {
+            List<IntentDrift> drifts = reconcile(false);
+            if (!drifts.isEmpty()) {
+                log.info("Repaired intent drift: {}", drifts);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to reconcile network intents", e);
+        }
+    }
+
+    // returns the integer value of a property, or the given default if unset or invalid
+    private static int getIntegerProperty(Dictionary<?, ?> properties, String name, int def) {
+        String s = Tools.get(properties, name);
+        try {
+            return isNullOrEmpty(s) ? def : Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value {} for property {}", s, name);
+            return def;
+        }
+    }
+
+    // returns the boolean value of a property, or the given default if unset
+    private static boolean getBooleanProperty(Dictionary<?, ?> properties, String name, boolean def) {
+        String s = Tools.get(properties, name);
+        return isNullOrEmpty(s) ? def : Boolean.parseBoolean(s.trim());
+    }
+
     @Override
     public void createNetwork(String network) {
+        createNetwork(network, ConnectivityMode.MESH);
+    }
+
+    @Override
+    public void createNetwork(String network, ConnectivityMode mode) {
         checkNotNull(network, "Network name cannot be null");
+        checkNotNull(mode, "Connectivity mode cannot be null");
         checkState(!network.contains(","), "Network names cannot contain commas");
-        /*
-         * TODO Lab 2: Add the network to the store
-         */
+        if (forwardToOwner(NetworkRequest.create(network, mode)) == null) {
+            createLocally(network, mode);
+        }
+    }
+
+    // creates a network owned by this node
+    private void createLocally(String network, ConnectivityMode mode) {
+        withNetworkLock(network, () -> {
+            checkState(!isTearingDown(network),
+                       "Network %s is still being torn down; resume its teardown first", network);
+            ConnectivityMode existing = store.findConnectivityMode(network);
+            if (existing != null) {
+                checkState(existing == mode, "Network %s already exists with connectivity mode %s",
+                           network, existing);
+                return null;
+            }
+            admission.admitNetwork(network, store::getNetworkCount);
+            try {
+                store.putNetwork(network, mode);
+            } finally {
+                admission.networkCreated();
+            }
+            return null;
+        });
     }
 
     @Override
     public void deleteNetwork(String network) {
         checkNotNull(network, "Network name cannot be null");
-        /*
-         * TODO Lab 2: Remove the network from the store
-         */
-        /*
-         * TODO Lab 4: Remove the intents when the network is deleted
-         */
+        if (forwardToOwner(NetworkRequest.delete(network, false)) == null) {
+            deleteLocally(network);
+        }
+    }
+
+    // deletes a network owned by this node and starts withdrawing its intents
+    private NetworkTeardown deleteLocally(String network) {
+        return withNetworkLock(network, () -> {
+            store.removeNetwork(network);
+            admission.forget(network);
+            return startTeardown(network);
+        });
+    }
+
+    @Override
+    public AdmissionStats getAdmissionStats(String network) {
+        return admission.stats(network);
+    }
+
+    @Override
+    public List<NetworkChange> getHistory(String network) {
+        checkNotNull(network, "Network name cannot be null");
+        return journal.history(network);
+    }
+
+    @Override
+    public List<TeardownStatus> getTeardowns() {
+        expireTeardowns();
+        return teardowns.values().stream()
+                .map(NetworkTeardown::status)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean cancelTeardown(String network) {
+        checkNotNull(network, "Network name cannot be null");
+        NetworkTeardown teardown = teardowns.get(network);
+        return teardown != null && teardown.cancel();
+    }
+
+    @Override
+    public boolean resumeTeardown(String network) {
+        checkNotNull(network, "Network name cannot be null");
+        NetworkTeardown teardown = teardowns.get(network);
+        return teardown != null && teardown.start();
+    }
+
+    /**
+     * Starts withdrawing all the intents of a deleted network in the
+     * background. A teardown still in progress for the network is cancelled
+     * and replaced, since the new one covers all the intents still indexed.
+     *
+     * @param network network name
+     * @return teardown of the network
+     */
+    private NetworkTeardown startTeardown(String network) {
+        expireTeardowns();
+        intentTracker.removed(network);
+        NetworkTeardown teardown = teardowns.compute(network, (k, previous) -> {
+            if (previous != null) {
+                previous.cancel();
+            }
+            Map<Key, Map.Entry<HostId, HostId>> intents = intentIndex.intents(network);
+            return new NetworkTeardown(network, ImmutableList.copyOf(intents.keySet()), key -> {
+                Map.Entry<HostId, HostId> hosts = intents.get(key);
+                return withdrawIntent(network, hosts.getKey(), hosts.getValue(), key);
+            }, teardownExecutor, maxBatchSize, TEARDOWN_THREADS);
+        });
+        teardown.start();
+        return teardown;
+    }
+
+    // forgets the teardowns done for longer than they are kept for
+    private void expireTeardowns() {
+        long expiry = System.currentTimeMillis() - TEARDOWN_RETENTION_MS;
+        teardowns.values().removeIf(teardown -> teardown.doneBefore(expiry));
+    }
+
+    // true if the intents of a deleted network are still being, or are to be, withdrawn
+    private boolean isTearingDown(String network) {
+        NetworkTeardown teardown = teardowns.get(network);
+        return teardown != null && !teardown.isDone();
+    }
+
+    /**
+     * Resumes the teardown of the networks that were deleted while some of
+     * their intents remained, for instance because this instance stopped
+     * in the middle of the teardown. The removal of a network from the
+     * store is what marks it for teardown, so nothing else needs to persist.
+     */
+    private void resumeTeardowns() {
+        Set<String> networks = store.getNetworks();
+        for (String network : intentIndex.networks()) {
+            if (!networks.contains(network) && !isTearingDown(network)) {
+                log.info("Resuming teardown of network {}", network);
+                startTeardown(network);
+            }
+        }
     }
 
     @Override
     public Set<String> getNetworks() {
-        /*
-         * TODO Lab 2: Get the networks from the store and return them
-         */
-        return ImmutableSet.of("my-network"); // TODO remove this line before starting lab 2
+        return store.getNetworks();
+    }
+
+    @Override
+    public Page<String> getNetworks(String prefix, String after, int limit) {
+        checkArgument(limit > 0, "Limit must be positive");
+        NavigableSet<String> names = store.getNetworks(nullToEmpty(prefix));
+        if (after != null) {
+            names = names.tailSet(after, false);
+        }
+        // one more than the limit tells whether there is a next page
+        List<String> items = names.stream().limit(limit + 1L).collect(Collectors.toList());
+        if (items.size() <= limit) {
+            return new Page<>(items, null);
+        }
+        return new Page<>(items.subList(0, limit), items.get(limit - 1));
+    }
+
+    @Override
+    public int getNetworkCount(String prefix) {
+        if (isNullOrEmpty(prefix)) {
+            return store.getNetworkCount();
+        }
+        // walks the matching names of the index
+        return store.getNetworks(prefix).size();
+    }
+
+    @Override
+    public ConnectivityMode getConnectivityMode(String network) {
+        checkNotNull(network, "Network name cannot be null");
+        return store.getConnectivityMode(network);
+    }
+
+    @Override
+    public ConnectivityMode findConnectivityMode(String network) {
+        checkNotNull(network, "Network name cannot be null");
+        return store.findConnectivityMode(network);
     }
 
     @Override
     public void addHost(String network, HostId hostId) {
         checkNotNull(network, "Network name cannot be null");
         checkNotNull(hostId, "HostId cannot be null");
-        /*
-         * TODO Lab 2: Add the host to the network in the store
-         *
-         * TODO Lab 3: Connect the host to the network using intents -- addIntents()
-         *     You only need to add the intents if this is the first time that
-         *     the host is added. (Check the store's return value)
-         */
+        if (forwardToOwner(NetworkRequest.addHosts(network, ImmutableList.of(hostId), false)) == null) {
+            boolean delayed = awaitAdmission(network, ImmutableSet.of(hostId));
+            withNetworkLock(network, () -> addMember(network, hostId, delayed));
+        }
     }
 
     @Override
     public void removeHost(String network, HostId hostId) {
         checkNotNull(network, "Network name cannot be null");
         checkNotNull(hostId, "HostId cannot be null");
-        /*
-         * TODO Lab 2: Remove the host from the network in the store
-         *
-         * TODO Lab 4: Remove the host's intents from the network
-         */
+        if (forwardToOwner(NetworkRequest.removeHosts(network, ImmutableList.of(hostId), false)) == null) {
+            withNetworkLock(network, () -> removeMember(network, hostId));
+        }
     }
 
-    @Override
-    public Set<HostId> getHosts(String network) {
-        checkNotNull(network, "Network name cannot be null");
-        /*
-         * TODO Lab 2: Retrieve the hosts from the store and return them
-         */
-        return ImmutableSet.of(); // TODO remove this line before starting lab 2
+    // adds a host to a network and connects it; true if it was not there before
+    private boolean addMember(String network, HostId hostId, boolean delayed) {
+        admitHosts(network, ImmutableSet.of(hostId), delayed);
+        long start = System.nanoTime();
+        if (!store.addHost(network, hostId)) {
+            return false;
+        }
+        connectHosts(network, ImmutableSet.of(hostId));
+        trackConvergence(network, ImmutableSet.of(hostId), start);
+        return true;
     }
 
     /**
-     * Adds an intent between a new host and all others in the network.
+     * Waits for the rate limits to let hosts join a network. To be called
+     * before taking the lock of the network, so that a throttled mutation
+     * does not hold up other networks; hosts already in the network are
+     * let through.
      *
      * @param network network name
-     * @param src the new host
-     * @param hostsInNet all hosts in the network
+     * @param hostIds hosts to add
+     * @return true if the hosts had to wait
+     * @throws IllegalStateException if the hosts are over the quota or
+     * the rate limits
      */
-    private void addIntents(String network, HostId src, Set<HostId> hostsInNet) {
-        /*
-         * TODO Lab 3: Implement add intents
-         *
-         * 1. Create a HostToHostIntent intent between src and every other host in
-         *    the network using HostToHostIntent.builder()
-         * 2. Generate the intent key using generateKey(), so they can be removed later
-         * 3. Submit the intents using intentService.submit()
-         */
+    private boolean awaitAdmission(String network, Collection<HostId> hostIds) {
+        Set<HostId> hosts = store.getHosts(network);
+        int added = joining(hosts, hostIds);
+        if (added == 0) {
+            return false;
+        }
+        ConnectivityMode mode = store.getConnectivityMode(network);
+        int intents = 0;
+        for (int i = 0; i < added; i++) {
+            intents += intentCost(mode, hosts.size() + i);
+        }
+        return admission.awaitHosts(network, hosts.size(), added, intents);
     }
 
     /**
-     * Removes intents that involve the specified host in a network.
+     * Admits the hosts joining a network once they passed the rate limits.
+     * To be called while holding the lock of the network, so that the host
+     * quota holds.
      *
      * @param network network name
-     * @param hostId host to remove; all hosts if empty
+     * @param hostIds hosts to add
+     * @param delayed true if the hosts had to wait for the rate limits
+     * @throws IllegalStateException if the hosts are over the quota
      */
-    private void removeIntents(String network, Optional<HostId> hostId) {
-        /*
-         * TODO Lab 4: Implement remove intents
-         *
-         * 1. Get the intents from the intent service using intentService.getIntents()
-         * 2. Using matches() to filter intents for this network and hostId
-         * 3. Withdrawn intentService.withdraw()
-         */
+    private void admitHosts(String network, Collection<HostId> hostIds, boolean delayed) {
+        Set<HostId> hosts = store.getHosts(network);
+        int added = joining(hosts, hostIds);
+        if (added > 0) {
+            admission.admitHosts(network, hosts.size(), added, delayed);
+        }
+    }
+
+    // returns the number of distinct hosts not yet in the network
+    private static int joining(Set<HostId> hosts, Collection<HostId> hostIds) {
+        return (int) hostIds.stream().distinct().filter(hostId -> !hosts.contains(hostId)).count();
     }
 
     /**
-     * Returns ordered intent key from network and two hosts.
+     * Returns the number of intents submitted, or resubmitted, when a host
+     * joins a network.
      *
-     * @param network network name
-     * @param one host one
-     * @param two host two
-     * @return canonical intent string key
+     * @param mode connectivity mode of the network
+     * @param hosts number of hosts already in the network
+     * @return intent count
      */
-    protected Key generateKey(String network, HostId one, HostId two) {
-        String hosts = one.toString().compareTo(two.toString()) < 0 ?
-                format(HOST_FORMAT, one, two) : format(HOST_FORMAT, two, one);
-        return Key.of(format(KEY_FORMAT, network, hosts), appId);
+    private static int intentCost(ConnectivityMode mode, int hosts) {
+        switch (mode) {
+            case HUB_AND_SPOKE:
+                return 1;
+            case REACTIVE:
+                return 0;
+            case SHARED_TREE:
+                // its own tree, and every other tree gains an ingress point
+            case MESH:
+            default:
+                return hosts;
+        }
+    }
+
+    // removes a host from a network and disconnects it; true if it was there before
+    private boolean removeMember(String network, HostId hostId) {
+        if (!store.removeHost(network, hostId)) {
+            return false;
+        }
+        disconnectHosts(network, ImmutableSet.of(hostId));
+        return true;
+    }
+
+    @Override
+    public Map<HostId, Boolean> addHosts(String network, Collection<HostId> hostIds) {
+        checkNotNull(network, "Network name cannot be null");
+        checkNotNull(hostIds, "HostIds cannot be null");
+        Map<HostId, Boolean> results =
+                forwardToOwner(NetworkRequest.addHosts(network, ImmutableList.copyOf(hostIds), false));
+        return results != null ? results : addHostsLocally(network, hostIds);
+    }
+
+    // adds hosts to a network owned by this node
+    private Map<HostId, Boolean> addHostsLocally(String network, Collection<HostId> hostIds) {
+        boolean delayed = awaitAdmission(network, hostIds);
+        return withNetworkLock(network, () -> {
+            admitHosts(network, hostIds, delayed);
+            long start = System.nanoTime();
+            Map<HostId, Boolean> results = store.addHosts(network, hostIds);
+            Set<HostId> added = Maps.filterValues(results, Boolean::booleanValue).keySet();
+            if (!added.isEmpty()) {
+                connectHosts(network, added);
+                trackConvergence(network, added, start);
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public Map<HostId, Boolean> removeHosts(String network, Collection<HostId> hostIds) {
+        checkNotNull(network, "Network name cannot be null");
+        checkNotNull(hostIds, "HostIds cannot be null");
+        Map<HostId, Boolean> results =
+                forwardToOwner(NetworkRequest.removeHosts(network, ImmutableList.copyOf(hostIds), false));
+        return results != null ? results : removeHostsLocally(network, hostIds);
+    }
+
+    // removes hosts from a network owned by this node
+    private Map<HostId, Boolean> removeHostsLocally(String network, Collection<HostId> hostIds) {
+        return withNetworkLock(network, () -> {
+            Map<HostId, Boolean> results = store.removeHosts(network, hostIds);
+            Set<HostId> removed = Maps.filterValues(results, Boolean::booleanValue).keySet();
+            if (!removed.isEmpty()) {
+                disconnectHosts(network, removed);
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public Set<HostId> getHosts(String network) {
+        checkNotNull(network, "Network name cannot be null");
+        return store.getHosts(network);
+    }
+
+    @Override
+    public Set<String> getNetworks(HostId hostId) {
+        checkNotNull(hostId, "HostId cannot be null");
+        return store.getNetworks(hostId);
+    }
+
+    @Override
+    public Page<HostId> getHosts(String network, HostId after, int limit) {
+        return checkNotNull(findHosts(network, after, limit), "Please create the network first");
+    }
+
+    @Override
+    public Page<HostId> findHosts(String network, HostId after, int limit) {
+        checkNotNull(network, "Network name cannot be null");
+        checkArgument(limit > 0, "Limit must be positive");
+        Set<HostId> hosts = store.findHosts(network);
+        // the store serves compact snapshots, which page without copying
+        return hosts == null ? null : CompactHostSet.copyOf(hosts).page(after, limit);
+    }
+
+    @Override
+    public NetworkIntentStats getIntentStats(String network) {
+        checkNotNull(network, "Network name cannot be null");
+        // fails if the network does not exist
+        store.getConnectivityMode(network);
+        return intentTracker.stats(network);
+    }
+
+    @Override
+    public Map<String, CacheStats> getCacheStats() {
+        return store.getCacheStats();
+    }
+
+    @Override
+    public List<IntentDrift> reconcile(boolean dryRun) {
+        List<IntentDrift> drifts = Lists.newArrayList();
+        Set<String> networks = Sets.union(store.getNetworks(), intentIndex.networks())
+                .immutableCopy();
+        for (String network : networks) {
+            if (!ownership.isMine(network) || isTearingDown(network)) {
+                // the owner, or the teardown, takes care of the intents of the network
+                continue;
+            }
+            IntentDrift drift = reconcile(network, dryRun);
+            if (!drift.isEmpty()) {
+                drifts.add(drift);
+            }
+        }
+        return drifts;
     }
 
     /**
-     * Matches an intent to a network and optional host.
+     * Compares the intents a network should have with the intents it has,
+     * and repairs the difference unless asked not to.
+     * <p>
+     * The members of the network are snapshotted, and the drift found,
+     * without any lock: the expected keys are looked up in the intent
+     * service one by one, and the keys the network has are taken from the
+     * intent index. A shared tree whose ingress or egress points are not
+     * those of the hosts as now discovered counts as missing. Keys with an
+     * operation still in the batcher are left alone. Dry runs stop there.
+     * </p>
+     * <p>
+     * A repair then waits for as many permits of the reconcile rate as
+     * there are keys to repair, and only takes the lock of the network to
+     * check that its members are still the snapshotted ones and to repair
+     * the keys that still drift, so that mutations of the network are
+     * neither held up by the rate nor by the search for the drift. A
+     * network that changed in the meantime is left to the next pass.
+     * </p>
      *
      * @param network network name
-     * @param id optional host id, wildcard if missing
-     * @param intent intent to match
-     * @return true if intent matches, false otherwise
+     * @param dryRun true to only report the drift
+     * @return drift found in the network
      */
-    protected boolean matches(String network, Optional<HostId> id, Intent intent) {
-        if (!Objects.equals(appId, intent.appId())) {
-            // different app ids
-            return false;
+    private IntentDrift reconcile(String network, boolean dryRun) {
+        Map<Key, Map.Entry<HostId, HostId>> indexed = intentIndex.intents(network);
+        ConnectivityMode mode = store.findConnectivityMode(network);
+        Set<HostId> hosts = store.findHosts(network);
+        // none of the intents of a network that is gone should remain
+        boolean exists = mode != null && hosts != null;
+        Map<Key, Map.Entry<HostId, HostId>> expected =
+                exists ? expectedIntents(network, mode, hosts) : ImmutableMap.of();
+        Map<HostId, ConnectPoint> locations = exists && mode == ConnectivityMode.SHARED_TREE ?
+                hostLocations(network, hosts) : ImmutableMap.of();
+
+        Set<Key> missing = Sets.newHashSet();
+        for (Map.Entry<Key, Map.Entry<HostId, HostId>> entry : expected.entrySet()) {
+            if (isMissing(entry.getKey(), entry.getValue(), locations)) {
+                missing.add(entry.getKey());
+            }
+        }
+        Set<Key> orphaned = Sets.newHashSet();
+        for (Key key : indexed.keySet()) {
+            if (!expected.containsKey(key) && intentBatcher.completion(key).isDone()) {
+                orphaned.add(key);
+            }
+        }
+        IntentDrift drift = new IntentDrift(network, expected.size(), missing, orphaned);
+        if (dryRun || drift.isEmpty()) {
+            return drift;
         }
 
-        String key = intent.key().toString();
-        if (!key.startsWith(network)) {
-            // different network
-            return false;
+        reconcileLimiter.acquire(missing.size() + orphaned.size());
+        synchronized (reconcileLock) {
+            withNetworkLock(network, () -> {
+                if (store.findConnectivityMode(network) != mode ||
+                        !Objects.equals(store.findHosts(network), hosts)) {
+                    log.debug("Network {} changed while reconciled; left to the next pass",
+                              network);
+                    return null;
+                }
+                for (Key key : orphaned) {
+                    Map.Entry<HostId, HostId> pair = indexed.get(key);
+                    if (key.equals(intentIndex.key(network, pair.getKey(), pair.getValue())) &&
+                            intentBatcher.completion(key).isDone()) {
+                        withdrawIntent(network, pair.getKey(), pair.getValue(), key);
+                    }
+                }
+                for (Key key : missing) {
+                    Map.Entry<HostId, HostId> pair = expected.get(key);
+                    if (isMissing(key, pair, locations)) {
+                        repairIntent(network, key, pair.getKey(), pair.getValue(), locations);
+                    }
+                }
+                if (!exists) {
+                    intentTracker.removed(network);
+                }
+                return null;
+            });
         }
+        return drift;
+    }
 
-        if (!id.isPresent()) {
-            // no host id specified; wildcard match
-            return true;
+    /**
+     * Returns whether an expected intent of a network is neither in the
+     * batcher nor installed as expected.
+     *
+     * @param key intent key
+     * @param pair hosts of the intent; the same host twice for a shared tree
+     * @param locations locations of the hosts of a shared tree network
+     * @return true if the intent is to be submitted
+     */
+    private boolean isMissing(Key key, Map.Entry<HostId, HostId> pair,
+                              Map<HostId, ConnectPoint> locations) {
+        if (!intentBatcher.completion(key).isDone()) {
+            return false;
         }
+        Intent installed = intentService.getIntent(key);
+        HostId one = pair.getKey();
+        return installed == null ||
+                one.equals(pair.getValue()) && !isTree(installed, one, locations);
+    }
 
-        HostId hostId = id.get();
-        String[] fields = key.split(",");
-        // return result of id match in host portion of key
-        return fields.length > 1 && fields[1].contains(hostId.toString());
+    // submits an intent found missing by reconciliation
+    private void repairIntent(String network, Key key, HostId one, HostId two,
+                              Map<HostId, ConnectPoint> locations) {
+        Intent intent = one.equals(two) ?
+                treeIntent(key, one, locations) : hostIntent(key, one, two);
+        if (intent == null) {
+            return;
+        }
+        intentIndex.add(network, one, two, key);
+        intentTracker.submitted(network, key);
+        intentBatcher.submit(intent);
     }
 
-    /*
-     * TODO Lab 6: Implement an InternalStoreDelegate class
+    /**
+     * Returns the intents a network should have given some hosts and a
+     * connectivity mode, with their pair of hosts.
      *
-     * The class should implement the NetworkStoreDelegate interface and
-     * its notify method.
+     * @param network network name
+     * @param mode connectivity mode
+     * @param hosts hosts of the network
+     * @return intent key to hosts of the intent
      */
+    private Map<Key, Map.Entry<HostId, HostId>> expectedIntents(String network, ConnectivityMode mode,
+                                                                Set<HostId> hosts) {
+        Map<Key, Map.Entry<HostId, HostId>> expected = Maps.newHashMap();
+        switch (mode) {
+            case HUB_AND_SPOKE:
+                Optional<HostId> hub = hub(network, hosts);
+                if (hub.isPresent()) {
+                    for (HostId spoke : hosts) {
+                        if (!spoke.equals(hub.get())) {
+                            expected.put(generateKey(network, hub.get(), spoke),
+                                         Maps.immutableEntry(hub.get(), spoke));
+                        }
+                    }
+                }
+                break;
+            case SHARED_TREE:
+                Map<HostId, ConnectPoint> locations = hostLocations(network, hosts);
+                for (HostId hostId : hosts) {
+                    if (!treeIngress(hostId, locations).isEmpty()) {
+                        expected.put(treeKey(network, hostId), Maps.immutableEntry(hostId, hostId));
+                    }
+                }
+                break;
+            case REACTIVE:
+                // only the pairs connected so far, by their first packet
+                intentIndex.intents(network).forEach((key, pair) -> {
+                    if (hosts.contains(pair.getKey()) && hosts.contains(pair.getValue())) {
+                        expected.put(key, pair);
+                    }
+                });
+                break;
+            case MESH:
+            default:
+                List<HostId> list = Lists.newArrayList(hosts);
+                for (int i = 0; i < list.size(); i++) {
+                    for (int j = i + 1; j < list.size(); j++) {
+                        expected.put(generateKey(network, list.get(i), list.get(j)),
+                                     Maps.immutableEntry(list.get(i), list.get(j)));
+                    }
+                }
+                break;
+        }
+        return expected;
+    }
+
+    @Override
+    public CompletableFuture<Void> createNetworkAsync(String network, ConnectivityMode mode) {
+        checkNotNull(network, "Network name cannot be null");
+        return runInOrder(network, () -> {
+            createNetwork(network, mode);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteNetworkAsync(String network) {
+        checkNotNull(network, "Network name cannot be null");
+        return runInOrder(network, () -> {
+            NodeId owner = ownership.remoteOwner(network);
+            if (owner != null) {
+                return ownership.forwardAsync(owner, NetworkRequest.delete(network, true))
+                        .thenAccept(NetworkReply::results);
+            }
+            return deleteLocally(network).future();
+        }).thenCompose(future -> future);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> addHostAsync(String network, HostId hostId,
+                                                   boolean awaitIntents) {
+        checkNotNull(network, "Network name cannot be null");
+        checkNotNull(hostId, "HostId cannot be null");
+        // the owner admits the host; this node only does when it owns the network
+        Supplier<Boolean> admit = () -> ownership.remoteOwner(network) == null &&
+                awaitAdmission(network, ImmutableSet.of(hostId));
+        return runInOrder(network, admit, delayed -> {
+            NodeId owner = ownership.remoteOwner(network);
+            if (owner != null) {
+                NetworkRequest request = NetworkRequest.addHosts(network, ImmutableList.of(hostId),
+                                                                 awaitIntents);
+                return ownership.forwardAsync(owner, request)
+                        .thenApply(reply -> reply.results().get(hostId));
+            }
+            return addHostLocally(network, hostId, awaitIntents, delayed);
+        }).thenCompose(future -> future);
+    }
+
+    // adds a host to a network owned by this node; to be run in order
+    private CompletableFuture<Boolean> addHostLocally(String network, HostId hostId,
+                                                      boolean awaitIntents, boolean delayed) {
+        boolean added = addMember(network, hostId, delayed);
+        CompletableFuture<Void> intents = awaitIntents ?
+                intentsCompleted(hostKeys(network, hostId)) :
+                CompletableFuture.completedFuture(null);
+        return intents.thenApply(v -> added);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> removeHostAsync(String network, HostId hostId,
+                                                      boolean awaitIntents) {
+        checkNotNull(network, "Network name cannot be null");
+        checkNotNull(hostId, "HostId cannot be null");
+        return runInOrder(network, () -> {
+            NodeId owner = ownership.remoteOwner(network);
+            if (owner != null) {
+                NetworkRequest request = NetworkRequest.removeHosts(network, ImmutableList.of(hostId),
+                                                                    awaitIntents);
+                return ownership.forwardAsync(owner, request)
+                        .thenApply(reply -> reply.results().get(hostId));
+            }
+            return removeHostLocally(network, hostId, awaitIntents);
+        }).thenCompose(future -> future);
+    }
+
+    // removes a host from a network owned by this node; to be run in order
+    private CompletableFuture<Boolean> removeHostLocally(String network, HostId hostId,
+                                                         boolean awaitIntents) {
+        Set<Key> keys = hostKeys(network, hostId);
+        boolean removed = removeMember(network, hostId);
+        CompletableFuture<Void> intents = awaitIntents ?
+                intentsCompleted(keys) : CompletableFuture.completedFuture(null);
+        return intents.thenApply(v -> removed);
+    }
+
+    @Override
+    public void replaceHost(String network, HostId oldId, HostId newId) {
+        try {
+            replaceHostAsync(network, oldId, newId).join();
+        } catch (CompletionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> replaceHostAsync(String network, HostId oldId, HostId newId) {
+        checkNotNull(network, "Network name cannot be null");
+        checkNotNull(oldId, "Old HostId cannot be null");
+        checkNotNull(newId, "New HostId cannot be null");
+        checkArgument(!oldId.equals(newId), "Cannot replace a host by itself");
+        NodeId owner = ownership.remoteOwner(network);
+        if (owner != null) {
+            return runInOrder(network, () -> ownership.forwardAsync(
+                    owner, NetworkRequest.replaceHost(network, oldId, newId)))
+                    .thenCompose(reply -> reply)
+                    .thenAccept(NetworkReply::results);
+        }
+        return replaceLocally(network, oldId, newId);
+    }
+
+    // replaces a host of a network owned by this node
+    private CompletableFuture<Void> replaceLocally(String network, HostId oldId, HostId newId) {
+        return runInOrder(network, () -> makeReplacement(network, oldId, newId))
+                .thenCompose(made -> made.handle((r, e) -> {
+                    if (e != null) {
+                        log.warn("Intents of host {} replacing {} in network {} failed; " +
+                                         "left to reconciliation", newId, oldId, network, e);
+                    }
+                    return null;
+                }))
+                .thenCompose(v -> runInOrder(network, () -> removeMember(network, oldId)))
+                .thenApply(removed -> null);
+    }
+
+    /**
+     * Adds a host that replaces another to a network, and submits the
+     * intents the network has once the other host is gone: those of the new
+     * host with every peer but the old host, along with those of a new hub,
+     * or the shared trees, whose ingress points change with the hosts.
+     * Intents between other hosts are left alone.
+     *
+     * @param network network name
+     * @param oldId host being replaced
+     * @param newId replacing host
+     * @return future completed once the submitted intents are installed
+     */
+    private CompletableFuture<Void> makeReplacement(String network, HostId oldId, HostId newId) {
+        Set<HostId> hosts = store.getHosts(network);
+        checkState(hosts.contains(oldId), "Host %s is not in network %s", oldId, network);
+        checkState(!hosts.contains(newId), "Host %s is already in network %s", newId, network);
+        ConnectivityMode mode = store.getConnectivityMode(network);
+        Set<HostId> after = Sets.union(Sets.difference(hosts, ImmutableSet.of(oldId)),
+                                       ImmutableSet.of(newId)).immutableCopy();
+        long start = System.nanoTime();
+        store.addHost(network, newId);
+
+        Set<Key> made = Sets.newHashSet();
+        Map<HostId, ConnectPoint> locations = mode == ConnectivityMode.SHARED_TREE ?
+                hostLocations(network, after) : null;
+        joiningIntents(network, mode, after, newId).forEach((key, pair) -> {
+            HostId one = pair.getKey();
+            HostId two = pair.getValue();
+            if (one.equals(two)) {
+                Intent intent = treeIntent(key, one, locations);
+                if (intent != null) {
+                    intentIndex.add(network, one, two, key);
+                    intentTracker.submitted(network, key);
+                    intentBatcher.submit(intent);
+                    made.add(key);
+                }
+            } else if (!key.equals(intentIndex.key(network, one, two))) {
+                submitHostIntent(network, one, two);
+                made.add(key);
+            }
+        });
+        trackConvergence(network, ImmutableSet.of(newId), start);
+        return intentsCompleted(made);
+    }
+
+    /**
+     * Returns the intents of a network that change when a host joins it,
+     * with their pair of hosts: the intents of the host with each peer in a
+     * mesh, rather than the whole mesh, those of the hub with each spoke, or
+     * every shared tree. Reactive pairs of the host only come with traffic.
+     *
+     * @param network network name
+     * @param mode connectivity mode
+     * @param hosts hosts of the network, the joining host included
+     * @param joining joining host
+     * @return intent key to hosts of the intent
+     */
+    private Map<Key, Map.Entry<HostId, HostId>> joiningIntents(String network, ConnectivityMode mode,
+                                                               Set<HostId> hosts, HostId joining) {
+        switch (mode) {
+            case MESH:
+                Map<Key, Map.Entry<HostId, HostId>> intents = Maps.newHashMap();
+                for (HostId peer : hosts) {
+                    if (!peer.equals(joining)) {
+                        intents.put(generateKey(network, joining, peer), Maps.immutableEntry(joining, peer));
+                    }
+                }
+                return intents;
+            case REACTIVE:
+                return ImmutableMap.of();
+            case HUB_AND_SPOKE:
+            case SHARED_TREE:
+            default:
+                return expectedIntents(network, mode, hosts);
+        }
+    }
+
+    /**
+     * Runs a mutation on the node that owns its network, unless this node
+     * owns it, and waits for the owner to apply it.
+     *
+     * @param request mutation
+     * @return results of the mutation; null if this node owns the network
+     * and is to apply the mutation itself
+     */
+    private Map<HostId, Boolean> forwardToOwner(NetworkRequest request) {
+        NodeId owner = ownership.remoteOwner(request.network());
+        return owner == null ? null : ownership.forward(owner, request).results();
+    }
+
+    /**
+     * Applies a mutation forwarded by another node. The mutation is applied
+     * here even if ownership has moved meanwhile, rather than bounced from
+     * node to node; the next rebalance hands its intents over.
+     *
+     * @param request mutation
+     * @return reply to the node that forwarded the mutation
+     */
+    private NetworkReply handleRequest(NetworkRequest request) {
+        String network = request.network();
+        List<HostId> hostIds = request.hostIds();
+        try {
+            switch (request.type()) {
+                case CREATE:
+                    createLocally(network, request.mode());
+                    return NetworkReply.done();
+                case DELETE:
+                    if (request.await()) {
+                        runInOrder(network, () -> deleteLocally(network).future())
+                                .thenCompose(future -> future).join();
+                    } else {
+                        deleteLocally(network);
+                    }
+                    return NetworkReply.done();
+                case ADD_HOSTS:
+                    if (request.await()) {
+                        HostId hostId = hostIds.get(0);
+                        boolean added = runInOrder(network,
+                                                   () -> awaitAdmission(network, ImmutableSet.of(hostId)),
+                                                   delayed -> addHostLocally(network, hostId, true, delayed))
+                                .thenCompose(future -> future).join();
+                        return NetworkReply.of(ImmutableMap.of(hostId, added));
+                    }
+                    return NetworkReply.of(addHostsLocally(network, hostIds));
+                case REMOVE_HOSTS:
+                    if (request.await()) {
+                        HostId hostId = hostIds.get(0);
+                        boolean removed = runInOrder(network, () -> removeHostLocally(network, hostId, true))
+                                .thenCompose(future -> future).join();
+                        return NetworkReply.of(ImmutableMap.of(hostId, removed));
+                    }
+                    return NetworkReply.of(removeHostsLocally(network, hostIds));
+                case REPLACE_HOST:
+                    replaceLocally(network, hostIds.get(0), hostIds.get(1)).join();
+                    return NetworkReply.done();
+                case CONNECT_PAIR:
+                    runInOrder(network, () -> {
+                        connectPair(network, hostIds.get(0), hostIds.get(1));
+                        return null;
+                    });
+                    return NetworkReply.done();
+                default:
+                    throw new IllegalArgumentException("Unknown request " + request.type());
+            }
+        } catch (CompletionException e) {
+            return NetworkReply.failed(e.getCause() instanceof RuntimeException ?
+                                               (RuntimeException) e.getCause() : e);
+        } catch (RuntimeException e) {
+            return NetworkReply.failed(e);
+        }
+    }
+
+    /**
+     * Runs a mutation of a network while holding the lock of the network.
+     * <p>
+     * A mutation updates the store, then computes and submits the intents
+     * from the updated membership. Holding the lock throughout applies the
+     * mutations of a network one at a time, each seeing the membership and
+     * intents left by the one before, so that a host removed concurrently
+     * with another joining neither keeps nor misses intents. Locks are
+     * striped by network name: networks on different stripes, which is
+     * nearly all of them, are changed fully in parallel.
+     * </p>
+     *
+     * @param network network name
+     * @param operation mutation to run
+     * @param <T> result type
+     * @return result of the mutation
+     */
+    private <T> T withNetworkLock(String network, Supplier<T> operation) {
+        Lock lock = networkLocks.get(network);
+        lock.lock();
+        try {
+            return operation.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs an operation on the asynchronous executor once all operations
+     * previously queued on the same network are done. The operation holds
+     * the lock of the network, as synchronous mutations do.
+     *
+     * @param network network name
+     * @param operation operation to run
+     * @param <T> result type
+     * @return future completed with the result of the operation
+     */
+    private <T> CompletableFuture<T> runInOrder(String network, Supplier<T> operation) {
+        return runInOrder(network, () -> null, v -> operation.get());
+    }
+
+    /**
+     * Runs an operation on the asynchronous executor once all operations
+     * previously queued on the same network are done. A prelude, such as
+     * waiting for admission, runs first without the lock of the network;
+     * the operation then holds the lock, as synchronous mutations do, and
+     * gets the result of the prelude.
+     *
+     * @param network network name
+     * @param prelude step to run before taking the lock
+     * @param operation operation to run
+     * @param <P> prelude result type
+     * @param <T> result type
+     * @return future completed with the result of the operation
+     */
+    private <P, T> CompletableFuture<T> runInOrder(String network, Supplier<P> prelude,
+                                                   Function<P, T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        networkTails.compute(network, (k, tail) -> {
+            CompletableFuture<?> previous = tail == null ? CompletableFuture.completedFuture(null) : tail;
+            previous.whenCompleteAsync((r, e) -> {
+                try {
+                    P ready = prelude.get();
+                    result.complete(withNetworkLock(network, () -> operation.apply(ready)));
+                } catch (RuntimeException error) {
+                    result.completeExceptionally(error);
+                }
+            }, asyncExecutor);
+            return result;
+        });
+        result.whenComplete((r, e) -> networkTails.remove(network, result));
+        return result;
+    }
+
+    /**
+     * Returns the keys of the intents that connect a host to its network.
+     *
+     * @param network network name
+     * @param hostId host id
+     * @return set of intent keys
+     */
+    private Set<Key> hostKeys(String network, HostId hostId) {
+        if (store.getConnectivityMode(network) != ConnectivityMode.SHARED_TREE) {
+            return ImmutableSet.copyOf(intentIndex.keys(network, hostId).values());
+        }
+        // a host is an ingress point of the trees of every other host
+        Set<Key> keys = Sets.newHashSet();
+        for (HostId host : intentIndex.hosts(network)) {
+            Key key = intentIndex.key(network, host, host);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns a future completed once the latest operations on the given
+     * intents are done.
+     *
+     * @param keys intent keys
+     * @return future completion of all the operations
+     */
+    private CompletableFuture<Void> intentsCompleted(Collection<Key> keys) {
+        return CompletableFuture.allOf(keys.stream()
+                                               .map(intentBatcher::completion)
+                                               .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Records how long the intents of new hosts take to complete. Hosts
+     * that have no peer in the network yet have nothing to converge.
+     *
+     * @param network network name
+     * @param hostIds hosts new to the network
+     * @param startNanos time the hosts joined, as given by System.nanoTime()
+     */
+    private void trackConvergence(String network, Set<HostId> hostIds, long startNanos) {
+        for (HostId hostId : hostIds) {
+            Set<Key> keys = hostKeys(network, hostId);
+            if (keys.isEmpty()) {
+                continue;
+            }
+            intentsCompleted(keys).whenComplete((r, e) -> {
+                if (e == null) {
+                    intentTracker.converged(network, startNanos);
+                } else {
+                    intentTracker.convergenceFailed(network);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void addListener(NetworkListener listener) {
+        listenerRegistry.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(NetworkListener listener) {
+        listenerRegistry.removeListener(listener);
+    }
+
+    /**
+     * Connects new hosts to the rest of their network, according to the
+     * connectivity mode of the network.
+     *
+     * @param network network name
+     * @param added hosts new to the network
+     */
+    private void connectHosts(String network, Set<HostId> added) {
+        Set<HostId> hosts = store.getHosts(network);
+        switch (store.getConnectivityMode(network)) {
+            case HUB_AND_SPOKE:
+                addHubIntents(network, hosts);
+                break;
+            case SHARED_TREE:
+                // every tree gains the new hosts as ingress points
+                addTreeIntents(network, hosts);
+                break;
+            case REACTIVE:
+                // pairs are connected on their first packet
+                break;
+            case MESH:
+            default:
+                // connect each new host to the existing hosts and to the new hosts before it
+                Set<HostId> peers = Sets.newHashSet(Sets.difference(hosts, added));
+                for (HostId hostId : added) {
+                    addIntents(network, hostId, peers);
+                    peers.add(hostId);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Removes the intents of hosts that left their network, and reconnects
+     * the remaining hosts if the connectivity mode of the network requires it.
+     *
+     * @param network network name
+     * @param removed hosts removed from the network
+     */
+    private void disconnectHosts(String network, Collection<HostId> removed) {
+        ConnectivityMode mode = store.getConnectivityMode(network);
+        if (mode == ConnectivityMode.HUB_AND_SPOKE) {
+            // should the hub have left, the new hub is connected before the old one is let go
+            addHubIntents(network, store.getHosts(network));
+        }
+        removed.forEach(hostId -> removeIntents(network, hostId));
+        switch (mode) {
+            case SHARED_TREE:
+                // the remaining trees lose the removed hosts as ingress points
+                addTreeIntents(network, store.getHosts(network));
+                break;
+            case REACTIVE:
+            case MESH:
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Adds an intent between a new host and all others in the network.
+     *
+     * @param network network name
+     * @param src the new host
+     * @param hostsInNet all hosts in the network
+     */
+    private void addIntents(String network, HostId src, Set<HostId> hostsInNet) {
+        for (HostId dst : hostsInNet) {
+            if (!src.equals(dst)) {
+                submitHostIntent(network, src, dst);
+            }
+        }
+    }
+
+    /**
+     * Connects every host of a network to the hub of the network. Intents
+     * to a previous hub are withdrawn once those to the new hub are
+     * submitted.
+     *
+     * @param network network name
+     * @param hostsInNet all hosts in the network
+     */
+    private void addHubIntents(String network, Set<HostId> hostsInNet) {
+        Optional<HostId> hub = hub(network, hostsInNet);
+        if (!hub.isPresent()) {
+            return;
+        }
+        for (HostId spoke : hostsInNet) {
+            if (!spoke.equals(hub.get())) {
+                submitHostIntent(network, hub.get(), spoke);
+            }
+        }
+        for (HostId host : intentIndex.hosts(network)) {
+            if (!host.equals(hub.get())) {
+                intentIndex.keys(network, host).forEach((peer, key) -> {
+                    if (!peer.equals(hub.get())) {
+                        withdrawIntent(network, host, peer, key);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Returns whether an intent is the shared tree towards a host given the
+     * locations of the hosts of its network.
+     *
+     * @param intent installed intent
+     * @param hostId egress host
+     * @param locations locations of the hosts of the network
+     * @return true if the intent has the ingress and egress points of the tree
+     */
+    private static boolean isTree(Intent intent, HostId hostId, Map<HostId, ConnectPoint> locations) {
+        if (!(intent instanceof MultiPointToSinglePointIntent)) {
+            return false;
+        }
+        MultiPointToSinglePointIntent tree = (MultiPointToSinglePointIntent) intent;
+        return tree.egressPoint().equals(locations.get(hostId)) &&
+                tree.ingressPoints().equals(treeIngress(hostId, locations));
+    }
+
+    /**
+     * Submits, or updates, the intent towards every host of a network from
+     * the locations of all the other hosts of the network.
+     *
+     * @param network network name
+     * @param hostsInNet all hosts in the network
+     */
+    private void addTreeIntents(String network, Set<HostId> hostsInNet) {
+        Map<HostId, ConnectPoint> locations = hostLocations(network, hostsInNet);
+        for (HostId hostId : hostsInNet) {
+            Key key = treeKey(network, hostId);
+            Intent intent = treeIntent(key, hostId, locations);
+            if (intent == null) {
+                if (intentIndex.key(network, hostId, hostId) != null) {
+                    withdrawIntent(network, hostId, hostId, key);
+                }
+                continue;
+            }
+            intentIndex.add(network, hostId, hostId, key);
+            intentTracker.submitted(network, key);
+            intentBatcher.submit(intent);
+        }
+    }
+
+    /**
+     * Returns the hub of a network. The hub is kept while it is a member,
+     * as the member with the most indexed intents, those with the spokes;
+     * a network without one gets the host with the lowest id.
+     *
+     * @param network network name
+     * @param hostsInNet all hosts in the network
+     * @return hub host; empty if the network has no hosts
+     */
+    private Optional<HostId> hub(String network, Set<HostId> hostsInNet) {
+        HostId hub = intentIndex.mostConnected(network, hostsInNet);
+        return hub != null ? Optional.of(hub) :
+                hostsInNet.stream().min(Comparator.comparing(HostId::toString));
+    }
+
+    /**
+     * Returns the locations of the hosts of a network that have been
+     * discovered.
+     *
+     * @param network network name
+     * @param hostsInNet all hosts in the network
+     * @return host id to connect point of the host
+     */
+    private Map<HostId, ConnectPoint> hostLocations(String network, Set<HostId> hostsInNet) {
+        Map<HostId, ConnectPoint> locations = Maps.newHashMap();
+        for (HostId hostId : hostsInNet) {
+            Host host = hostService.getHost(hostId);
+            if (host != null) {
+                locations.put(hostId, new ConnectPoint(host.location().elementId(),
+                                                       host.location().port()));
+            } else {
+                log.debug("Host {} of network {} has not been discovered yet", hostId, network);
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Returns the ingress points of the tree towards a host, which are the
+     * locations of all the other hosts.
+     *
+     * @param hostId egress host
+     * @param locations locations of the hosts of the network
+     * @return ingress connect points; empty if the host has no tree
+     */
+    private static Set<ConnectPoint> treeIngress(HostId hostId, Map<HostId, ConnectPoint> locations) {
+        ConnectPoint egress = locations.get(hostId);
+        return egress == null ? ImmutableSet.of() :
+                locations.values().stream()
+                        .filter(cp -> !cp.equals(egress))
+                        .collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns the key of the tree towards a host of a network.
+     *
+     * @param network network name
+     * @param hostId egress host
+     * @return intent key
+     */
+    private Key treeKey(String network, HostId hostId) {
+        return Key.of(IntentKeyCodec.encode(network, hostId), appId);
+    }
+
+    /**
+     * Builds the intent of the tree towards a host.
+     *
+     * @param key intent key
+     * @param hostId egress host
+     * @param locations locations of the hosts of the network
+     * @return multi point to single point intent; null if the host has no tree
+     */
+    private Intent treeIntent(Key key, HostId hostId, Map<HostId, ConnectPoint> locations) {
+        Set<ConnectPoint> ingress = treeIngress(hostId, locations);
+        if (ingress.isEmpty()) {
+            return null;
+        }
+        TrafficSelector.Builder selector = DefaultTrafficSelector.builder()
+                .matchEthDst(hostId.mac());
+        if (!hostId.vlanId().equals(VlanId.NONE)) {
+            selector.matchVlanId(hostId.vlanId());
+        }
+        return MultiPointToSinglePointIntent.builder()
+                .appId(appId)
+                .key(key)
+                .selector(selector.build())
+                .ingressPoints(ingress)
+                .egressPoint(locations.get(hostId))
+                .build();
+    }
+
+    /**
+     * Submits the intent between two hosts of a network, unless it has
+     * already been submitted. Two hosts joining at the same time both see
+     * each other, so only the first of them gets to submit their intent.
+     *
+     * @param network network name
+     * @param one host one
+     * @param two host two
+     */
+    private void submitHostIntent(String network, HostId one, HostId two) {
+        Key key = generateKey(network, one, two);
+        // indexed up front; batchFailed() undoes it if the submission is rejected
+        if (intentIndex.addIfAbsent(network, one, two, key)) {
+            intentTracker.submitted(network, key);
+            intentBatcher.submit(hostIntent(key, one, two));
+        }
+    }
+
+    /**
+     * Removes intents that involve the specified host in a network.
+     * <p>
+     * Only the keys recorded in the intent index are visited, so the cost
+     * is bound by the number of hosts in the network rather than by the
+     * number of intents in the system.
+     * </p>
+     *
+     * @param network network name
+     * @param hostId host to remove
+     */
+    private void removeIntents(String network, HostId hostId) {
+        intentIndex.keys(network, hostId)
+                .forEach((peer, key) -> withdrawIntent(network, hostId, peer, key));
+    }
+
+    /**
+     * Withdraws the intent between two hosts, or the shared tree of a host
+     * given as both hosts, and drops it from the index. The intent last
+     * queued for the key, or else the one the intent service holds, is the
+     * one withdrawn. The key is indexed again if the withdrawal is
+     * rejected, so that it can be retried by a later removal.
+     *
+     * @param network network name
+     * @param one host one
+     * @param two host two
+     * @param key intent key
+     * @return future completed once the intent is withdrawn
+     */
+    private CompletableFuture<Void> withdrawIntent(String network, HostId one, HostId two, Key key) {
+        intentIndex.remove(network, one, two);
+        intentTracker.withdrawn(network, key);
+        reactivePairs.forget(key);
+        Intent intent = intentBatcher.pending(key);
+        if (intent == null) {
+            intent = intentService.getIntent(key);
+        }
+        if (intent == null) {
+            if (one.equals(two)) {
+                // a shared tree never submitted has nothing to withdraw
+                return CompletableFuture.completedFuture(null);
+            }
+            intent = hostIntent(key, one, two);
+        }
+        return intentBatcher.withdraw(intent);
+    }
+
+    /**
+     * Builds the intent between two hosts.
+     *
+     * @param key intent key
+     * @param one host one
+     * @param two host two
+     * @return host to host intent
+     */
+    private Intent hostIntent(Key key, HostId one, HostId two) {
+        return HostToHostIntent.builder()
+                .appId(appId)
+                .key(key)
+                .one(one)
+                .two(two)
+                .build();
+    }
+
+    /**
+     * Restores the intent index and the tracked intents after the intent
+     * service rejected a batched operation.
+     *
+     * @param operation rejected operation
+     * @param intent intent of the operation
+     */
+    private void batchFailed(IntentBatcher.Operation operation, Intent intent) {
+        String key = intent.key().toString();
+        String network = IntentKeyCodec.network(key);
+        HostId one;
+        HostId two;
+        if (intent instanceof HostToHostIntent) {
+            one = ((HostToHostIntent) intent).one();
+            two = ((HostToHostIntent) intent).two();
+        } else {
+            one = two = IntentKeyCodec.host(key);
+        }
+        if (network == null || one == null) {
+            return;
+        }
+        if (operation == IntentBatcher.Operation.SUBMIT) {
+            intentIndex.remove(network, one, two);
+            intentTracker.withdrawn(network, intent.key());
+        } else {
+            intentIndex.add(network, one, two, intent.key());
+            intentTracker.restored(network, intent.key(), intentService.getIntentState(intent.key()));
+        }
+    }
+
+    /**
+     * Rebuilds the intent index, and the tracked intents, from the intents
+     * this application has previously submitted for the networks this node
+     * owns. The intents recorded in the journal are looked up one by one,
+     * rather than found by scanning all the intents of the system; without
+     * a journal, the intents are scanned.
+     *
+     * @return true if the intents were restored from the journal
+     */
+    private boolean rebuildIntentIndex() {
+        intentIndex.clear();
+        Map<String, Map<Key, Map.Entry<HostId, HostId>>> journaled = journal.intents();
+        if (journaled.isEmpty()) {
+            indexAdoptedIntents();
+            return false;
+        }
+        int restored = 0;
+        for (Map.Entry<String, Map<Key, Map.Entry<HostId, HostId>>> entry : journaled.entrySet()) {
+            String network = entry.getKey();
+            if (!ownership.isMine(network)) {
+                journal.intentsRemoved(network);
+                continue;
+            }
+            boolean reactive = isReactive(network);
+            for (Map.Entry<Key, Map.Entry<HostId, HostId>> intent : entry.getValue().entrySet()) {
+                Key key = intent.getKey();
+                HostId one = intent.getValue().getKey();
+                HostId two = intent.getValue().getValue();
+                if (intentService.getIntent(key) == null) {
+                    journal.intentRemoved(network, key);
+                    continue;
+                }
+                intentIndex.add(network, one, two, key);
+                intentTracker.restored(network, key, intentService.getIntentState(key));
+                if (reactive && !one.equals(two)) {
+                    reactivePairs.connected(key, network, one, two);
+                }
+                restored++;
+            }
+        }
+        log.info("Restored {} intents of {} networks from the journal", restored, journaled.size());
+        return true;
+    }
+
+    /**
+     * Indexes, and tracks, the intents of the networks this node owns that
+     * have no intent indexed yet, as when the networks were owned by another
+     * node until now.
+     *
+     * @return networks whose intents were indexed
+     */
+    private Set<String> indexAdoptedIntents() {
+        Set<String> indexed = intentIndex.networks();
+        Set<String> adopted = Sets.newHashSet();
+        for (Intent intent : intentService.getIntents()) {
+            if (!Objects.equals(appId, intent.appId())) {
+                continue;
+            }
+            String key = intent.key().toString();
+            String network = IntentKeyCodec.network(key);
+            if (network == null || indexed.contains(network) || !ownership.isMine(network)) {
+                continue;
+            }
+            adopted.add(network);
+            if (intent instanceof HostToHostIntent) {
+                HostToHostIntent hostIntent = (HostToHostIntent) intent;
+                intentIndex.add(network, hostIntent.one(), hostIntent.two(), intent.key());
+                intentTracker.restored(network, intent.key(), intentService.getIntentState(intent.key()));
+                if (isReactive(network)) {
+                    reactivePairs.connected(intent.key(), network, hostIntent.one(), hostIntent.two());
+                }
+            } else if (intent instanceof MultiPointToSinglePointIntent) {
+                HostId hostId = IntentKeyCodec.host(key);
+                if (hostId != null) {
+                    intentIndex.add(network, hostId, hostId, intent.key());
+                    intentTracker.restored(network, intent.key(),
+                                           intentService.getIntentState(intent.key()));
+                }
+            }
+        }
+        return adopted;
+    }
+
+    // returns true if the network exists and its pairs are connected on demand
+    private boolean isReactive(String network) {
+        return store.findConnectivityMode(network) == ConnectivityMode.REACTIVE;
+    }
+
+    // rebalances once for a burst of partition leadership changes
+    private void scheduleRebalance() {
+        if (rebalancePending.compareAndSet(false, true)) {
+            reconcileExecutor.execute(this::rebalance);
+        }
+    }
+
+    /**
+     * Hands the intent work of the networks over as their owners change.
+     * The intents of the networks this node no longer owns are forgotten,
+     * and their teardowns cancelled, as their new owner takes them over.
+     * The intents of the networks it now owns are indexed, the teardowns of
+     * those deleted meanwhile are resumed, and every owned network is then
+     * reconciled, to catch up with the mutations the previous owner may not
+     * have completed.
+     */
+    private void rebalance() {
+        rebalancePending.set(false);
+        try {
+            synchronized (reconcileLock) {
+                for (String network : intentIndex.networks()) {
+                    if (!ownership.isMine(network)) {
+                        NetworkTeardown teardown = teardowns.remove(network);
+                        if (teardown != null) {
+                            teardown.cancel();
+                        }
+                        intentIndex.remove(network);
+                        intentTracker.removed(network);
+                        reactivePairs.forget(network);
+                    }
+                }
+                Set<String> adopted = indexAdoptedIntents();
+                log.info("Network ownership changed; adopted {} networks", adopted.size());
+                resumeTeardowns();
+            }
+            List<IntentDrift> drifts = reconcile(false);
+            if (!drifts.isEmpty()) {
+                log.info("Repaired intent drift of adopted networks: {}", drifts);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to rebalance network ownership", e);
+        }
+    }
+
+    /**
+     * Returns ordered intent key from network and two hosts.
+     *
+     * @param network network name
+     * @param one host one
+     * @param two host two
+     * @return canonical intent string key
+     */
+    protected Key generateKey(String network, HostId one, HostId two) {
+        return Key.of(IntentKeyCodec.encode(network, one, two), appId);
+    }
+
+    /**
+     * Matches an intent to a network and optional host.
+     *
+     * @param network network name
+     * @param id optional host id, wildcard if missing
+     * @param intent intent to match
+     * @return true if intent matches, false otherwise
+     */
+    protected boolean matches(String network, Optional<HostId> id, Intent intent) {
+        if (!Objects.equals(appId, intent.appId())) {
+            // different app ids
+            return false;
+        }
+
+        String key = intent.key().toString();
+        return id.isPresent() ?
+                IntentKeyCodec.matches(key, network, id.get()) :
+                IntentKeyCodec.matches(key, network);
+    }
+
+    /**
+     * Resubmits the shared trees of the networks of a host that moved, was
+     * discovered or disappeared, as their ingress and egress points are
+     * fixed connect points, and only discovered hosts have any. Host to
+     * host intents follow their hosts on their own.
+     *
+     * @param hostId host that moved, appeared or disappeared
+     */
+    private void hostRelocated(HostId hostId) {
+        for (String network : store.getNetworks(hostId)) {
+            if (!ownership.isMine(network)) {
+                continue;
+            }
+            if (store.findConnectivityMode(network) == ConnectivityMode.SHARED_TREE) {
+                runInOrder(network, () -> {
+                    Set<HostId> hosts = store.findHosts(network);
+                    // the network may be gone by now
+                    if (hosts != null) {
+                        addTreeIntents(network, hosts);
+                    }
+                    return null;
+                });
+            }
+        }
+    }
+
+    /**
+     * Replaces, in each network, a host that is no longer discovered by the
+     * host that appeared with the same MAC address, as when a host is moved
+     * to another VLAN. Networks are left alone unless exactly one of their
+     * hosts with the MAC address is gone and exactly one discovered host
+     * with the MAC address is new to them.
+     *
+     * @param mac MAC address of a host that appeared or disappeared
+     */
+    private void hostRetagged(MacAddress mac) {
+        Set<HostId> discovered = hostService.getHostsByMac(mac).stream()
+                .map(Host::id)
+                .collect(Collectors.toSet());
+        for (String network : store.getNetworks(mac)) {
+            if (!ownership.isMine(network)) {
+                continue;
+            }
+            Set<HostId> hosts = store.findHosts(network);
+            if (hosts == null) {
+                // the network is gone
+                continue;
+            }
+            List<HostId> members = CompactHostSet.copyOf(hosts).withMac(mac);
+            if (members.isEmpty()) {
+                continue;
+            }
+            List<HostId> gone = members.stream()
+                    .filter(hostId -> !discovered.contains(hostId))
+                    .collect(Collectors.toList());
+            List<HostId> fresh = discovered.stream()
+                    .filter(hostId -> !members.contains(hostId))
+                    .collect(Collectors.toList());
+            if (gone.size() == 1 && fresh.size() == 1) {
+                log.info("Replacing host {} of network {} by {}", gone.get(0), network, fresh.get(0));
+                replaceHostAsync(network, gone.get(0), fresh.get(0)).whenComplete((r, e) -> {
+                    if (e != null) {
+                        log.warn("Unable to replace host {} of network {}", gone.get(0), network, e);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Connects two hosts upon their first packet, in each reactive network
+     * they are both members of. The networks owned by another node are
+     * handed over to their owner.
+     *
+     * @param src source host
+     * @param dst destination host
+     */
+    private void firstPacket(HostId src, HostId dst) {
+        if (src.equals(dst)) {
+            return;
+        }
+        Set<String> shared = Sets.intersection(store.getNetworks(src), store.getNetworks(dst));
+        for (String network : shared) {
+            if (!isReactive(network) || reactivePairs.active(generateKey(network, src, dst))) {
+                continue;
+            }
+            NodeId owner = ownership.remoteOwner(network);
+            if (owner != null) {
+                ownership.forwardAsync(owner, NetworkRequest.connectPair(network, src, dst));
+                continue;
+            }
+            runInOrder(network, () -> {
+                connectPair(network, src, dst);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Requests the packets of the hosts of the reactive networks that
+     * already exist.
+     */
+    private void requestReactivePackets() {
+        synchronized (packetMacs) {
+            packetsStopped = false;
+        }
+        for (String network : store.getNetworks()) {
+            if (store.findConnectivityMode(network) == ConnectivityMode.REACTIVE) {
+                updatePacketRequests(store.findHosts(network));
+            }
+        }
+    }
+
+    /**
+     * Updates the packet requests of hosts that joined or left a network,
+     * or whose network was created or deleted.
+     *
+     * @param hostIds hosts to update; null for none
+     */
+    private void updatePacketRequests(Set<HostId> hostIds) {
+        if (hostIds != null) {
+            hostIds.stream().map(HostId::mac).distinct().forEach(this::updatePacketRequest);
+        }
+    }
+
+    /**
+     * Requests the IPv4 packets sent by a MAC address while it belongs to a
+     * reactive network, and cancels the request once it no longer does. The
+     * packet processor is registered only while packets are requested.
+     * <p>
+     * The requested MAC addresses are updated right away, while the calls
+     * to the packet service are queued in order on the async executor, so
+     * that a slow packet service does not hold up the delivery of the
+     * store events that update the requests.
+     * </p>
+     *
+     * @param mac MAC address of a host
+     */
+    private void updatePacketRequest(MacAddress mac) {
+        synchronized (packetMacs) {
+            if (packetsStopped) {
+                return;
+            }
+            boolean reactive = store.getNetworks(mac).stream().anyMatch(
+                    network -> store.findConnectivityMode(network) == ConnectivityMode.REACTIVE);
+            if (reactive && packetMacs.add(mac)) {
+                boolean first = packetMacs.size() == 1;
+                queuePacketCall(() -> {
+                    if (first) {
+                        packetService.addProcessor(packetProcessor, PacketProcessor.director(3));
+                    }
+                    packetService.requestPackets(reactiveSelector(mac), PacketPriority.REACTIVE, appId);
+                });
+            } else if (!reactive && packetMacs.remove(mac)) {
+                boolean last = packetMacs.isEmpty();
+                queuePacketCall(() -> {
+                    packetService.cancelPackets(reactiveSelector(mac), PacketPriority.REACTIVE, appId);
+                    if (last) {
+                        packetService.removeProcessor(packetProcessor);
+                    }
+                });
+            }
+        }
+    }
+
+    // runs a packet service call once the calls queued before it are done; must hold packetMacs
+    private void queuePacketCall(Runnable call) {
+        packetCalls = packetCalls.thenRunAsync(call, asyncExecutor).exceptionally(e -> {
+            log.warn("Unable to update packet requests", e);
+            return null;
+        });
+    }
+
+    // cancels all packet requests, and waits for the packet service calls to be done
+    private void cancelReactivePackets() {
+        CompletableFuture<Void> calls;
+        synchronized (packetMacs) {
+            packetsStopped = true;
+            if (!packetMacs.isEmpty()) {
+                Set<MacAddress> macs = ImmutableSet.copyOf(packetMacs);
+                packetMacs.clear();
+                queuePacketCall(() -> {
+                    macs.forEach(mac -> packetService.cancelPackets(reactiveSelector(mac),
+                                                                    PacketPriority.REACTIVE, appId));
+                    packetService.removeProcessor(packetProcessor);
+                });
+            }
+            calls = packetCalls;
+        }
+        try {
+            calls.get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Unable to cancel packet requests", e);
+        }
+    }
+
+    // selects the IPv4 packets sent by a host
+    private static TrafficSelector reactiveSelector(MacAddress mac) {
+        return DefaultTrafficSelector.builder()
+                .matchEthType(Ethernet.TYPE_IPV4)
+                .matchEthSrc(mac)
+                .build();
+    }
+
+    /**
+     * Submits the intent of a pair of hosts of a reactive network, unless
+     * either host left the network meanwhile.
+     *
+     * @param network network name
+     * @param one host one
+     * @param two host two
+     */
+    private void connectPair(String network, HostId one, HostId two) {
+        if (!isReactive(network)) {
+            return;
+        }
+        Set<HostId> hosts = store.getHosts(network);
+        if (hosts.contains(one) && hosts.contains(two)) {
+            submitHostIntent(network, one, two);
+            if (reactivePairs.connected(generateKey(network, one, two), network, one, two)) {
+                log.debug("Connected hosts {} and {} of network {} on demand", one, two, network);
+            }
+        }
+    }
+
+    /**
+     * Withdraws the intents of the reactive pairs whose traffic stopped for
+     * longer than the idle timeout.
+     */
+    private void withdrawIdlePairs() {
+        try {
+            long idleMillis = TimeUnit.SECONDS.toMillis(reactiveIdleTimeoutSec);
+            for (ReactivePairs.Pair pair : reactivePairs.idle(pairTraffic(), idleMillis)) {
+                runInOrder(pair.network(), () -> {
+                    // the pair may have been withdrawn, or used again, meanwhile
+                    if (Objects.equals(intentIndex.keys(pair.network(), pair.one()).get(pair.two()),
+                                       pair.key())) {
+                        log.debug("Withdrawing idle pair {} of network {}", pair.key(), pair.network());
+                        withdrawIntent(pair.network(), pair.one(), pair.two(), pair.key());
+                    }
+                    return null;
+                });
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to withdraw idle reactive pairs", e);
+        }
+    }
+
+    /**
+     * Returns the bytes forwarded so far by the flows of the intent of each
+     * reactive pair, as counted by the edge devices of its hosts. Intents
+     * cannot expire on their own, so their flow counters tell whether a pair
+     * is still in use.
+     *
+     * @return intent key to byte count; pairs whose hosts are not located are
+     * missing
+     */
+    private Map<Key, Long> pairTraffic() {
+        Map<DeviceId, List<FlowEntry>> flows = Maps.newHashMap();
+        Map<Key, Long> traffic = Maps.newHashMap();
+        for (ReactivePairs.Pair pair : reactivePairs.pairs()) {
+            Host one = hostService.getHost(pair.one());
+            Host two = hostService.getHost(pair.two());
+            if (one == null || two == null) {
+                continue;
+            }
+            long bytes = 0;
+            for (DeviceId deviceId : ImmutableSet.of(one.location().deviceId(), two.location().deviceId())) {
+                for (FlowEntry entry : flows.computeIfAbsent(deviceId, this::appFlows)) {
+                    if (carries(entry, one.mac(), two.mac())) {
+                        bytes += entry.bytes();
+                    }
+                }
+            }
+            traffic.put(pair.key(), bytes);
+        }
+        return traffic;
+    }
+
+    // returns the flows of this application on a device
+    private List<FlowEntry> appFlows(DeviceId deviceId) {
+        List<FlowEntry> entries = Lists.newArrayList();
+        for (FlowEntry entry : flowRuleService.getFlowEntries(deviceId)) {
+            if (entry.appId() == appId.id()) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    // returns true if a flow matches traffic between two hosts, either way
+    private static boolean carries(FlowEntry entry, MacAddress one, MacAddress two) {
+        MacAddress src = mac(entry, Criterion.Type.ETH_SRC);
+        MacAddress dst = mac(entry, Criterion.Type.ETH_DST);
+        return (one.equals(src) && two.equals(dst)) || (two.equals(src) && one.equals(dst));
+    }
+
+    private static MacAddress mac(FlowEntry entry, Criterion.Type type) {
+        Criterion criterion = entry.selector().getCriterion(type);
+        return criterion instanceof EthCriterion ? ((EthCriterion) criterion).mac() : null;
+    }
+
+    // Connects the hosts of reactive networks upon their first packet
+    private class InternalPacketProcessor implements PacketProcessor {
+        @Override
+        public void process(PacketContext context) {
+            if (context.isHandled()) {
+                return;
+            }
+            Ethernet eth = context.inPacket().parsed();
+            if (eth == null || eth.isMulticast() || eth.isBroadcast()) {
+                return;
+            }
+            VlanId vlanId = VlanId.vlanId(eth.getVlanID());
+            firstPacket(HostId.hostId(eth.getSourceMAC(), vlanId),
+                        HostId.hostId(eth.getDestinationMAC(), vlanId));
+        }
+    }
+
+    // Follows the hosts of the networks as they move or change VLAN
+    private class InternalHostListener implements HostListener {
+        @Override
+        public void event(HostEvent event) {
+            switch (event.type()) {
+                case HOST_MOVED:
+                    hostRelocated(event.subject().id());
+                    break;
+                case HOST_ADDED:
+                case HOST_REMOVED:
+                    hostRelocated(event.subject().id());
+                    if (replaceRetaggedHosts) {
+                        hostRetagged(event.subject().mac());
+                    }
+                    break;
+                case HOST_UPDATED:
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Journals the store events and hands them over to the coalescer, which posts them to the listeners
+    private class InternalStoreDelegate implements NetworkStoreDelegate {
+        @Override
+        public void notify(NetworkEvent event) {
+            ConnectivityMode mode = null;
+            if (event.type() == NetworkEvent.Type.NETWORK_ADDED) {
+                // null if the network is already gone
+                mode = store.findConnectivityMode(event.subject());
+            }
+            journal.changed(new NetworkChange(event.time(), event.type(), event.subject(), mode,
+                                              event.addedHosts(), event.removedHosts()));
+            eventCoalescer.add(event);
+            // a reactive network may show up after the events of its first hosts
+            if (mode == ConnectivityMode.REACTIVE) {
+                updatePacketRequests(store.findHosts(event.subject()));
+            }
+            updatePacketRequests(event.addedHosts());
+            updatePacketRequests(event.removedHosts());
+        }
+    }
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import org.onlab.util.KryoNamespace;
+import org.onosproject.cluster.ClusterService;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.PartitionEvent;
+import org.onosproject.net.intent.PartitionEventListener;
+import org.onosproject.net.intent.PartitionService;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.Serializer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Assigns each network to one node of the cluster, and forwards the
+ * mutations of a network to the node that owns it.
+ * <p>
+ * Networks are spread over the nodes with the intent partitions: a
+ * network is owned by the leader of the partition its name hashes to,
+ * so ownership moves along with the partitions as nodes join and leave.
+ * Only the owner of a network computes and submits its intents.
+ * </p>
+ */
+final class NetworkOwnership {
+
+    private static final MessageSubject NETWORK_REQUEST = new MessageSubject("byon-network-request");
+
+    private static final Serializer SERIALIZER = Serializer.using(
+            KryoNamespace.newBuilder()
+                    .register(KryoNamespaces.API)
+                    .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID)
+                    .register(NetworkRequest.class, NetworkRequest.Type.class,
+                              NetworkReply.class, ConnectivityMode.class)
+                    .build());
+
+    private final ApplicationId appId;
+    private final PartitionService partitionService;
+    private final ClusterService clusterService;
+    private final ClusterCommunicationService communicator;
+    private final long timeoutSec;
+
+    private PartitionEventListener partitionListener;
+
+    /**
+     * Creates a new network ownership.
+     *
+     * @param appId application id
+     * @param partitionService partition service
+     * @param clusterService cluster service
+     * @param communicator cluster communication service
+     * @param timeoutSec time in seconds to wait for the owner of a network
+     *                   to reply to a forwarded mutation
+     */
+    NetworkOwnership(ApplicationId appId, PartitionService partitionService,
+                     ClusterService clusterService, ClusterCommunicationService communicator,
+                     long timeoutSec) {
+        this.appId = appId;
+        this.partitionService = partitionService;
+        this.clusterService = clusterService;
+        this.communicator = communicator;
+        this.timeoutSec = timeoutSec;
+    }
+
+    /**
+     * Starts serving the mutations forwarded by other nodes, and following
+     * the changes of ownership.
+     *
+     * @param handler runs a forwarded mutation on this node
+     * @param executor executor running the forwarded mutations
+     * @param ownershipChanged called whenever networks may have changed owner
+     */
+    void start(Function<NetworkRequest, NetworkReply> handler, Executor executor,
+               Runnable ownershipChanged) {
+        communicator.addSubscriber(NETWORK_REQUEST, SERIALIZER::decode, handler,
+                                   SERIALIZER::encode, executor);
+        partitionListener = new InternalPartitionListener(ownershipChanged);
+        partitionService.addListener(partitionListener);
+    }
+
+    /**
+     * Stops serving forwarded mutations and following ownership.
+     */
+    void stop() {
+        partitionService.removeListener(partitionListener);
+        communicator.removeSubscriber(NETWORK_REQUEST);
+    }
+
+    /**
+     * Returns the node that owns a network, unless it is this node.
+     *
+     * @param network network name
+     * @return owner node; null if this node owns the network, or if the
+     * partition of the network has no leader yet
+     */
+    NodeId remoteOwner(String network) {
+        NodeId owner = partitionService.getLeader(key(network));
+        return owner == null || owner.equals(clusterService.getLocalNode().id()) ? null : owner;
+    }
+
+    /**
+     * Returns true if this node owns a network. A network whose partition
+     * has no leader yet is treated as owned, so that it is not left without
+     * an owner.
+     *
+     * @param network network name
+     * @return true if this node does the intent work of the network
+     */
+    boolean isMine(String network) {
+        return remoteOwner(network) == null;
+    }
+
+    /**
+     * Runs a mutation on the node that owns its network and waits for it.
+     *
+     * @param owner owner of the network
+     * @param request mutation
+     * @return reply of the owner
+     * @throws IllegalStateException if the owner does not reply in time
+     */
+    NetworkReply forward(NodeId owner, NetworkRequest request) {
+        try {
+            return forwardAsync(owner, request).get(timeoutSec, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + owner, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Owner " + owner + " of network " + request.network() +
+                                                    " failed to apply " + request.type(), e);
+        }
+    }
+
+    /**
+     * Runs a mutation on the node that owns its network.
+     *
+     * @param owner owner of the network
+     * @param request mutation
+     * @return future completed with the reply of the owner
+     */
+    CompletableFuture<NetworkReply> forwardAsync(NodeId owner, NetworkRequest request) {
+        return communicator.sendAndReceive(request, NETWORK_REQUEST, SERIALIZER::encode,
+                                           SERIALIZER::decode, owner);
+    }
+
+    // networks are spread with the same partitions as intents
+    private Key key(String network) {
+        return Key.of(network, appId);
+    }
+
+    // Reports the changes of partition leaders, hence of network owners
+    private static final class InternalPartitionListener implements PartitionEventListener {
+        private final Runnable ownershipChanged;
+
+        private InternalPartitionListener(Runnable ownershipChanged) {
+            this.ownershipChanged = ownershipChanged;
+        }
+
+        @Override
+        public void event(PartitionEvent event) {
+            ownershipChanged.run();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+import org.onosproject.net.HostId;
+
+import java.util.Map;
+
+/**
+ * Outcome of a network mutation run by the node that owns the network.
+ * <p>
+ * Failures are carried as the kind and message of the exception, and
+ * raised again on the node that forwarded the mutation, so that callers
+ * see the same exceptions whichever node they call.
+ * </p>
+ */
+final class NetworkReply {
+
+    private static final NetworkReply DONE = new NetworkReply(ImmutableMap.of(), null, null);
+
+    private final Map<HostId, Boolean> results;
+    private final String errorType;
+    private final String error;
+
+    private NetworkReply(Map<HostId, Boolean> results, String errorType, String error) {
+        this.results = results;
+        this.errorType = errorType;
+        this.error = error;
+    }
+
+    /**
+     * Returns the reply of a mutation without results.
+     *
+     * @return reply
+     */
+    static NetworkReply done() {
+        return DONE;
+    }
+
+    /**
+     * Returns the reply of a mutation of hosts.
+     *
+     * @param results host id to whether the host was changed
+     * @return reply
+     */
+    static NetworkReply of(Map<HostId, Boolean> results) {
+        return new NetworkReply(ImmutableMap.copyOf(results), null, null);
+    }
+
+    /**
+     * Returns the reply of a failed mutation.
+     *
+     * @param e failure
+     * @return reply
+     */
+    static NetworkReply failed(RuntimeException e) {
+        return new NetworkReply(ImmutableMap.of(), e.getClass().getName(), e.getMessage());
+    }
+
+    /**
+     * Returns the results of the mutation.
+     *
+     * @return host id to whether the host was changed; empty for mutations
+     * of networks
+     * @throws NullPointerException if the mutation failed on a missing network
+     * @throws IllegalArgumentException if the mutation failed on an invalid argument
+     * @throws IllegalStateException if the mutation failed otherwise
+     */
+    Map<HostId, Boolean> results() {
+        if (errorType == null) {
+            return results;
+        }
+        if (errorType.equals(NullPointerException.class.getName())) {
+            throw new NullPointerException(error);
+        } else if (errorType.equals(IllegalArgumentException.class.getName())) {
+            throw new IllegalArgumentException(error);
+        }
+        throw new IllegalStateException(error);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("results", results)
+                .add("errorType", errorType)
+                .add("error", error)
+                .toString();
+    }
+}
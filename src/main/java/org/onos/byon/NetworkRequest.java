@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import org.onosproject.net.HostId;
+
+import java.util.List;
+
+/**
+ * Network mutation forwarded to the cluster node that owns the network.
+ */
+final class NetworkRequest {
+
+    /**
+     * Kind of mutation.
+     */
+    enum Type {
+        CREATE,
+        DELETE,
+        ADD_HOSTS,
+        REMOVE_HOSTS,
+        REPLACE_HOST,
+        CONNECT_PAIR
+    }
+
+    private final Type type;
+    private final String network;
+    private final ConnectivityMode mode;
+    private final List<HostId> hostIds;
+    private final boolean await;
+
+    private NetworkRequest(Type type, String network, ConnectivityMode mode,
+                           List<HostId> hostIds, boolean await) {
+        this.type = type;
+        this.network = network;
+        this.mode = mode;
+        this.hostIds = ImmutableList.copyOf(hostIds);
+        this.await = await;
+    }
+
+    /**
+     * Returns a request to create a network.
+     *
+     * @param network network name
+     * @param mode connectivity mode
+     * @return request
+     */
+    static NetworkRequest create(String network, ConnectivityMode mode) {
+        return new NetworkRequest(Type.CREATE, network, mode, ImmutableList.of(), false);
+    }
+
+    /**
+     * Returns a request to delete a network.
+     *
+     * @param network network name
+     * @param await true to reply once the intents of the network are withdrawn
+     * @return request
+     */
+    static NetworkRequest delete(String network, boolean await) {
+        return new NetworkRequest(Type.DELETE, network, null, ImmutableList.of(), await);
+    }
+
+    /**
+     * Returns a request to add hosts to a network.
+     *
+     * @param network network name
+     * @param hostIds hosts to add
+     * @param await true to reply once the intents of the hosts are done
+     * @return request
+     */
+    static NetworkRequest addHosts(String network, List<HostId> hostIds, boolean await) {
+        return new NetworkRequest(Type.ADD_HOSTS, network, null, hostIds, await);
+    }
+
+    /**
+     * Returns a request to remove hosts from a network.
+     *
+     * @param network network name
+     * @param hostIds hosts to remove
+     * @param await true to reply once the intents of the hosts are withdrawn
+     * @return request
+     */
+    static NetworkRequest removeHosts(String network, List<HostId> hostIds, boolean await) {
+        return new NetworkRequest(Type.REMOVE_HOSTS, network, null, hostIds, await);
+    }
+
+    /**
+     * Returns a request to replace a host of a network by another.
+     *
+     * @param network network name
+     * @param oldId host to replace
+     * @param newId replacing host
+     * @return request
+     */
+    static NetworkRequest replaceHost(String network, HostId oldId, HostId newId) {
+        return new NetworkRequest(Type.REPLACE_HOST, network, null, ImmutableList.of(oldId, newId), true);
+    }
+
+    /**
+     * Returns a request to connect a pair of hosts of a reactive network.
+     *
+     * @param network network name
+     * @param one host one
+     * @param two host two
+     * @return request
+     */
+    static NetworkRequest connectPair(String network, HostId one, HostId two) {
+        return new NetworkRequest(Type.CONNECT_PAIR, network, null, ImmutableList.of(one, two), false);
+    }
+
+    /**
+     * Returns the kind of mutation.
+     *
+     * @return request type
+     */
+    Type type() {
+        return type;
+    }
+
+    /**
+     * Returns the network name.
+     *
+     * @return network name
+     */
+    String network() {
+        return network;
+    }
+
+    /**
+     * Returns the connectivity mode of a network to create.
+     *
+     * @return connectivity mode; null for other requests
+     */
+    ConnectivityMode mode() {
+        return mode;
+    }
+
+    /**
+     * Returns the hosts to add or remove, or the host to replace followed
+     * by the replacing host.
+     *
+     * @return list of host ids
+     */
+    List<HostId> hostIds() {
+        return hostIds;
+    }
+
+    /**
+     * Returns whether the reply waits for the intents of the mutation.
+     *
+     * @return true to wait for the intents
+     */
+    boolean await() {
+        return await;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("type", type)
+                .add("network", network)
+                .add("mode", mode)
+                .add("hostIds", hostIds)
+                .add("await", await)
+                .toString();
+    }
+}
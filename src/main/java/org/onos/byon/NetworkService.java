@@ -18,7 +18,11 @@ package org.onos.byon;
 
 import org.onosproject.net.HostId;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service that allows to create virtual named networks
@@ -35,7 +39,18 @@ public interface NetworkService {
     void createNetwork(String network);
 
     /**
-     * Deletes a named network.
+     * Create a named network with the given connectivity mode. Creating a
+     * network that already exists with the same mode does nothing.
+     *
+     * @param network network name
+     * @param mode connectivity mode
+     * @throws IllegalStateException if the network exists with another mode
+     */
+    void createNetwork(String network, ConnectivityMode mode);
+
+    /**
+     * Deletes a named network. The intents of the network are withdrawn in
+     * the background; their progress is reported by {@link #getTeardowns()}.
      *
      * @param network network name
      */
@@ -48,6 +63,47 @@ public interface NetworkService {
      */
     Set<String> getNetworks();
 
+    /**
+     * Returns a page of the names of the networks starting with a prefix,
+     * in order. Pages are read from a local sorted index of the network
+     * names, so neither a page nor a prefix search copies the inventory;
+     * networks created or deleted between pages are seen or skipped
+     * according to where they fall relative to the cursor. The first page
+     * doubles as a top-K prefix search, e.g. for completion.
+     *
+     * @param prefix network name prefix; null or empty for all networks
+     * @param after cursor returned with the previous page; null for the first page
+     * @param limit maximum number of networks on the page
+     * @return page of network names
+     */
+    Page<String> getNetworks(String prefix, String after, int limit);
+
+    /**
+     * Returns the number of networks starting with a prefix. The count of
+     * all networks is kept as they change; counting with a prefix walks the
+     * matching names, and so takes time linear in their number.
+     *
+     * @param prefix network name prefix; null or empty for all networks
+     * @return network count
+     */
+    int getNetworkCount(String prefix);
+
+    /**
+     * Returns the connectivity mode of a network.
+     *
+     * @param network network name
+     * @return connectivity mode
+     */
+    ConnectivityMode getConnectivityMode(String network);
+
+    /**
+     * Returns the connectivity mode of a network, if it exists.
+     *
+     * @param network network name
+     * @return connectivity mode; null if the network does not exist
+     */
+    ConnectivityMode findConnectivityMode(String network);
+
     /**
      * Adds a host to the given network.
      *
@@ -64,6 +120,24 @@ public interface NetworkService {
      */
     void removeHost(String network, HostId hostId);
 
+    /**
+     * Adds a set of hosts to the given network.
+     *
+     * @param network network name
+     * @param hostIds host ids
+     * @return map of each host to true if it was added; false if it already exists
+     */
+    Map<HostId, Boolean> addHosts(String network, Collection<HostId> hostIds);
+
+    /**
+     * Removes a set of hosts from the given network.
+     *
+     * @param network network name
+     * @param hostIds host ids
+     * @return map of each host to true if it was removed; false if it was not present
+     */
+    Map<HostId, Boolean> removeHosts(String network, Collection<HostId> hostIds);
+
     /**
      * Returns all the hosts in a network.
      *
@@ -72,17 +146,189 @@ public interface NetworkService {
      */
     Set<HostId> getHosts(String network);
 
+    /**
+     * Returns a page of the hosts in a network. Hosts are returned in a
+     * stable order, by MAC address and then VLAN id.
+     *
+     * @param network network name
+     * @param after cursor returned with the previous page; null for the first page
+     * @param limit maximum number of hosts on the page
+     * @return page of host ids
+     */
+    Page<HostId> getHosts(String network, HostId after, int limit);
+
+    /**
+     * Returns a page of the hosts in a network, if it exists.
+     *
+     * @param network network name
+     * @param after cursor returned with the previous page; null for the first page
+     * @param limit maximum number of hosts on the page
+     * @return page of host ids; null if the network does not exist
+     */
+    Page<HostId> findHosts(String network, HostId after, int limit);
+
+    /**
+     * Returns the networks a host is in. The lookup does not depend on the
+     * number of networks.
+     *
+     * @param hostId host id
+     * @return set of network names
+     */
+    Set<String> getNetworks(HostId hostId);
+
+    /**
+     * Returns the recent changes to a network, as recorded by the network
+     * journal of this node. The history of a deleted network is kept until
+     * the journal is next compacted.
+     *
+     * @param network network name
+     * @return changes, oldest first
+     */
+    List<NetworkChange> getHistory(String network);
+
+    /**
+     * Returns the progress of the teardowns of deleted networks, including
+     * the teardowns done in the last few minutes.
+     *
+     * @return teardown statuses
+     */
+    List<TeardownStatus> getTeardowns();
+
+    /**
+     * Stops withdrawing the intents of a deleted network. The network name
+     * cannot be reused until the teardown is resumed and done.
+     *
+     * @param network network name
+     * @return true if the teardown was in progress
+     */
+    boolean cancelTeardown(String network);
+
+    /**
+     * Resumes withdrawing the intents of a deleted network.
+     *
+     * @param network network name
+     * @return true if the teardown was not done yet
+     */
+    boolean resumeTeardown(String network);
+
+    /**
+     * Returns the intent counts and convergence times of a network.
+     *
+     * @param network network name
+     * @return network intent statistics
+     */
+    NetworkIntentStats getIntentStats(String network);
+
+    /**
+     * Returns the admission counters of a network, or of all networks, for
+     * the mutations admitted by this node.
+     *
+     * @param network network name; null for all networks
+     * @return admission statistics
+     */
+    AdmissionStats getAdmissionStats(String network);
+
+    /**
+     * Returns the counters of the local caches of network state, by cache
+     * name.
+     *
+     * @return cache statistics
+     */
+    Map<String, CacheStats> getCacheStats();
+
+    /**
+     * Compares the intents every network owned by this node should have,
+     * given its hosts and connectivity mode, with the intents it actually
+     * has, and submits or withdraws the difference.
+     *
+     * @param dryRun true to only report the differences, without repairing them
+     * @return drift of the networks whose intents differ from what they should be
+     */
+    List<IntentDrift> reconcile(boolean dryRun);
+
+    /**
+     * Creates a named network asynchronously. Operations on the same network
+     * are applied in the order they were requested; operations on different
+     * networks may proceed in parallel.
+     *
+     * @param network network name
+     * @param mode connectivity mode of the network
+     * @return future completed once the network is stored
+     */
+    CompletableFuture<Void> createNetworkAsync(String network, ConnectivityMode mode);
+
+    /**
+     * Deletes a named network asynchronously, in order with the other
+     * operations on the network.
+     *
+     * @param network network name
+     * @return future completed once the intents of the network are withdrawn;
+     * not before its teardown is resumed if the teardown is cancelled
+     */
+    CompletableFuture<Void> deleteNetworkAsync(String network);
+
+    /**
+     * Adds a host to the given network asynchronously, in order with the
+     * other operations on the network.
+     *
+     * @param network network name
+     * @param hostId host id
+     * @param awaitIntents whether to wait for the intents of the host
+     *                     to be installed
+     * @return future completed with true if the host was added, false if it
+     * already was in the network
+     */
+    CompletableFuture<Boolean> addHostAsync(String network, HostId hostId, boolean awaitIntents);
+
+    /**
+     * Removes a host from the given network asynchronously, in order with
+     * the other operations on the network.
+     *
+     * @param network network name
+     * @param hostId host id
+     * @param awaitIntents whether to wait for the intents of the host
+     *                     to be withdrawn
+     * @return future completed with true if the host was removed, false if
+     * it was not in the network
+     */
+    CompletableFuture<Boolean> removeHostAsync(String network, HostId hostId, boolean awaitIntents);
+
+    /**
+     * Replaces a host of a network by another, for instance after the host
+     * was moved to another VLAN, without a break in its connectivity. The
+     * intents of the new host are installed before those of the old host
+     * are withdrawn, and intents that do not involve either are left alone.
+     *
+     * @param network network name
+     * @param oldId host to replace
+     * @param newId replacing host
+     * @throws IllegalStateException if the old host is not in the network,
+     *                               or the new host already is
+     */
+    void replaceHost(String network, HostId oldId, HostId newId);
+
+    /**
+     * Replaces a host of a network by another, as {@link #replaceHost} does,
+     * once the operations previously queued on the network are done.
+     *
+     * @param network network name
+     * @param oldId host to replace
+     * @param newId replacing host
+     * @return future completed once the intents of the old host are withdrawn
+     */
+    CompletableFuture<Void> replaceHostAsync(String network, HostId oldId, HostId newId);
+
     /**
      * Register a listener for network events.
      *
      * @param listener listener
      */
-    //TODO Lab 6: Add addListener to the interface (uncomment the line)
+    void addListener(NetworkListener listener);
 
     /**
      * Unregister a listener for network events.
      *
      * @param listener listener
      */
-    //TODO Lab 6: Add removeListener to the interface (uncomment the line)
+    void removeListener(NetworkListener listener);
 }
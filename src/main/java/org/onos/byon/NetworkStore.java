@@ -16,22 +16,26 @@
 
 package org.onos.byon;
 
+import org.onlab.packet.MacAddress;
 import org.onosproject.net.HostId;
 import org.onosproject.store.Store;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
 
 /**
  * Tracks networks and their hosts.
  */
-// TODO Lab 6: Extend Store<NetworkEvent, NetworkStoreDelegate>
-public interface NetworkStore {
+public interface NetworkStore extends Store<NetworkEvent, NetworkStoreDelegate> {
     /**
      * Create a named network.
      *
      * @param network network name
+     * @param mode connectivity mode of the network
      */
-    void putNetwork(String network);
+    void putNetwork(String network, ConnectivityMode mode);
 
     /**
      * Removes a named network.
@@ -47,6 +51,39 @@ public interface NetworkStore {
      */
     Set<String> getNetworks();
 
+    /**
+     * Returns the number of networks.
+     *
+     * @return network count
+     */
+    int getNetworkCount();
+
+    /**
+     * Returns the names of the networks starting with a prefix, in order.
+     * The view is read-only and reflects later changes to the networks; its
+     * size is not necessarily a constant time operation.
+     *
+     * @param prefix network name prefix; empty for all networks
+     * @return sorted view of network names
+     */
+    NavigableSet<String> getNetworks(String prefix);
+
+    /**
+     * Returns the connectivity mode of a network.
+     *
+     * @param network network name
+     * @return connectivity mode
+     */
+    ConnectivityMode getConnectivityMode(String network);
+
+    /**
+     * Returns the connectivity mode of a network, if it exists.
+     *
+     * @param network network name
+     * @return connectivity mode; null if there is no such network
+     */
+    ConnectivityMode findConnectivityMode(String network);
+
     /**
      * Adds a host to the given network.
      *
@@ -61,8 +98,27 @@ public interface NetworkStore {
      *
      * @param network network name
      * @param hostId host id
+     * @return true if the host was removed; false if it was not present
+     */
+    boolean removeHost(String network, HostId hostId);
+
+    /**
+     * Adds a set of hosts to the given network in a single update.
+     *
+     * @param network network name
+     * @param hostIds host ids
+     * @return map of each host to true if it was added; false if it already exists
      */
-    void removeHost(String network, HostId hostId);
+    Map<HostId, Boolean> addHosts(String network, Collection<HostId> hostIds);
+
+    /**
+     * Removes a set of hosts from the given network in a single update.
+     *
+     * @param network network name
+     * @param hostIds host ids
+     * @return map of each host to true if it was removed; false if it was not present
+     */
+    Map<HostId, Boolean> removeHosts(String network, Collection<HostId> hostIds);
 
     /**
      * Returns all the hosts in a network.
@@ -71,4 +127,36 @@ public interface NetworkStore {
      * @return set of host ids
      */
     Set<HostId> getHosts(String network);
+
+    /**
+     * Returns all the hosts in a network, if it exists.
+     *
+     * @param network network name
+     * @return set of host ids; null if there is no such network
+     */
+    Set<HostId> findHosts(String network);
+
+    /**
+     * Returns the networks a host is in.
+     *
+     * @param hostId host id
+     * @return set of network names
+     */
+    Set<String> getNetworks(HostId hostId);
+
+    /**
+     * Returns the networks with a host of the given MAC address, whatever
+     * its VLAN id.
+     *
+     * @param mac MAC address
+     * @return set of network names
+     */
+    Set<String> getNetworks(MacAddress mac);
+
+    /**
+     * Returns the counters of the local read caches of the store.
+     *
+     * @return map of cache name to cache statistics
+     */
+    Map<String, CacheStats> getCacheStats();
 }
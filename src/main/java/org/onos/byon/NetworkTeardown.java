@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableList;
+import org.onosproject.net.intent.Key;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Background withdrawal of the intents of a deleted network.
+ * <p>
+ * The intents are withdrawn in batches, several batches at a time, each
+ * batch waiting for its withdrawals to complete before its worker moves on
+ * to the next one. A cancelled teardown lets the batches in progress
+ * finish, and picks up from the next batch when resumed.
+ * </p>
+ */
+final class NetworkTeardown {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final String network;
+    private final List<Key> keys;
+    private final Function<Key, CompletableFuture<Void>> withdrawer;
+    private final Executor executor;
+    private final int batchSize;
+    private final int parallelism;
+
+    private final long startMillis = System.currentTimeMillis();
+    private volatile long endMillis;
+    private final AtomicInteger nextBatch = new AtomicInteger();
+    private final AtomicLong withdrawn = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private boolean cancelled = false;
+    private int workers = 0;
+
+    /**
+     * Creates a new teardown.
+     *
+     * @param network network name
+     * @param keys keys of the intents to withdraw
+     * @param withdrawer withdraws an intent, returning the completion of the withdrawal
+     * @param executor executor running the batches
+     * @param batchSize number of intents withdrawn per batch
+     * @param parallelism number of batches in progress at once
+     */
+    NetworkTeardown(String network, List<Key> keys,
+                    Function<Key, CompletableFuture<Void>> withdrawer,
+                    Executor executor, int batchSize, int parallelism) {
+        checkArgument(batchSize > 0, "Batch size must be positive");
+        checkArgument(parallelism > 0, "Parallelism must be positive");
+        this.network = network;
+        this.keys = ImmutableList.copyOf(keys);
+        this.withdrawer = withdrawer;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Starts, or resumes, withdrawing the intents.
+     *
+     * @return false if the teardown is already done
+     */
+    synchronized boolean start() {
+        if (done.isDone()) {
+            return false;
+        }
+        cancelled = false;
+        while (workers < parallelism) {
+            workers++;
+            executor.execute(this::work);
+        }
+        return true;
+    }
+
+    /**
+     * Stops withdrawing the intents once the batches in progress are done.
+     *
+     * @return false if the teardown is already done
+     */
+    synchronized boolean cancel() {
+        if (done.isDone()) {
+            return false;
+        }
+        cancelled = true;
+        return true;
+    }
+
+    /**
+     * Returns true once every intent has been withdrawn, or failed to.
+     *
+     * @return true if the teardown is done
+     */
+    boolean isDone() {
+        return done.isDone();
+    }
+
+    /**
+     * Returns true if the teardown was done before a given time.
+     *
+     * @param millis time in millis since the epoch
+     * @return true if the teardown is done, and was by then
+     */
+    boolean doneBefore(long millis) {
+        return done.isDone() && endMillis < millis;
+    }
+
+    /**
+     * Returns a future completed once the teardown is done.
+     *
+     * @return teardown completion
+     */
+    CompletableFuture<Void> future() {
+        return done;
+    }
+
+    /**
+     * Returns the progress of the teardown.
+     *
+     * @return teardown status
+     */
+    synchronized TeardownStatus status() {
+        TeardownStatus.State state = done.isDone() ? TeardownStatus.State.DONE :
+                cancelled ? TeardownStatus.State.CANCELLED : TeardownStatus.State.RUNNING;
+        long end = done.isDone() ? endMillis : System.currentTimeMillis();
+        return new TeardownStatus(network, state, keys.size(), withdrawn.get(), failed.get(),
+                                  end - startMillis);
+    }
+
+    // withdraws batches until none is left or the teardown is cancelled
+    private void work() {
+        try {
+            while (!isCancelled()) {
+                long from = (long) nextBatch.getAndIncrement() * batchSize;
+                if (from >= keys.size()) {
+                    break;
+                }
+                withdrawBatch(keys.subList((int) from, (int) Math.min(from + batchSize, keys.size())));
+            }
+        } finally {
+            workerDone();
+        }
+    }
+
+    private void withdrawBatch(List<Key> batch) {
+        List<CompletableFuture<Void>> futures = batch.stream()
+                .map(this::withdraw)
+                .collect(Collectors.toList());
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+                withdrawn.incrementAndGet();
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    private CompletableFuture<Void> withdraw(Key key) {
+        try {
+            return withdrawer.apply(key);
+        } catch (RuntimeException e) {
+            log.warn("Unable to withdraw intent {} of network {}", key, network, e);
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    private synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    private synchronized void workerDone() {
+        workers--;
+        if (workers == 0 && (long) nextBatch.get() * batchSize >= keys.size()) {
+            endMillis = System.currentTimeMillis();
+            done.complete(null);
+            log.info("Withdrew {} intents of network {}, {} failed",
+                     withdrawn.get(), network, failed.get());
+        }
+    }
+}
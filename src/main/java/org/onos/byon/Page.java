@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * One page of the results of a query, and the cursor to the next page.
+ *
+ * @param <T> result type
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final T next;
+
+    /**
+     * Creates a new page.
+     *
+     * @param items results on this page, in order
+     * @param next cursor to pass to get the next page; null on the last page
+     */
+    public Page(List<T> items, T next) {
+        this.items = ImmutableList.copyOf(items);
+        this.next = next;
+    }
+
+    /**
+     * Returns the results on this page.
+     *
+     * @return list of results
+     */
+    public List<T> items() {
+        return items;
+    }
+
+    /**
+     * Returns the cursor to pass to get the next page.
+     *
+     * @return last result on this page; null if this is the last page
+     */
+    public T next() {
+        return next;
+    }
+
+    /**
+     * Returns true if there are results after this page.
+     *
+     * @return true unless this is the last page
+     */
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("items", items.size())
+                .add("next", next)
+                .toString();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.onosproject.net.HostId;
+import org.onosproject.net.intent.Key;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Host pairs of reactive networks that were connected on their first
+ * packet, along with the last time they were seen exchanging traffic.
+ * <p>
+ * Traffic is given as the byte count of the flows of each pair: a pair is
+ * active whenever its count changes between two looks, or a packet of the
+ * pair reaches the controller, and idle once neither happens for the idle
+ * timeout.
+ * </p>
+ */
+final class ReactivePairs {
+
+    private final LongSupplier clock;
+    // intent key -> connected pair
+    private final Map<Key, Pair> pairs = Maps.newConcurrentMap();
+
+    /**
+     * Creates a new set of pairs.
+     *
+     * @param clock current time in millis
+     */
+    ReactivePairs(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Records a pair connected by an intent, or traffic of a pair already
+     * connected.
+     *
+     * @param key intent key of the pair
+     * @param network network name
+     * @param one host one
+     * @param two host two
+     * @return true if the pair was not connected before
+     */
+    boolean connected(Key key, String network, HostId one, HostId two) {
+        long now = clock.getAsLong();
+        Pair previous = pairs.putIfAbsent(key, new Pair(key, network, one, two, now));
+        if (previous != null) {
+            previous.active(now);
+        }
+        return previous == null;
+    }
+
+    /**
+     * Records traffic of a connected pair.
+     *
+     * @param key intent key of the pair
+     * @return false if the pair is not connected
+     */
+    boolean active(Key key) {
+        Pair pair = pairs.get(key);
+        if (pair != null) {
+            pair.active(clock.getAsLong());
+        }
+        return pair != null;
+    }
+
+    /**
+     * Forgets a pair whose intent is withdrawn.
+     *
+     * @param key intent key of the pair
+     */
+    void forget(Key key) {
+        pairs.remove(key);
+    }
+
+    /**
+     * Forgets all the pairs of a network.
+     *
+     * @param network network name
+     */
+    void forget(String network) {
+        pairs.values().removeIf(pair -> pair.network().equals(network));
+    }
+
+    /**
+     * Returns the connected pairs.
+     *
+     * @return immutable snapshot of the pairs
+     */
+    List<Pair> pairs() {
+        return ImmutableList.copyOf(pairs.values());
+    }
+
+    /**
+     * Records the traffic of the pairs, and returns those that have been
+     * idle for at least the given time.
+     *
+     * @param traffic intent key to byte count of the flows of the pair;
+     *                pairs left out are taken as idle
+     * @param idleMillis idle timeout in millis
+     * @return idle pairs
+     */
+    List<Pair> idle(Map<Key, Long> traffic, long idleMillis) {
+        long now = clock.getAsLong();
+        List<Pair> idle = Lists.newArrayList();
+        for (Pair pair : pairs.values()) {
+            if (!pair.traffic(traffic.get(pair.key()), now) && now - pair.lastActive() >= idleMillis) {
+                idle.add(pair);
+            }
+        }
+        return idle;
+    }
+
+    /**
+     * Number of pairs connected.
+     *
+     * @return pair count
+     */
+    int size() {
+        return pairs.size();
+    }
+
+    /**
+     * Pair of hosts connected by a host to host intent.
+     */
+    static final class Pair {
+        private final Key key;
+        private final String network;
+        private final HostId one;
+        private final HostId two;
+        // written by the packet threads and by the sweep, without locking
+        private final AtomicLong lastActive;
+        private final AtomicLong lastBytes = new AtomicLong();
+
+        private Pair(Key key, String network, HostId one, HostId two, long now) {
+            this.key = key;
+            this.network = network;
+            this.one = one;
+            this.two = two;
+            this.lastActive = new AtomicLong(now);
+        }
+
+        /**
+         * Returns the intent key of the pair.
+         *
+         * @return intent key
+         */
+        Key key() {
+            return key;
+        }
+
+        /**
+         * Returns the network of the pair.
+         *
+         * @return network name
+         */
+        String network() {
+            return network;
+        }
+
+        /**
+         * Returns host one of the pair.
+         *
+         * @return host id
+         */
+        HostId one() {
+            return one;
+        }
+
+        /**
+         * Returns host two of the pair.
+         *
+         * @return host id
+         */
+        HostId two() {
+            return two;
+        }
+
+        /**
+         * Returns the last time the pair was seen exchanging traffic.
+         *
+         * @return time in millis
+         */
+        long lastActive() {
+            return lastActive.get();
+        }
+
+        private void active(long now) {
+            lastActive.accumulateAndGet(now, Math::max);
+        }
+
+        // records the byte count of the pair; true if it changed
+        private boolean traffic(Long bytes, long now) {
+            if (bytes == null || lastBytes.getAndSet(bytes) == bytes) {
+                return false;
+            }
+            active(now);
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("network", network)
+                    .add("one", one)
+                    .add("two", two)
+                    .add("lastActive", lastActive())
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Progress of the withdrawal of the intents of a deleted network.
+ */
+public final class TeardownStatus {
+
+    /**
+     * State of a teardown.
+     */
+    public enum State {
+        /**
+         * Intents are being withdrawn.
+         */
+        RUNNING,
+
+        /**
+         * Cancelled before all intents were withdrawn; may be resumed.
+         */
+        CANCELLED,
+
+        /**
+         * All intents have been withdrawn, or have failed to.
+         */
+        DONE
+    }
+
+    private final String network;
+    private final State state;
+    private final long total;
+    private final long withdrawn;
+    private final long failed;
+    private final long elapsedMillis;
+
+    /**
+     * Creates a new teardown status.
+     *
+     * @param network network name
+     * @param state teardown state
+     * @param total number of intents to withdraw
+     * @param withdrawn number of intents withdrawn so far
+     * @param failed number of intents that could not be withdrawn
+     * @param elapsedMillis time spent since the teardown started
+     */
+    public TeardownStatus(String network, State state, long total, long withdrawn,
+                          long failed, long elapsedMillis) {
+        this.network = network;
+        this.state = state;
+        this.total = total;
+        this.withdrawn = withdrawn;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Returns the name of the deleted network.
+     *
+     * @return network name
+     */
+    public String network() {
+        return network;
+    }
+
+    /**
+     * Returns the state of the teardown.
+     *
+     * @return teardown state
+     */
+    public State state() {
+        return state;
+    }
+
+    /**
+     * Returns the number of intents to withdraw.
+     *
+     * @return total intent count
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Returns the number of intents withdrawn so far.
+     *
+     * @return withdrawn intent count
+     */
+    public long withdrawn() {
+        return withdrawn;
+    }
+
+    /**
+     * Returns the number of intents that could not be withdrawn.
+     *
+     * @return failed intent count
+     */
+    public long failed() {
+        return failed;
+    }
+
+    /**
+     * Returns the time spent since the teardown started.
+     *
+     * @return elapsed time in millis
+     */
+    public long elapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("network", network)
+                .add("state", state)
+                .add("total", total)
+                .add("withdrawn", withdrawn)
+                .add("failed", failed)
+                .add("elapsedMillis", elapsedMillis)
+                .toString();
+    }
+}
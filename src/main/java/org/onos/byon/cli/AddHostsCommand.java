@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon.cli;
+
+import org.apache.karaf.shell.commands.Argument;
+import org.apache.karaf.shell.commands.Command;
+import org.onos.byon.NetworkService;
+import org.onosproject.cli.AbstractShellCommand;
+import org.onosproject.net.HostId;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * CLI to add the hosts listed in a file to a network.
+ */
+@Command(scope = "byon", name = "add-hosts",
+        description = "Add the hosts listed in a file, one host id per line, to a network")
+public class AddHostsCommand extends AbstractShellCommand {
+
+    @Argument(index = 0, name = "network", description = "Network name",
+            required = true, multiValued = false)
+    String network = null;
+
+    @Argument(index = 1, name = "file", description = "File with one host id per line",
+            required = true, multiValued = false)
+    String file = null;
+
+    @Override
+    protected void execute() {
+        List<HostId> hostIds;
+        try {
+            hostIds = Files.readAllLines(Paths.get(file)).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .map(HostId::hostId)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            error("Unable to read %s: %s", file, e.getMessage());
+            return;
+        }
+
+        NetworkService networkService = get(NetworkService.class);
+        Map<HostId, Boolean> results = networkService.addHosts(network, hostIds);
+        long added = results.values().stream().filter(Boolean::booleanValue).count();
+        print("Added %d hosts to %s (%d already present)",
+              added, network, results.size() - added);
+    }
+}
@@ -18,6 +18,8 @@ package org.onos.byon.cli;
 
 import org.apache.karaf.shell.commands.Argument;
 import org.apache.karaf.shell.commands.Command;
+import org.apache.karaf.shell.commands.Option;
+import org.onos.byon.ConnectivityMode;
 import org.onos.byon.NetworkService;
 import org.onosproject.cli.AbstractShellCommand;
 
@@ -31,10 +33,22 @@ public class CreateNetworkCommand extends AbstractShellCommand {
             required = true, multiValued = false)
     String network = null;
 
+    @Option(name = "-m", aliases = "--mode",
+            description = "Connectivity mode: mesh, hub-and-spoke, shared-tree or reactive",
+            required = false, multiValued = false)
+    String mode = "mesh";
+
     @Override
     protected void execute() {
+        ConnectivityMode connectivityMode;
+        try {
+            connectivityMode = ConnectivityMode.valueOf(mode.toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            error("Unknown connectivity mode %s", mode);
+            return;
+        }
         NetworkService networkService = get(NetworkService.class);
-        networkService.createNetwork(network);
+        networkService.createNetwork(network, connectivityMode);
         print("Created network %s", network);
     }
 }
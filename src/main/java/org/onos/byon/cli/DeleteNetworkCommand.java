@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon.cli;
+
+import org.apache.karaf.shell.commands.Argument;
+import org.apache.karaf.shell.commands.Command;
+import org.apache.karaf.shell.commands.Option;
+import org.onos.byon.NetworkService;
+import org.onos.byon.TeardownStatus;
+import org.onosproject.cli.AbstractShellCommand;
+
+import java.util.Optional;
+
+/**
+ * CLI to delete a network and follow the withdrawal of its intents.
+ */
+@Command(scope = "byon", name = "delete-network",
+        description = "Deletes a network, withdrawing its intents in the background")
+public class DeleteNetworkCommand extends AbstractShellCommand {
+
+    private static final String FMT = "%s: %s, withdrawn=%d/%d, failed=%d, elapsed=%dms";
+    private static final long POLL_MS = 1000;
+
+    @Argument(index = 0, name = "network", description = "Network name",
+            required = false, multiValued = false)
+    String network = null;
+
+    @Option(name = "-a", aliases = "--async",
+            description = "Return without waiting for the intents to be withdrawn",
+            required = false, multiValued = false)
+    private boolean async = false;
+
+    @Option(name = "-s", aliases = "--status",
+            description = "Show the progress of the teardowns, of all networks if none is given",
+            required = false, multiValued = false)
+    private boolean status = false;
+
+    @Option(name = "-c", aliases = "--cancel", description = "Cancel the teardown of the network",
+            required = false, multiValued = false)
+    private boolean cancel = false;
+
+    @Option(name = "-r", aliases = "--resume", description = "Resume the teardown of the network",
+            required = false, multiValued = false)
+    private boolean resume = false;
+
+    @Override
+    protected void execute() {
+        NetworkService networkService = get(NetworkService.class);
+
+        if (status) {
+            networkService.getTeardowns().stream()
+                    .filter(s -> network == null || s.network().equals(network))
+                    .forEach(this::print);
+            return;
+        }
+        if (network == null) {
+            error("A network name is required");
+            return;
+        }
+        if (cancel) {
+            print(networkService.cancelTeardown(network) ?
+                          "Cancelled the teardown of %s" : "No teardown of %s in progress", network);
+            return;
+        }
+        if (resume) {
+            if (!networkService.resumeTeardown(network)) {
+                print("No teardown of %s to resume", network);
+                return;
+            }
+        } else {
+            networkService.deleteNetwork(network);
+        }
+        if (async) {
+            print("Deleted network %s; its intents are being withdrawn", network);
+            return;
+        }
+        waitForTeardown(networkService);
+    }
+
+    // prints the progress of the teardown until it stops running
+    private void waitForTeardown(NetworkService networkService) {
+        try {
+            Optional<TeardownStatus> teardown = status(networkService);
+            while (teardown.isPresent() && teardown.get().state() == TeardownStatus.State.RUNNING) {
+                Thread.sleep(POLL_MS);
+                teardown = status(networkService);
+                teardown.ifPresent(this::print);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            print("Teardown of %s continues in the background", network);
+        }
+    }
+
+    private Optional<TeardownStatus> status(NetworkService networkService) {
+        return networkService.getTeardowns().stream()
+                .filter(s -> s.network().equals(network))
+                .findFirst();
+    }
+
+    private void print(TeardownStatus s) {
+        print(FMT, s.network(), s.state(), s.withdrawn(), s.total(), s.failed(), s.elapsedMillis());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon.cli;
+
+import org.apache.karaf.shell.commands.Argument;
+import org.apache.karaf.shell.commands.Command;
+import org.apache.karaf.shell.commands.Option;
+import org.onos.byon.NetworkChange;
+import org.onos.byon.NetworkService;
+import org.onosproject.cli.AbstractShellCommand;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * CLI to show the recent changes to a network.
+ */
+@Command(scope = "byon", name = "history", description = "Shows the recent changes to a network")
+public class HistoryCommand extends AbstractShellCommand {
+
+    @Argument(index = 0, name = "network", description = "Network name",
+            required = true, multiValued = false)
+    String network = null;
+
+    @Option(name = "-n", aliases = "--count", description = "Number of changes to show",
+            required = false, multiValued = false)
+    private int count = 20;
+
+    @Override
+    protected void execute() {
+        NetworkService networkService = get(NetworkService.class);
+        List<NetworkChange> changes = networkService.getHistory(network);
+        if (changes.isEmpty()) {
+            print("No recent changes to network %s", network);
+            return;
+        }
+        for (NetworkChange change : changes.subList(Math.max(0, changes.size() - count), changes.size())) {
+            switch (change.type()) {
+                case NETWORK_ADDED:
+                    print("%s created, mode=%s", Instant.ofEpochMilli(change.time()),
+                          change.mode() == null ? "unknown" : change.mode());
+                    break;
+                case NETWORK_REMOVED:
+                    print("%s deleted", Instant.ofEpochMilli(change.time()));
+                    break;
+                case NETWORK_UPDATED:
+                default:
+                    print("%s added=%s, removed=%s", Instant.ofEpochMilli(change.time()),
+                          change.addedHosts(), change.removedHosts());
+                    break;
+            }
+        }
+    }
+}
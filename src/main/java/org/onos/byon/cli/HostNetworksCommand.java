@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon.cli;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.apache.karaf.shell.commands.Argument;
+import org.apache.karaf.shell.commands.Command;
+import org.onos.byon.NetworkService;
+import org.onosproject.cli.AbstractShellCommand;
+import org.onosproject.net.HostId;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * CLI to list the networks a host is in.
+ */
+@Command(scope = "byon", name = "host-networks", description = "Lists the networks a host is in")
+public class HostNetworksCommand extends AbstractShellCommand {
+
+    @Argument(index = 0, name = "hostId", description = "Host Id",
+            required = true, multiValued = false)
+    String hostId = null;
+
+    @Override
+    protected void execute() {
+        NetworkService networkService = get(NetworkService.class);
+        Set<String> networks = new TreeSet<>(networkService.getNetworks(HostId.hostId(hostId)));
+
+        if (outputJson()) {
+            ArrayNode node = mapper().createArrayNode();
+            networks.forEach(node::add);
+            print("%s", node);
+            return;
+        }
+        for (String net : networks) {
+            print("%s", net);
+        }
+    }
+}
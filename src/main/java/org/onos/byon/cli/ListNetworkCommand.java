@@ -16,26 +16,120 @@
 
 package org.onos.byon.cli;
 
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.karaf.shell.commands.Command;
+import org.apache.karaf.shell.commands.Option;
+import org.onos.byon.ConnectivityMode;
 import org.onos.byon.NetworkService;
+import org.onos.byon.Page;
 import org.onosproject.cli.AbstractShellCommand;
 import org.onosproject.net.HostId;
 
 /**
  * CLI to list networks.
+ * <p>
+ * Networks and their hosts are fetched and printed one page at a time, so
+ * the first networks show up, and the command can be interrupted, without
+ * waiting for the whole inventory. JSON output is a single array, printed
+ * one network per line.
+ * </p>
  */
 @Command(scope="byon", name="list-networks", description = "Lists all the networks")
 public class ListNetworkCommand extends AbstractShellCommand {
 
+    private static final int NETWORK_PAGE = 256;
+    private static final int HOST_PAGE = 1024;
+
+    @Option(name = "-l", aliases = "--limit", description = "Maximum number of networks to list",
+            required = false, multiValued = false)
+    private int limit = 0;
+
+    @Option(name = "-p", aliases = "--prefix", description = "Only list networks starting with a prefix",
+            required = false, multiValued = false)
+    private String prefix = null;
+
+    @Option(name = "-c", aliases = "--count-only", description = "Only print the number of networks",
+            required = false, multiValued = false)
+    private boolean countOnly = false;
+
+    private ObjectNode pending = null;
+
     @Override
     protected void execute() {
         NetworkService networkService = get(NetworkService.class);
 
-        for (String net : networkService.getNetworks()) {
-            print("%s", net);
-            for (HostId hostId : networkService.getHosts(net)) {
-                print("\t%s", hostId);
+        if (countOnly) {
+            int count = networkService.getNetworkCount(prefix);
+            if (outputJson()) {
+                print("%s", mapper().createObjectNode().put("count", count));
+            } else {
+                print("%d", count);
             }
+            return;
+        }
+
+        if (outputJson()) {
+            print("[");
+        }
+        int remaining = limit > 0 ? limit : Integer.MAX_VALUE;
+        String after = null;
+        do {
+            Page<String> page = networkService.getNetworks(prefix, after,
+                                                           Math.min(NETWORK_PAGE, remaining));
+            for (String net : page.items()) {
+                printNetwork(networkService, net);
+            }
+            remaining -= page.items().size();
+            after = page.next();
+        } while (after != null && remaining > 0 && !Thread.currentThread().isInterrupted());
+        if (outputJson()) {
+            flushJson(true);
+            print("]");
+        }
+    }
+
+    // prints a network, unless it was deleted since the page was read
+    private void printNetwork(NetworkService networkService, String net) {
+        ConnectivityMode mode = networkService.findConnectivityMode(net);
+        if (mode == null) {
+            return;
+        }
+        ArrayNode hostsNode = null;
+        if (outputJson()) {
+            ObjectNode node = mapper().createObjectNode()
+                    .put("name", net)
+                    .put("mode", mode.toString());
+            hostsNode = node.putArray("hosts");
+            flushJson(false);
+            pending = node;
+        } else {
+            print("%s (%s)", net, mode);
+        }
+
+        HostId after = null;
+        do {
+            Page<HostId> page = networkService.findHosts(net, after, HOST_PAGE);
+            if (page == null) {
+                // deleted while its hosts were listed
+                break;
+            }
+            for (HostId hostId : page.items()) {
+                if (hostsNode != null) {
+                    hostsNode.add(hostId.toString());
+                } else {
+                    print("\t%s", hostId);
+                }
+            }
+            after = page.next();
+        } while (after != null);
+    }
+
+    // prints the previous network, followed by a comma unless it is the last
+    private void flushJson(boolean last) {
+        if (pending != null) {
+            print("%s%s", pending, last ? "" : ",");
+            pending = null;
         }
     }
 }
@@ -13,6 +13,7 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+
 package org.onos.byon.cli;
 
 import org.apache.karaf.shell.console.Completer;
@@ -27,13 +28,18 @@ import java.util.List;
  */
 public class NetworkCompleter implements Completer {
 
+    // more candidates than this are of no use on a console
+    private static final int MAX_CANDIDATES = 100;
+
     @Override
     public int complete(String buffer, int cursor, List<String> candidates) {
         // Delegate string completer
         StringsCompleter delegate = new StringsCompleter();
 
+        // Only fetch the networks that match what has been typed so far
         NetworkService service = AbstractShellCommand.get(NetworkService.class);
-        delegate.getStrings().addAll(service.getNetworks());
+        String prefix = buffer == null ? "" : buffer.substring(0, cursor);
+        delegate.getStrings().addAll(service.getNetworks(prefix, null, MAX_CANDIDATES).items());
 
         // Now let the completer do the work for figuring out what to offer.
         return delegate.complete(buffer, cursor, candidates);
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon.cli;
+
+import org.apache.karaf.shell.commands.Command;
+import org.apache.karaf.shell.commands.Option;
+import org.onos.byon.IntentDrift;
+import org.onos.byon.NetworkService;
+import org.onosproject.cli.AbstractShellCommand;
+import org.onosproject.net.intent.Key;
+
+import java.util.List;
+
+/**
+ * CLI to reconcile the network memberships with the installed intents.
+ */
+@Command(scope = "byon", name = "reconcile",
+        description = "Repairs the intents that differ from the network memberships")
+public class ReconcileCommand extends AbstractShellCommand {
+
+    @Option(name = "-n", aliases = "--dry-run",
+            description = "Only report the differences, without repairing them",
+            required = false, multiValued = false)
+    private boolean dryRun = false;
+
+    @Option(name = "-v", aliases = "--verbose", description = "List the keys of the intents",
+            required = false, multiValued = false)
+    private boolean verbose = false;
+
+    @Override
+    protected void execute() {
+        NetworkService networkService = get(NetworkService.class);
+        List<IntentDrift> drifts = networkService.reconcile(dryRun);
+        if (drifts.isEmpty()) {
+            print("All network intents are in place");
+            return;
+        }
+        for (IntentDrift drift : drifts) {
+            print("%s: expected=%d, missing=%d, orphaned=%d%s", drift.network(), drift.expected(),
+                  drift.missing().size(), drift.orphaned().size(), dryRun ? "" : " (repaired)");
+            if (verbose) {
+                for (Key key : drift.missing()) {
+                    print("\tmissing %s", key);
+                }
+                for (Key key : drift.orphaned()) {
+                    print("\torphaned %s", key);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon.cli;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
+import org.apache.karaf.shell.commands.Argument;
+import org.apache.karaf.shell.commands.Command;
+import org.onos.byon.AdmissionStats;
+import org.onos.byon.CacheStats;
+import org.onos.byon.NetworkIntentStats;
+import org.onos.byon.NetworkService;
+import org.onosproject.cli.AbstractShellCommand;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CLI to show the intent, admission and cache statistics of the networks.
+ */
+@Command(scope = "byon", name = "stats",
+        description = "Shows the intent counts, convergence times and admission counters of the networks")
+public class StatsCommand extends AbstractShellCommand {
+
+    private static final String FMT_NETWORK =
+            "%s: pending=%d, installed=%d, failed=%d, converged=%d, convergenceFailures=%d, " +
+                    "p50=%.1fms, p95=%.1fms, p99=%.1fms, max=%.1fms";
+    private static final String FMT_ADMISSION =
+            "%s admission: admitted=%d, delayed=%d, throttled=%d, overQuota=%d, queued=%d";
+    private static final String FMT_CACHE =
+            "cache %s: hits=%d, misses=%d, invalidations=%d, hitRatio=%.2f";
+
+    @Argument(index = 0, name = "network", description = "Network name; all networks if omitted",
+            required = false, multiValued = false)
+    String network = null;
+
+    @Override
+    protected void execute() {
+        NetworkService networkService = get(NetworkService.class);
+        Set<String> networks = network != null ?
+                ImmutableSet.of(network) : networkService.getNetworks();
+        Map<String, CacheStats> caches = networkService.getCacheStats();
+
+        if (outputJson()) {
+            ObjectNode root = mapper().createObjectNode();
+            ArrayNode networksNode = root.putArray("networks");
+            for (String net : networks) {
+                networksNode.add(json(net, networkService.getIntentStats(net))
+                                         .set("admission", json(networkService.getAdmissionStats(net))));
+            }
+            root.set("admission", json(networkService.getAdmissionStats(null)));
+            ObjectNode cachesNode = root.putObject("caches");
+            caches.forEach((name, stats) -> cachesNode.set(name, json(stats)));
+            print("%s", root);
+            return;
+        }
+
+        for (String net : networks) {
+            NetworkIntentStats stats = networkService.getIntentStats(net);
+            print(FMT_NETWORK, net, stats.pending(), stats.installed(), stats.failed(),
+                  stats.converged(), stats.convergenceFailures(),
+                  stats.convergenceMillis(0.50), stats.convergenceMillis(0.95),
+                  stats.convergenceMillis(0.99), stats.maxConvergenceMillis());
+            print(net, networkService.getAdmissionStats(net));
+        }
+        print("total", networkService.getAdmissionStats(null));
+        caches.forEach((name, stats) -> print(FMT_CACHE, name, stats.hits(), stats.misses(),
+                                              stats.invalidations(), stats.hitRatio()));
+    }
+
+    private ObjectNode json(String net, NetworkIntentStats stats) {
+        ObjectNode node = mapper().createObjectNode()
+                .put("network", net)
+                .put("pending", stats.pending())
+                .put("installed", stats.installed())
+                .put("failed", stats.failed())
+                .put("converged", stats.converged())
+                .put("convergenceFailures", stats.convergenceFailures());
+        node.putObject("convergenceMillis")
+                .put("p50", stats.convergenceMillis(0.50))
+                .put("p95", stats.convergenceMillis(0.95))
+                .put("p99", stats.convergenceMillis(0.99))
+                .put("max", stats.maxConvergenceMillis());
+        return node;
+    }
+
+    private void print(String name, AdmissionStats stats) {
+        print(FMT_ADMISSION, name, stats.admitted(), stats.delayed(), stats.throttled(),
+              stats.overQuota(), stats.queued());
+    }
+
+    private ObjectNode json(AdmissionStats stats) {
+        return mapper().createObjectNode()
+                .put("admitted", stats.admitted())
+                .put("delayed", stats.delayed())
+                .put("throttled", stats.throttled())
+                .put("overQuota", stats.overQuota())
+                .put("queued", stats.queued());
+    }
+
+    private ObjectNode json(CacheStats stats) {
+        return mapper().createObjectNode()
+                .put("hits", stats.hits())
+                .put("misses", stats.misses())
+                .put("invalidations", stats.invalidations())
+                .put("hitRatio", stats.hitRatio());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.net.ElementId;
+import org.onosproject.net.HostId;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the compact host id set and its heap and serialized footprint.
+ */
+public class CompactHostSetTest {
+
+    private static final int HOSTS = 100_000;
+
+    private static List<HostId> randomHosts(int count) {
+        Random random = new Random(42);
+        List<HostId> hostIds = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            hostIds.add(HostId.hostId(MacAddress.valueOf(random.nextLong() & 0xffffffffffffL),
+                                      i % 4 == 0 ? VlanId.vlanId((short) random.nextInt(4095)) :
+                                              VlanId.NONE));
+        }
+        return hostIds;
+    }
+
+    @Test
+    public void testEncoding() {
+        List<HostId> hostIds = ImmutableSet.of(
+                HostId.hostId(MacAddress.valueOf(0L), VlanId.NONE),
+                HostId.hostId(MacAddress.valueOf(0L), VlanId.vlanId((short) 0)),
+                HostId.hostId(MacAddress.valueOf("ff:ff:ff:ff:ff:ff"), VlanId.vlanId((short) 4094)),
+                HostId.hostId(MacAddress.valueOf("80:00:00:00:00:01"), VlanId.ANY)).asList();
+        for (HostId hostId : hostIds) {
+            assertEquals(hostId, CompactHostSet.decode(CompactHostSet.encode(hostId)));
+        }
+        assertEquals(hostIds.size(), CompactHostSet.copyOf(hostIds).size());
+    }
+
+    @Test
+    public void testSetView() {
+        List<HostId> hostIds = randomHosts(1000);
+        Set<HostId> expected = Sets.newHashSet(hostIds);
+        CompactHostSet set = CompactHostSet.copyOf(Lists.newArrayList(Iterables.concat(hostIds, hostIds)));
+
+        assertEquals(expected, set);
+        assertEquals(set, expected);
+        assertEquals(expected.hashCode(), set.hashCode());
+        assertEquals(expected, Sets.newHashSet(set));
+        hostIds.forEach(hostId -> assertTrue(set.contains(hostId)));
+        assertFalse(set.contains(HostId.hostId(MacAddress.valueOf(1L))));
+        assertFalse(set.contains("not a host"));
+        assertTrue(CompactHostSet.of().isEmpty());
+    }
+
+    @Test
+    public void testWithMac() {
+        MacAddress high = MacAddress.valueOf("ff:00:00:00:00:01");
+        List<HostId> retagged = ImmutableSet.of(
+                HostId.hostId(high, VlanId.NONE),
+                HostId.hostId(high, VlanId.vlanId((short) 1)),
+                HostId.hostId(high, VlanId.vlanId((short) 4094))).asList();
+        List<HostId> hostIds = randomHosts(1000);
+        hostIds.addAll(retagged);
+        CompactHostSet set = CompactHostSet.copyOf(hostIds);
+
+        assertEquals(ImmutableSet.copyOf(retagged), ImmutableSet.copyOf(set.withMac(high)));
+        assertTrue(set.withMac(MacAddress.valueOf("ff:00:00:00:00:02")).isEmpty());
+    }
+
+    @Test
+    public void testLongHashSet() {
+        Random random = new Random(7);
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = Sets.newHashSet();
+        // a small value range makes for long probe sequences and many removals
+        for (int i = 0; i < 200_000; i++) {
+            long value = random.nextInt(5000) - 100;
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), set.add(value));
+            } else {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (long value = -100; value < 4900; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+        long[] sorted = set.toSortedArray();
+        assertEquals(expected.size(), sorted.length);
+        for (int i = 1; i < sorted.length; i++) {
+            assertTrue(sorted[i - 1] < sorted[i]);
+        }
+    }
+
+    @Test
+    public void testSerializedSize() {
+        List<HostId> hostIds = randomHosts(HOSTS);
+        KryoNamespace boxed = KryoNamespace.newBuilder()
+                .register(Membership.class, HostId.class, ElementId.class,
+                          MacAddress.class, VlanId.class, byte[].class)
+                .build();
+        KryoNamespace compact = KryoNamespace.newBuilder()
+                .register(new MembershipSerializer(), Membership.class)
+                .build();
+
+        int boxedBytes = 0;
+        int compactBytes = 0;
+        for (HostId hostId : hostIds.subList(0, 1000)) {
+            Membership membership = new Membership("network", hostId);
+            boxedBytes += serialize(boxed, membership).limit();
+            ByteBuffer bytes = serialize(compact, membership);
+            compactBytes += bytes.limit();
+            assertEquals(membership, compact.deserialize(bytes));
+        }
+        System.out.println(String.format("Serialized 1000 memberships: boxed %d bytes, compact %d bytes",
+                                         boxedBytes, compactBytes));
+        assertTrue(compactBytes < boxedBytes);
+    }
+
+    // returns a buffer holding the serialized object, ready to be read
+    private static ByteBuffer serialize(KryoNamespace namespace, Object object) {
+        ByteBuffer buffer = ByteBuffer.allocate(HOSTS * 64);
+        namespace.serialize(object, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void testHeapSize() {
+        long[] encoded = randomHosts(HOSTS).stream().mapToLong(CompactHostSet::encode).toArray();
+
+        // boxed host ids in a hash set, as the store used to hold them
+        long before = usedHeap();
+        Set<HostId> boxed = Sets.newHashSet();
+        for (long id : encoded) {
+            boxed.add(CompactHostSet.decode(id));
+        }
+        long boxedBytes = usedHeap() - before;
+
+        // live primitive set and its snapshot, as the store holds them now
+        before = usedHeap();
+        LongHashSet live = new LongHashSet();
+        for (long id : encoded) {
+            live.add(id);
+        }
+        CompactHostSet snapshot = CompactHostSet.ofSorted(live.toSortedArray());
+        long compactBytes = usedHeap() - before;
+
+        System.out.println(String.format("Heap for %d hosts: hash set %d bytes, compact %d bytes",
+                                         HOSTS, boxedBytes, compactBytes));
+        assertEquals(boxed.size(), snapshot.size());
+        assertEquals(boxed.size(), live.size());
+        assertTrue(compactBytes * 4 < boxedBytes);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.VlanId;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.net.HostId;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.onos.byon.NetworkManagerTest.HOST_1;
+import static org.onos.byon.NetworkManagerTest.HOST_2;
+import static org.onos.byon.NetworkManagerTest.HOST_3;
+import static org.onos.byon.NetworkManagerTest.NETWORK;
+import static org.onos.byon.NetworkManagerTest.NETWORK_2;
+
+/**
+ * Test distributed network store.
+ */
+public class DistributedNetworkStoreTest {
+
+    private final TestStorageService storageService = new TestStorageService();
+    private DistributedNetworkStore store;
+
+    @Before
+    public void setUp() {
+        store = new DistributedNetworkStore();
+        store.storageService = storageService;
+        store.cfgService = new ComponentConfigAdapter();
+        store.activate(null);
+    }
+
+    @After
+    public void tearDown() {
+        store.deactivate();
+    }
+
+    // the shard of a map that holds a network, as other instances see it
+    private <K, V> TestConsistentMap<K, V> shardOf(String map, String network) {
+        return storageService.getMap(DistributedNetworkStore.shardName(map, store.shard(network)));
+    }
+
+    @Test
+    public void testCachedReads() {
+        store.putNetwork(NETWORK, ConnectivityMode.MESH);
+        store.addHost(NETWORK, HOST_1);
+
+        Set<HostId> hosts = store.getHosts(NETWORK);
+        assertSame("snapshot served without copying", hosts, store.getHosts(NETWORK));
+        assertSame(store.getNetworks(), store.getNetworks());
+
+        store.addHost(NETWORK, HOST_2);
+        assertEquals(ImmutableSet.of(HOST_1, HOST_2), store.getHosts(NETWORK));
+        assertEquals(1, store.getCacheStats().get("hosts").invalidations());
+
+        store.removeNetwork(NETWORK);
+        assertEquals("removed networks leave nothing cached", 0, store.hostCache.size());
+    }
+
+    @Test
+    public void testRemoteUpdates() {
+        store.putNetwork(NETWORK, ConnectivityMode.MESH);
+        store.getNetworks();
+
+        // changes made by another instance only show up as map events
+        this.<String, ConnectivityMode>shardOf("byon-networks", NETWORK_2)
+                .put(NETWORK_2, ConnectivityMode.HUB_AND_SPOKE);
+        this.<Membership, Boolean>shardOf("byon-memberships", NETWORK_2)
+                .put(new Membership(NETWORK_2, HOST_1), true);
+
+        assertEquals(ImmutableSet.of(NETWORK, NETWORK_2), store.getNetworks());
+        assertEquals(2, store.getNetworkCount());
+        assertEquals(ConnectivityMode.HUB_AND_SPOKE, store.getConnectivityMode(NETWORK_2));
+        assertEquals(ImmutableSet.of(HOST_1), store.getHosts(NETWORK_2));
+    }
+
+    @Test
+    public void testHostNetworks() {
+        HostId retagged = HostId.hostId(HOST_1.mac(), VlanId.vlanId((short) 10));
+        store.putNetwork(NETWORK, ConnectivityMode.MESH);
+        store.putNetwork(NETWORK_2, ConnectivityMode.MESH);
+        store.addHosts(NETWORK, ImmutableSet.of(HOST_1, HOST_2));
+        store.addHost(NETWORK_2, HOST_1);
+        store.addHost(NETWORK_2, retagged);
+
+        assertEquals(ImmutableSet.of(NETWORK, NETWORK_2), store.getNetworks(HOST_1));
+        assertEquals(ImmutableSet.of(NETWORK), store.getNetworks(HOST_2));
+        assertEquals(ImmutableSet.of(NETWORK_2), store.getNetworks(retagged));
+        assertEquals(ImmutableSet.of(NETWORK, NETWORK_2), store.getNetworks(HOST_1.mac()));
+
+        store.removeHost(NETWORK, HOST_1);
+        assertEquals(ImmutableSet.of(NETWORK_2), store.getNetworks(HOST_1));
+        // removing a network drops it from the index of its hosts
+        store.removeNetwork(NETWORK_2);
+        assertEquals(ImmutableSet.of(), store.getNetworks(HOST_1));
+        assertEquals(ImmutableSet.of(), store.getNetworks(HOST_1.mac()));
+        assertEquals(ImmutableSet.of(NETWORK), store.getNetworks(HOST_2.mac()));
+    }
+
+    @Test
+    public void testBulkUpdates() {
+        store.putNetwork(NETWORK, ConnectivityMode.MESH);
+        store.addHost(NETWORK, HOST_1);
+
+        assertEquals(ImmutableMap.of(HOST_1, false, HOST_2, true),
+                     store.addHosts(NETWORK, ImmutableList.of(HOST_1, HOST_2)));
+        assertEquals(ImmutableSet.of(HOST_1, HOST_2), store.getHosts(NETWORK));
+        assertEquals(2, this.<Membership, Boolean>shardOf("byon-memberships", NETWORK).size());
+
+        // a bulk change commits nothing unless the network exists
+        try {
+            store.addHosts(NETWORK_2, ImmutableList.of(HOST_1, HOST_2));
+            fail("hosts added to a missing network");
+        } catch (NullPointerException e) {
+            assertEquals(0, this.<Membership, Boolean>shardOf("byon-memberships", NETWORK_2).keySet().stream()
+                    .filter(m -> m.network().equals(NETWORK_2)).count());
+        }
+
+        assertEquals(ImmutableMap.of(HOST_2, true, HOST_3, false),
+                     store.removeHosts(NETWORK, ImmutableList.of(HOST_2, HOST_3)));
+        assertEquals(ImmutableSet.of(HOST_1), store.getHosts(NETWORK));
+    }
+
+    @Test
+    public void testPrefixIndex() {
+        store.putNetwork(NETWORK, ConnectivityMode.MESH);
+        Set<String> matches = store.getNetworks(NETWORK);
+        assertEquals(ImmutableSet.of(NETWORK), matches);
+
+        // the index follows changes made by other instances
+        this.<String, ConnectivityMode>shardOf("byon-networks", NETWORK_2)
+                .put(NETWORK_2, ConnectivityMode.MESH);
+        assertEquals(ImmutableSet.of(NETWORK, NETWORK_2), matches);
+        this.<String, ConnectivityMode>shardOf("byon-networks", NETWORK).remove(NETWORK);
+        assertEquals(ImmutableSet.of(NETWORK_2), store.getNetworks(NETWORK));
+        assertEquals(ImmutableSet.of(), store.getNetworks(NETWORK_2 + "0"));
+    }
+
+    @Test
+    public void testShards() {
+        List<String> names = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            names.add("shard-" + i);
+            store.putNetwork(names.get(i), ConnectivityMode.MESH);
+            store.addHost(names.get(i), HOST_1);
+        }
+        for (int shard = 0; shard < store.networkShards; shard++) {
+            assertFalse("empty shard " + shard,
+                        storageService.getMap(DistributedNetworkStore.shardName("byon-networks", shard))
+                                .isEmpty());
+        }
+
+        // another instance configured differently follows the shards of the cluster
+        DistributedNetworkStore other = new DistributedNetworkStore();
+        other.storageService = storageService;
+        other.cfgService = new ComponentConfigAdapter();
+        other.networkShards = store.networkShards * 2;
+        other.activate(null);
+        try {
+            assertEquals(ImmutableSet.copyOf(names), other.getNetworks());
+            names.forEach(name -> assertEquals(ImmutableSet.of(HOST_1), other.getHosts(name)));
+            other.removeNetwork(names.get(0));
+            assertFalse(store.getNetworks().contains(names.get(0)));
+        } finally {
+            other.deactivate();
+        }
+    }
+}
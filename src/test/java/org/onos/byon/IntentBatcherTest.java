@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.TestApplicationId;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.intent.HostToHostIntent;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.IntentEvent;
+import org.onosproject.net.intent.IntentListener;
+import org.onosproject.net.intent.IntentServiceAdapter;
+import org.onosproject.net.intent.Key;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onos.byon.NetworkManagerTest.HOST_1;
+import static org.onos.byon.NetworkManagerTest.HOST_2;
+
+/**
+ * Test intent batcher.
+ */
+public class IntentBatcherTest {
+
+    private final ApplicationId appId = new TestApplicationId("batcher-test");
+    private final TestIntentService intentService = new TestIntentService();
+    private final List<Intent> failed = Lists.newCopyOnWriteArrayList();
+    private IntentBatcher batcher;
+
+    @Before
+    public void setUp() {
+        batcher = new IntentBatcher(intentService, (op, intent) -> failed.add(intent));
+    }
+
+    @After
+    public void tearDown() {
+        batcher.stop();
+    }
+
+    private Intent intent(String key) {
+        return HostToHostIntent.builder()
+                .appId(appId)
+                .key(Key.of(key, appId))
+                .one(HOST_1)
+                .two(HOST_2)
+                .build();
+    }
+
+    @Test
+    public void testSubmitInOrder() throws InterruptedException {
+        batcher.setLimits(2, 0, 10);
+        batcher.start(Executors.newSingleThreadExecutor());
+        for (int i = 0; i < 5; i++) {
+            batcher.submit(intent("k" + i));
+        }
+        assertTrue(intentService.submitted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            assertEquals("k" + i, intentService.keys.get(i).toString());
+        }
+        assertTrue(failed.isEmpty());
+    }
+
+    @Test
+    public void testBackpressure() throws InterruptedException {
+        batcher.setLimits(1, 0, 1);
+        batcher.start(Executors.newSingleThreadExecutor());
+        batcher.submit(intent("k0"));
+
+        CountDownLatch queued = new CountDownLatch(1);
+        new Thread(() -> {
+            batcher.submit(intent("k1"));
+            queued.countDown();
+        }).start();
+
+        // k0 has not been installed yet, so k1 cannot be queued
+        assertFalse(queued.await(200, TimeUnit.MILLISECONDS));
+        intentService.listener.event(new IntentEvent(IntentEvent.Type.INSTALLED, intent("k0")));
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCompletionByOperation() throws Exception {
+        batcher.setLimits(1, 0, 10);
+        batcher.start(Executors.newSingleThreadExecutor());
+        CompletableFuture<Void> submitted = batcher.submit(intent("k0"));
+        CompletableFuture<Void> withdrawn = batcher.withdraw(intent("k0"));
+        while (batcher.queued() > 0) {
+            Thread.sleep(10);
+        }
+
+        // a late report of the installation does not end the withdrawal
+        intentService.listener.event(new IntentEvent(IntentEvent.Type.INSTALLED, intent("k0")));
+        assertFalse(withdrawn.isDone());
+        assertEquals(1, batcher.inFlight());
+
+        intentService.listener.event(new IntentEvent(IntentEvent.Type.WITHDRAWN, intent("k0")));
+        withdrawn.get(5, TimeUnit.SECONDS);
+        submitted.get(5, TimeUnit.SECONDS);
+        assertEquals(0, batcher.inFlight());
+    }
+
+    private static class TestIntentService extends IntentServiceAdapter {
+        private final List<Key> keys = Lists.newCopyOnWriteArrayList();
+        private final CountDownLatch submitted = new CountDownLatch(5);
+        private volatile IntentListener listener;
+
+        @Override
+        public void submit(Intent intent) {
+            keys.add(intent.key());
+            submitted.countDown();
+        }
+
+        @Override
+        public void addListener(IntentListener listener) {
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import org.onlab.packet.MacAddress;
+import org.onosproject.net.HostId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+/**
+ * Compares the intent key codec against the original String.format keys
+ * and split-based matching, over one million keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IntentKeyBenchmark {
+
+    private static final int KEYS = 1_000_000;
+    private static final int NETWORKS = 1_000;
+
+    private String[] networks;
+    private HostId[] ones;
+    private HostId[] twos;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        networks = new String[KEYS];
+        ones = new HostId[KEYS];
+        twos = new HostId[KEYS];
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            networks[i] = "network-" + (i % NETWORKS);
+            ones[i] = HostId.hostId(MacAddress.valueOf(i));
+            twos[i] = HostId.hostId(MacAddress.valueOf(KEYS + i));
+            keys[i] = IntentKeyCodec.encode(networks[i], ones[i], twos[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void legacyEncode(Blackhole bh) {
+        for (int i = 0; i < KEYS; i++) {
+            bh.consume(legacyEncode(networks[i], ones[i], twos[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void codecEncode(Blackhole bh) {
+        for (int i = 0; i < KEYS; i++) {
+            bh.consume(IntentKeyCodec.encode(networks[i], ones[i], twos[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void legacyMatches(Blackhole bh) {
+        for (int i = 0; i < KEYS; i++) {
+            bh.consume(legacyMatches(keys[i], networks[i], twos[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void codecMatches(Blackhole bh) {
+        for (int i = 0; i < KEYS; i++) {
+            bh.consume(IntentKeyCodec.matches(keys[i], networks[i], twos[i]));
+        }
+    }
+
+    // key generation as originally done by NetworkManager.generateKey()
+    private static String legacyEncode(String network, HostId one, HostId two) {
+        String hosts = one.toString().compareTo(two.toString()) < 0 ?
+                format(NetworkManager.HOST_FORMAT, one, two) :
+                format(NetworkManager.HOST_FORMAT, two, one);
+        return format(NetworkManager.KEY_FORMAT, network, hosts);
+    }
+
+    // key matching as originally done by NetworkManager.matches()
+    private static boolean legacyMatches(String key, String network, HostId hostId) {
+        if (!key.startsWith(network)) {
+            return false;
+        }
+        String[] fields = key.split(",");
+        return fields.length > 1 && fields[1].contains(hostId.toString());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                           .include(IntentKeyBenchmark.class.getSimpleName())
+                           .addProfiler(GCProfiler.class)
+                           .build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test near-cache.
+ */
+public class NearCacheTest {
+
+    private final NearCache<String, Integer> cache = new NearCache<>();
+    private final AtomicInteger backing = new AtomicInteger();
+
+    private Integer load(String key) {
+        return backing.get();
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        assertEquals(0, (int) cache.get("a", this::load));
+        assertEquals(0, (int) cache.get("a", this::load));
+        backing.set(1);
+        assertEquals("served until invalidated", 0, (int) cache.get("a", this::load));
+
+        cache.invalidate("a");
+        assertEquals(1, (int) cache.get("a", this::load));
+
+        CacheStats stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(1, stats.invalidations());
+    }
+
+    @Test
+    public void testInvalidateDuringLoad() {
+        // the state changes while the snapshot is being loaded
+        assertEquals(0, (int) cache.get("a", key -> {
+            Integer value = load(key);
+            backing.set(1);
+            cache.invalidate(key);
+            return value;
+        }));
+        assertEquals("stale load is not served", 1, (int) cache.get("a", this::load));
+        assertEquals(0, cache.stats().hits());
+    }
+
+    @Test
+    public void testRemove() {
+        cache.get("a", this::load);
+        cache.invalidate("a");
+        cache.remove("a");
+        cache.invalidate("a");
+        assertEquals("nothing kept for removed keys", 0, cache.size());
+
+        // a load that overlaps the removal is not kept either
+        assertEquals(0, (int) cache.get("b", key -> {
+            cache.remove(key);
+            return load(key);
+        }));
+        assertEquals(0, cache.size());
+    }
+}
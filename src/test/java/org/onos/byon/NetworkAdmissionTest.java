@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.onos.byon.NetworkManagerTest.NETWORK;
+
+/**
+ * Test the admission control of network mutations.
+ */
+public class NetworkAdmissionTest {
+
+    private final NetworkAdmission admission = new NetworkAdmission();
+
+    // returns true if the hosts were admitted
+    private boolean admit(String network, int hosts, int added, int intents) {
+        try {
+            boolean delayed = admission.awaitHosts(network, hosts, added, intents);
+            admission.admitHosts(network, hosts, added, delayed);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testUnlimited() {
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(admit(NETWORK, i, 1, i));
+        }
+        admission.admitNetwork(NETWORK, () -> Integer.MAX_VALUE);
+        admission.networkCreated();
+        assertEquals(10_001, admission.stats(null).admitted());
+        assertEquals(10_000, admission.stats(NETWORK).admitted());
+    }
+
+    @Test
+    public void testQuotas() {
+        admission.setLimits(2, 10, 0, 0, 0, 0);
+        admission.admitNetwork(NETWORK, () -> 1);
+        // the second network is reserved until it is stored
+        try {
+            admission.admitNetwork("third", () -> 1);
+            fail("network over quota");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("quota of 2 networks"));
+        }
+        admission.networkCreated();
+        try {
+            admission.admitNetwork("third", () -> 2);
+            fail("network over quota");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("quota of 2 networks"));
+        }
+        assertTrue(admit(NETWORK, 0, 10, 0));
+        assertTrue(!admit(NETWORK, 8, 3, 0));
+
+        AdmissionStats stats = admission.stats(NETWORK);
+        assertEquals(1, stats.admitted());
+        assertEquals(1, stats.overQuota());
+        assertEquals(3, admission.stats(null).overQuota());
+    }
+
+    @Test
+    public void testThrottled() {
+        // a second's worth of host additions, then rejected right away
+        admission.setLimits(0, 0, 10, 0, 0, 0);
+        int admitted = 0;
+        for (int i = 0; i < 20; i++) {
+            admitted += admit(NETWORK, i, 1, 0) ? 1 : 0;
+        }
+        assertTrue(admitted < 20);
+        assertEquals(20 - admitted, admission.stats(NETWORK).throttled());
+
+        // other networks have their own bucket, but share the global ones
+        assertTrue(admit("other", 0, 1, 0));
+        admission.setLimits(0, 0, 0, 0, 1, 0);
+        assertTrue(admit("other", 1, 1, 1));
+        assertTrue(!admit("other", 2, 1, 1));
+        assertEquals(0, admission.stats(null).queued());
+    }
+
+    @Test
+    public void testAllOrNothing() {
+        // rejected by the intent bucket, an addition leaves its network bucket alone
+        admission.setLimits(0, 0, 1, 0, 1, 0);
+        assertTrue(admit(NETWORK, 0, 1, 1));
+        assertTrue(!admit("other", 0, 1, 1));
+        admission.setLimits(0, 0, 1, 0, 0, 0);
+        assertTrue(!admit(NETWORK, 1, 1, 0));
+        assertTrue(admit("other", 0, 1, 0));
+    }
+
+    @Test
+    public void testQueued() {
+        // the tokens of the second addition come within the queueing time
+        admission.setLimits(0, 0, 20, 0, 0, 1000);
+        long start = System.nanoTime();
+        assertTrue(admit(NETWORK, 0, 1, 0));
+        assertTrue(admit(NETWORK, 1, 1, 0));
+        assertTrue(admit(NETWORK, 2, 1, 0));
+        assertTrue(System.nanoTime() - start >= 50_000_000L);
+        assertTrue(admission.stats(NETWORK).delayed() >= 1);
+        assertEquals(0, admission.stats(NETWORK).throttled());
+    }
+
+    @Test
+    public void testForget() {
+        assertTrue(admit(NETWORK, 0, 1, 0));
+        admission.forget(NETWORK);
+        assertEquals(0, admission.stats(NETWORK).admitted());
+        assertEquals(1, admission.stats(null).admitted());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLimit() {
+        admission.setLimits(0, 0, -1, 0, 0, 0);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Test;
+import org.onlab.packet.MacAddress;
+import org.onosproject.net.HostId;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.onos.byon.NetworkEvent.Type.NETWORK_ADDED;
+import static org.onos.byon.NetworkEvent.Type.NETWORK_REMOVED;
+import static org.onos.byon.NetworkEvent.Type.NETWORK_UPDATED;
+import static org.onos.byon.NetworkManagerTest.HOST_1;
+import static org.onos.byon.NetworkManagerTest.HOST_2;
+import static org.onos.byon.NetworkManagerTest.NETWORK;
+import static org.onos.byon.NetworkManagerTest.NETWORK_2;
+
+/**
+ * Test network event coalescer.
+ */
+public class NetworkEventCoalescerTest {
+
+    private final List<NetworkEvent> delivered = Lists.newCopyOnWriteArrayList();
+    private NetworkEventCoalescer coalescer =
+            new NetworkEventCoalescer(delivered::add, Executors.newSingleThreadScheduledExecutor(),
+                                      TimeUnit.HOURS.toMillis(1));
+
+    @After
+    public void tearDown() {
+        coalescer.stop();
+    }
+
+    private static NetworkEvent added(String network, HostId hostId) {
+        return new NetworkEvent(NETWORK_UPDATED, network, ImmutableSet.of(hostId), ImmutableSet.of());
+    }
+
+    private static NetworkEvent removed(String network, HostId hostId) {
+        return new NetworkEvent(NETWORK_UPDATED, network, ImmutableSet.of(), ImmutableSet.of(hostId));
+    }
+
+    @Test
+    public void testBurstBecomesOneEvent() {
+        Set<HostId> hosts = Sets.newHashSet();
+        for (int i = 1; i <= 1000; i++) {
+            HostId hostId = HostId.hostId(MacAddress.valueOf(i));
+            hosts.add(hostId);
+            coalescer.add(added(NETWORK, hostId));
+        }
+        coalescer.flush();
+
+        assertEquals(1, delivered.size());
+        assertEquals(hosts, delivered.get(0).addedHosts());
+        assertTrue(delivered.get(0).removedHosts().isEmpty());
+    }
+
+    @Test
+    public void testNetDelta() {
+        coalescer.add(added(NETWORK, HOST_1));
+        coalescer.add(removed(NETWORK, HOST_1));
+        coalescer.add(removed(NETWORK, HOST_2));
+        coalescer.add(added(NETWORK, HOST_2));
+        coalescer.add(added(NETWORK_2, HOST_1));
+        coalescer.add(removed(NETWORK_2, HOST_2));
+        coalescer.flush();
+
+        assertEquals("updates that cancel out are dropped", 1, delivered.size());
+        assertEquals(NETWORK_2, delivered.get(0).subject());
+        assertEquals(ImmutableSet.of(HOST_1), delivered.get(0).addedHosts());
+        assertEquals(ImmutableSet.of(HOST_2), delivered.get(0).removedHosts());
+    }
+
+    @Test
+    public void testNetworkEventsKeepOrder() {
+        coalescer.add(new NetworkEvent(NETWORK_ADDED, NETWORK));
+        coalescer.add(added(NETWORK, HOST_1));
+        coalescer.add(added(NETWORK, HOST_2));
+        coalescer.add(new NetworkEvent(NETWORK_REMOVED, NETWORK));
+        coalescer.add(removed(NETWORK, HOST_1));
+        coalescer.flush();
+
+        assertEquals(4, delivered.size());
+        assertEquals(NETWORK_ADDED, delivered.get(0).type());
+        assertEquals(ImmutableSet.of(HOST_1, HOST_2), delivered.get(1).addedHosts());
+        assertEquals(NETWORK_REMOVED, delivered.get(2).type());
+        assertEquals(ImmutableSet.of(HOST_1), delivered.get(3).removedHosts());
+    }
+
+    @Test
+    public void testSlowListener() throws InterruptedException {
+        coalescer.stop();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        coalescer = new NetworkEventCoalescer(event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.add(event);
+            done.countDown();
+        }, Executors.newSingleThreadScheduledExecutor(), 0);
+
+        // the listener is stuck on the first event; later ones still queue up
+        coalescer.add(added(NETWORK, HOST_1));
+        Thread.sleep(50);
+        coalescer.add(added(NETWORK_2, HOST_1));
+        coalescer.add(added(NETWORK_2, HOST_2));
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(ImmutableSet.of(HOST_1, HOST_2), delivered.get(1).addedHosts());
+    }
+}
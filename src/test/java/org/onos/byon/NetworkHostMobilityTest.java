@@ -0,0 +1,292 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DefaultHost;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
+import org.onosproject.net.HostLocation;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.host.HostEvent;
+import org.onosproject.net.host.HostListener;
+import org.onosproject.net.host.HostServiceAdapter;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.MockIdGenerator;
+import org.onosproject.net.intent.MultiPointToSinglePointIntent;
+import org.onosproject.net.provider.ProviderId;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.onos.byon.NetworkManagerTest.HOST_1;
+import static org.onos.byon.NetworkManagerTest.HOST_2;
+import static org.onos.byon.NetworkManagerTest.HOST_3;
+import static org.onos.byon.NetworkManagerTest.NETWORK;
+import static org.onos.byon.NetworkManagerTest.NETWORK_2;
+import static org.onos.byon.TestNetworks.waitFor;
+
+/**
+ * Test the replacement of hosts that change id, and of hosts that move.
+ */
+public class NetworkHostMobilityTest {
+
+    // host 3 after a VLAN retag
+    private static final HostId HOST_3_RETAGGED =
+            HostId.hostId(HOST_3.mac(), VlanId.vlanId((short) 100));
+
+    private final IdGenerator idGenerator = new MockIdGenerator();
+    // intent operations in the order the intent service saw them
+    private final List<String> operations = Collections.synchronizedList(Lists.newArrayList());
+    private final List<Intent> withdrawn = new CopyOnWriteArrayList<>();
+    private final TestIntentService intentService = new TestIntentService() {
+        @Override
+        public void submit(Intent intent) {
+            operations.add("submit " + intent.key());
+            super.submit(intent);
+        }
+
+        @Override
+        public void withdraw(Intent intent) {
+            operations.add("withdraw " + intent.key());
+            withdrawn.add(intent);
+            super.withdraw(intent);
+        }
+    };
+    private final TestHostService hostService = new TestHostService();
+    private NetworkManager manager;
+    private DistributedNetworkStore store;
+
+    @Before
+    public void setUp() {
+        Intent.bindIdGenerator(idGenerator);
+        store = TestNetworks.newStore();
+        manager = TestNetworks.newManager(store, intentService);
+        manager.hostService = hostService;
+        TestNetworks.startLocal(manager);
+
+        manager.createNetwork(NETWORK, ConnectivityMode.MESH);
+        manager.addHosts(NETWORK, ImmutableSet.of(HOST_1, HOST_2, HOST_3));
+    }
+
+    @After
+    public void tearDown() {
+        manager.deactivate();
+        store.deactivate();
+        Intent.unbindIdGenerator(idGenerator);
+    }
+
+    private Set<Key> meshKeys(HostId... hosts) {
+        Set<Key> keys = Sets.newHashSet();
+        for (int i = 0; i < hosts.length; i++) {
+            for (int j = i + 1; j < hosts.length; j++) {
+                keys.add(manager.generateKey(NETWORK, hosts[i], hosts[j]));
+            }
+        }
+        return keys;
+    }
+
+    private Set<Key> installedKeys() {
+        Set<Key> keys = Sets.newHashSet();
+        intentService.getIntents().forEach(intent -> keys.add(intent.key()));
+        return keys;
+    }
+
+    @Test
+    public void testReplaceHost() throws Exception {
+        waitFor(() -> intentService.getIntentCount() == 3);
+        operations.clear();
+
+        manager.replaceHost(NETWORK, HOST_3, HOST_3_RETAGGED);
+
+        assertEquals(ImmutableSet.of(HOST_1, HOST_2, HOST_3_RETAGGED), manager.getHosts(NETWORK));
+        waitFor(() -> installedKeys().equals(meshKeys(HOST_1, HOST_2, HOST_3_RETAGGED)));
+
+        // only the keys of the two hosts were touched, and made before broken
+        List<String> made = meshKeys(HOST_1, HOST_2, HOST_3_RETAGGED).stream()
+                .filter(key -> !key.equals(manager.generateKey(NETWORK, HOST_1, HOST_2)))
+                .map(key -> "submit " + key)
+                .collect(Collectors.toList());
+        List<String> broken = Sets.difference(meshKeys(HOST_1, HOST_2, HOST_3),
+                                              meshKeys(HOST_1, HOST_2)).stream()
+                .map(key -> "withdraw " + key)
+                .collect(Collectors.toList());
+        assertEquals(made.size() + broken.size(), operations.size());
+        for (String submit : made) {
+            for (String withdraw : broken) {
+                assertTrue(operations.indexOf(submit) < operations.indexOf(withdraw));
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReplaceMissingHost() {
+        manager.replaceHost(NETWORK, HOST_3_RETAGGED, HOST_3);
+    }
+
+    @Test
+    public void testRetaggedHost() throws Exception {
+        hostService.add(HOST_1, 1);
+        hostService.add(HOST_2, 2);
+        hostService.add(HOST_3, 3);
+
+        // the retagged host shows up before the old one ages out
+        hostService.add(HOST_3_RETAGGED, 3);
+        assertTrue(manager.getHosts(NETWORK).contains(HOST_3));
+        hostService.remove(HOST_3);
+
+        waitFor(() -> manager.getHosts(NETWORK).contains(HOST_3_RETAGGED) &&
+                !manager.getHosts(NETWORK).contains(HOST_3));
+        waitFor(() -> installedKeys().equals(meshKeys(HOST_1, HOST_2, HOST_3_RETAGGED)));
+    }
+
+    @Test
+    public void testWithdrawSharedTree() throws Exception {
+        hostService.add(HOST_1, 1);
+        hostService.add(HOST_2, 2);
+        hostService.add(HOST_3, 3);
+        manager.createNetwork(NETWORK_2, ConnectivityMode.SHARED_TREE);
+        manager.addHosts(NETWORK_2, ImmutableSet.of(HOST_1, HOST_2, HOST_3));
+        Key tree = Key.of(IntentKeyCodec.encode(NETWORK_2, HOST_3), manager.appId);
+        waitFor(() -> installedKeys().contains(tree));
+
+        // the tree of a removed host is withdrawn as the intent it was submitted as
+        manager.removeHost(NETWORK_2, HOST_3);
+        waitFor(() -> !installedKeys().contains(tree));
+        List<Intent> trees = withdrawn.stream()
+                .filter(intent -> intent.key().equals(tree))
+                .collect(Collectors.toList());
+        assertEquals(1, trees.size());
+        assertTrue(trees.get(0) instanceof MultiPointToSinglePointIntent);
+    }
+
+    @Test
+    public void testStableHub() throws Exception {
+        waitFor(() -> intentService.getIntentCount() == 3);
+        Set<Key> mesh = meshKeys(HOST_1, HOST_2, HOST_3);
+        manager.createNetwork(NETWORK_2, ConnectivityMode.HUB_AND_SPOKE);
+        manager.addHosts(NETWORK_2, ImmutableSet.of(HOST_2, HOST_3));
+        Key twoThree = manager.generateKey(NETWORK_2, HOST_2, HOST_3);
+        waitFor(() -> installedKeys().contains(twoThree));
+
+        // a host with a lower id joins as a spoke of the hub in place
+        operations.clear();
+        manager.addHost(NETWORK_2, HOST_1);
+        Key twoOne = manager.generateKey(NETWORK_2, HOST_2, HOST_1);
+        waitFor(() -> Sets.difference(installedKeys(), mesh)
+                .equals(ImmutableSet.of(twoThree, twoOne)));
+        assertEquals(ImmutableList.of("submit " + twoOne), operations);
+
+        // the new hub is connected before the old one is let go
+        operations.clear();
+        manager.removeHost(NETWORK_2, HOST_2);
+        Key oneThree = manager.generateKey(NETWORK_2, HOST_1, HOST_3);
+        waitFor(() -> Sets.difference(installedKeys(), mesh).equals(ImmutableSet.of(oneThree)));
+        assertEquals(3, operations.size());
+        assertEquals("submit " + oneThree, operations.get(0));
+    }
+
+    // ingress points of the installed tree towards a host; empty if it has none
+    private Set<ConnectPoint> treeIngress(HostId hostId) {
+        Intent tree = intentService.getIntent(Key.of(IntentKeyCodec.encode(NETWORK_2, hostId),
+                                                     manager.appId));
+        return tree == null ? ImmutableSet.of() : ((MultiPointToSinglePointIntent) tree).ingressPoints();
+    }
+
+    @Test
+    public void testLateDiscoveredHost() throws Exception {
+        hostService.add(HOST_1, 1);
+        hostService.add(HOST_2, 2);
+        manager.createNetwork(NETWORK_2, ConnectivityMode.SHARED_TREE);
+        manager.addHosts(NETWORK_2, ImmutableSet.of(HOST_1, HOST_2, HOST_3));
+        ConnectPoint one = new ConnectPoint(DeviceId.deviceId("of:1"), PortNumber.portNumber(1));
+        ConnectPoint two = new ConnectPoint(DeviceId.deviceId("of:1"), PortNumber.portNumber(2));
+        ConnectPoint three = new ConnectPoint(DeviceId.deviceId("of:1"), PortNumber.portNumber(3));
+        waitFor(() -> treeIngress(HOST_1).equals(ImmutableSet.of(two)));
+        assertTrue(treeIngress(HOST_3).isEmpty());
+
+        // the trees are rebuilt once host 3 is discovered, and again once it is gone
+        hostService.add(HOST_3, 3);
+        waitFor(() -> treeIngress(HOST_1).equals(ImmutableSet.of(two, three)) &&
+                treeIngress(HOST_2).equals(ImmutableSet.of(one, three)) &&
+                treeIngress(HOST_3).equals(ImmutableSet.of(one, two)));
+        hostService.remove(HOST_3);
+        waitFor(() -> treeIngress(HOST_1).equals(ImmutableSet.of(two)) && treeIngress(HOST_3).isEmpty());
+    }
+
+    // Host service whose hosts are added and removed by the test
+    private static class TestHostService extends HostServiceAdapter {
+        private final Map<HostId, Host> hosts = Maps.newConcurrentMap();
+        private final List<HostListener> listeners = new CopyOnWriteArrayList<>();
+
+        void add(HostId hostId, long port) {
+            Host host = new DefaultHost(new ProviderId("test", "byon"), hostId, hostId.mac(),
+                                        hostId.vlanId(),
+                                        new HostLocation(DeviceId.deviceId("of:1"),
+                                                         PortNumber.portNumber(port), 0),
+                                        ImmutableSet.of());
+            hosts.put(hostId, host);
+            listeners.forEach(l -> l.event(new HostEvent(HostEvent.Type.HOST_ADDED, host)));
+        }
+
+        void remove(HostId hostId) {
+            Host host = hosts.remove(hostId);
+            listeners.forEach(l -> l.event(new HostEvent(HostEvent.Type.HOST_REMOVED, host)));
+        }
+
+        @Override
+        public Host getHost(HostId hostId) {
+            return hosts.get(hostId);
+        }
+
+        @Override
+        public Set<Host> getHostsByMac(MacAddress mac) {
+            return hosts.values().stream()
+                    .filter(host -> host.mac().equals(mac))
+                    .collect(Collectors.toSet());
+        }
+
+        @Override
+        public void addListener(HostListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void removeListener(HostListener listener) {
+            listeners.remove(listener);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.onosproject.TestApplicationId;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.intent.Key;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onos.byon.NetworkManagerTest.HOST_1;
+import static org.onos.byon.NetworkManagerTest.HOST_2;
+import static org.onos.byon.NetworkManagerTest.HOST_3;
+import static org.onos.byon.NetworkManagerTest.NETWORK;
+import static org.onos.byon.NetworkManagerTest.NETWORK_2;
+
+/**
+ * Test network intent index.
+ */
+public class NetworkIntentIndexTest {
+
+    private final ApplicationId appId = new TestApplicationId("index-test");
+    private final NetworkIntentIndex index = new NetworkIntentIndex();
+
+    @Test
+    public void testHostKeys() {
+        Key k12 = Key.of("k12", appId);
+        Key k13 = Key.of("k13", appId);
+        Key k23 = Key.of("k23", appId);
+        index.add(NETWORK, HOST_1, HOST_2, k12);
+        index.add(NETWORK, HOST_1, HOST_3, k13);
+        index.add(NETWORK, HOST_2, HOST_3, k23);
+        index.add(NETWORK_2, HOST_1, HOST_2, Key.of("other", appId));
+
+        assertEquals(ImmutableMap.of(HOST_2, k12, HOST_3, k13), index.keys(NETWORK, HOST_1));
+        assertEquals(ImmutableMap.of(HOST_1, k12, HOST_3, k23), index.keys(NETWORK, HOST_2));
+        assertEquals(3, index.size(NETWORK));
+        assertEquals(1, index.size(NETWORK_2));
+    }
+
+    @Test
+    public void testRemove() {
+        index.add(NETWORK, HOST_1, HOST_2, Key.of("k12", appId));
+        index.add(NETWORK, HOST_1, HOST_3, Key.of("k13", appId));
+
+        index.remove(NETWORK, HOST_2, HOST_1);
+        assertEquals(ImmutableSet.of(HOST_1, HOST_3), index.hosts(NETWORK));
+        assertTrue(index.keys(NETWORK, HOST_2).isEmpty());
+
+        index.remove(NETWORK, HOST_1, HOST_3);
+        assertTrue(index.hosts(NETWORK).isEmpty());
+        assertEquals(0, index.size(NETWORK));
+    }
+
+    @Test
+    public void testAddIfAbsent() {
+        Key k12 = Key.of("k12", appId);
+        assertTrue(index.addIfAbsent(NETWORK, HOST_1, HOST_2, k12));
+        assertFalse(index.addIfAbsent(NETWORK, HOST_2, HOST_1, Key.of("other", appId)));
+        assertEquals(k12, index.key(NETWORK, HOST_2, HOST_1));
+    }
+
+    @Test
+    public void testSingleHostKeys() {
+        Key k1 = Key.of("k1", appId);
+        index.add(NETWORK, HOST_1, HOST_1, k1);
+        index.add(NETWORK, HOST_1, HOST_2, Key.of("k12", appId));
+
+        assertEquals(k1, index.key(NETWORK, HOST_1, HOST_1));
+        assertEquals(2, index.size(NETWORK));
+
+        index.remove(NETWORK, HOST_1, HOST_1);
+        assertEquals(1, index.size(NETWORK));
+    }
+
+    @Test
+    public void testNetworkIntents() {
+        Key k12 = Key.of("k12", appId);
+        index.add(NETWORK, HOST_1, HOST_2, k12);
+        index.add(NETWORK_2, HOST_3, HOST_3, Key.of("k3", appId));
+
+        assertEquals(ImmutableSet.of(k12), index.intents(NETWORK).keySet());
+        assertEquals(ImmutableSet.of(NETWORK, NETWORK_2), index.intents().keySet());
+
+        // networks left without keys drop out of the index
+        index.remove(NETWORK, HOST_1, HOST_2);
+        index.remove(NETWORK_2);
+        assertTrue(index.networks().isEmpty());
+        index.add(NETWORK_2, HOST_1, HOST_2, k12);
+        assertEquals(1, index.size(NETWORK_2));
+    }
+}
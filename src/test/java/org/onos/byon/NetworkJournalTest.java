@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.TestApplicationId;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.HostId;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.MockIdGenerator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onos.byon.NetworkManagerTest.HOST_1;
+import static org.onos.byon.NetworkManagerTest.HOST_2;
+import static org.onos.byon.NetworkManagerTest.HOST_3;
+import static org.onos.byon.NetworkManagerTest.NETWORK;
+import static org.onos.byon.TestNetworks.waitFor;
+
+/**
+ * Test the network journal, its compaction and its replay on restart.
+ */
+public class NetworkJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final TestApplicationId appId = new TestApplicationId("journal-test");
+    private final Key oneTwo = Key.of("one-two", appId);
+    private final Key oneThree = Key.of("one-three", appId);
+    private final IdGenerator idGenerator = new MockIdGenerator();
+
+    private final NetworkChange created = new NetworkChange(1, NetworkEvent.Type.NETWORK_ADDED, NETWORK,
+                                                            ConnectivityMode.MESH, ImmutableSet.of(),
+                                                            ImmutableSet.of());
+    private final NetworkChange joined = new NetworkChange(2, NetworkEvent.Type.NETWORK_UPDATED, NETWORK,
+                                                           null, ImmutableSet.of(HOST_1, HOST_2),
+                                                           ImmutableSet.of(HOST_3));
+
+    @Before
+    public void setUp() {
+        Intent.bindIdGenerator(idGenerator);
+    }
+
+    @After
+    public void tearDown() {
+        Intent.unbindIdGenerator(idGenerator);
+    }
+
+    // index journaled by the journal last opened
+    private NetworkIntentIndex index;
+
+    private NetworkJournal open(int compactionThreshold) throws IOException {
+        AtomicReference<NetworkIntentIndex> opened = new AtomicReference<>();
+        NetworkJournal journal = new NetworkJournal(folder.getRoot(), appId, compactionThreshold, 10,
+                                                    () -> opened.get().intents());
+        journal.open();
+        opened.set(new NetworkIntentIndex(journal));
+        index = opened.get();
+        return journal;
+    }
+
+    // writes a few changes and intents to a journal that is left open
+    private void write(NetworkJournal journal) {
+        journal.changed(created);
+        journal.changed(joined);
+        index.add(NETWORK, HOST_1, HOST_2, oneTwo);
+        index.add(NETWORK, HOST_1, HOST_3, oneThree);
+        index.add("other", HOST_2, HOST_2, oneTwo);
+        index.remove(NETWORK, HOST_1, HOST_3);
+        index.remove("other");
+        journal.flush();
+    }
+
+    private void assertReplayed(NetworkJournal journal) {
+        assertEquals(ImmutableList.of(created, joined), journal.history(NETWORK));
+        // a snapshot does not keep which host of a pair came first
+        Map<String, Map<Key, Map.Entry<HostId, HostId>>> intents = journal.intents();
+        assertEquals(ImmutableSet.of(NETWORK), intents.keySet());
+        assertEquals(ImmutableSet.of(oneTwo), intents.get(NETWORK).keySet());
+        Map.Entry<HostId, HostId> pair = intents.get(NETWORK).get(oneTwo);
+        assertEquals(ImmutableSet.of(HOST_1, HOST_2), ImmutableSet.of(pair.getKey(), pair.getValue()));
+    }
+
+    @Test
+    public void testReplayJournal() throws IOException {
+        write(open(1000));
+        // not closed, as after a crash: the journal alone is replayed
+        assertTrue(new File(folder.getRoot(), NetworkJournal.JOURNAL).length() > 0);
+        assertFalse(new File(folder.getRoot(), NetworkJournal.SNAPSHOT).exists());
+        assertReplayed(open(1000));
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        NetworkJournal journal = open(3);
+        File journalFile = new File(folder.getRoot(), NetworkJournal.JOURNAL);
+        // records are only queued until the journal is flushed
+        index.add(NETWORK, HOST_1, HOST_2, oneTwo);
+        index.add(NETWORK, HOST_1, HOST_2, oneTwo);
+        index.add(NETWORK, HOST_1, HOST_2, oneTwo);
+        assertEquals(Integer.BYTES, journalFile.length());
+        write(journal);
+        assertTrue(new File(folder.getRoot(), NetworkJournal.SNAPSHOT).exists());
+        assertReplayed(open(3));
+
+        journal.close();
+        // a clean close leaves the snapshot alone to replay
+        assertEquals(Integer.BYTES, new File(folder.getRoot(), NetworkJournal.JOURNAL).length());
+        assertReplayed(open(3));
+    }
+
+    @Test
+    public void testSnapshotsStayLinear() throws IOException {
+        // with a threshold of one record, every flush could write a snapshot
+        NetworkJournal journal = open(1);
+        for (int i = 0; i < 5000; i++) {
+            index.add(NETWORK, HOST_1, HostId.hostId(MacAddress.valueOf(i + 1L), VlanId.NONE),
+                      Key.of("key-" + i, appId));
+            if (i % 50 == 49) {
+                journal.flush();
+            }
+        }
+        long snapshot = new File(folder.getRoot(), NetworkJournal.SNAPSHOT).length();
+        long journaled = new File(folder.getRoot(), NetworkJournal.JOURNAL).length();
+        assertTrue(snapshot > 0);
+        // a snapshot per flush would write about fifty times the index
+        assertTrue(journal.bytesWritten() < 6 * (snapshot + journaled));
+        assertEquals(5000, open(1).intents().get(NETWORK).size());
+    }
+
+    @Test
+    public void testTornRecord() throws IOException {
+        write(open(1000));
+        File file = new File(folder.getRoot(), NetworkJournal.JOURNAL);
+        long length = file.length();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{2, 0, 4, 't'});
+        }
+
+        NetworkJournal journal = open(1000);
+        assertReplayed(journal);
+        assertEquals(length, file.length());
+        journal.intentAdded(NETWORK, HOST_1, HOST_3, oneThree);
+        journal.flush();
+        assertEquals(2, open(1000).intents().get(NETWORK).size());
+    }
+
+    @Test
+    public void testHistorySize() {
+        NetworkJournal journal = new NetworkJournal(null, appId, 1000, 10, ImmutableMap::of);
+        journal.open();
+        for (int i = 0; i < 25; i++) {
+            journal.changed(new NetworkChange(i, NetworkEvent.Type.NETWORK_UPDATED, NETWORK, null,
+                                              ImmutableSet.of(HOST_1), ImmutableSet.of()));
+        }
+        List<NetworkChange> history = journal.history(NETWORK);
+        assertEquals(10, history.size());
+        assertEquals(15, history.get(0).time());
+        assertTrue(journal.history("other").isEmpty());
+    }
+
+    private NetworkManager newManager(DistributedNetworkStore store, TestIntentService intentService) {
+        NetworkManager manager = TestNetworks.newManager(store, intentService);
+        manager.journalDirectory = folder.getRoot();
+        new TestCluster().join(manager, "local");
+        return manager;
+    }
+
+    @Test
+    public void testManagerRestart() throws Exception {
+        DistributedNetworkStore store = TestNetworks.newStore();
+        AtomicBoolean activating = new AtomicBoolean();
+        TestIntentService intentService = new TestIntentService() {
+            @Override
+            public Iterable<Intent> getIntents() {
+                checkState(!activating.get(), "Intents scanned on activation");
+                return super.getIntents();
+            }
+        };
+
+        NetworkManager manager = newManager(store, intentService);
+        manager.activate(null);
+        manager.createNetwork(NETWORK, ConnectivityMode.MESH);
+        manager.addHosts(NETWORK, ImmutableSet.of(HOST_1, HOST_2, HOST_3));
+        waitFor(() -> intentService.getIntentCount() == 3);
+        manager.deactivate();
+
+        // the restarted manager restores its index without scanning the intents
+        manager = newManager(store, intentService);
+        activating.set(true);
+        manager.activate(null);
+        activating.set(false);
+        try {
+            List<NetworkChange> history = manager.getHistory(NETWORK);
+            assertEquals(NetworkEvent.Type.NETWORK_ADDED, history.get(0).type());
+            assertEquals(ConnectivityMode.MESH, history.get(0).mode());
+            assertEquals(ImmutableSet.of(HOST_1, HOST_2, HOST_3),
+                         history.stream().flatMap(change -> change.addedHosts().stream())
+                                 .collect(Collectors.toSet()));
+
+            manager.removeHost(NETWORK, HOST_3);
+            waitFor(() -> intentService.getIntentCount() == 1);
+            assertTrue(intentService.getIntent(manager.generateKey(NETWORK, HOST_1, HOST_2)) != null);
+        } finally {
+            manager.deactivate();
+            store.deactivate();
+        }
+    }
+}
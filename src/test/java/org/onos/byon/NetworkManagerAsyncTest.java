@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.HostId;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.MockIdGenerator;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.onos.byon.NetworkManagerTest.HOST_1;
+import static org.onos.byon.NetworkManagerTest.HOST_2;
+import static org.onos.byon.NetworkManagerTest.NETWORK;
+import static org.onos.byon.NetworkManagerTest.NETWORK_2;
+
+/**
+ * Test asynchronous network manager operations.
+ */
+public class NetworkManagerAsyncTest {
+
+    private final IdGenerator idGenerator = new MockIdGenerator();
+    private final TestIntentService intentService = new TestIntentService();
+    private final CountDownLatch storeBlocked = new CountDownLatch(1);
+    private NetworkManager manager;
+    private DistributedNetworkStore store;
+
+    @Before
+    public void setUp() {
+        Intent.bindIdGenerator(idGenerator);
+        // holds additions to the second network until released by the test
+        store = new DistributedNetworkStore() {
+            @Override
+            public boolean addHost(String network, HostId hostId) {
+                if (network.equals(NETWORK_2)) {
+                    try {
+                        storeBlocked.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.addHost(network, hostId);
+            }
+        };
+        TestNetworks.activate(store, new TestStorageService());
+        manager = TestNetworks.startLocal(TestNetworks.newManager(store, intentService));
+    }
+
+    @After
+    public void tearDown() {
+        storeBlocked.countDown();
+        manager.deactivate();
+        store.deactivate();
+        Intent.unbindIdGenerator(idGenerator);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testOrderedWithinNetwork() throws Exception {
+        List<CompletableFuture<Boolean>> results = Lists.newArrayList();
+        manager.createNetworkAsync(NETWORK, ConnectivityMode.MESH);
+        for (int i = 0; i < 50; i++) {
+            results.add(manager.addHostAsync(NETWORK, HOST_1, false));
+            results.add(manager.removeHostAsync(NETWORK, HOST_1, false));
+        }
+        results.add(manager.addHostAsync(NETWORK, HOST_1, false));
+
+        // every operation sees the outcome of the one before
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(await(result));
+        }
+        assertEquals(1, manager.getHosts(NETWORK).size());
+    }
+
+    @Test
+    public void testNetworksPipeline() throws Exception {
+        await(manager.createNetworkAsync(NETWORK, ConnectivityMode.MESH));
+        await(manager.createNetworkAsync(NETWORK_2, ConnectivityMode.MESH));
+
+        CompletableFuture<Boolean> blocked = manager.addHostAsync(NETWORK_2, HOST_1, false);
+        CompletableFuture<Boolean> queued = manager.addHostAsync(NETWORK_2, HOST_2, false);
+        assertTrue("other networks are not held up", await(manager.addHostAsync(NETWORK, HOST_1, false)));
+        assertFalse(blocked.isDone());
+        assertFalse(queued.isDone());
+
+        storeBlocked.countDown();
+        assertTrue(await(blocked));
+        assertTrue(await(queued));
+    }
+
+    @Test
+    public void testAwaitInstalled() throws Exception {
+        intentService.setAutoInstall(false);
+        await(manager.createNetworkAsync(NETWORK, ConnectivityMode.MESH));
+        await(manager.addHostAsync(NETWORK, HOST_1, true));
+
+        CompletableFuture<Boolean> installed = manager.addHostAsync(NETWORK, HOST_2, true);
+        CompletableFuture<Boolean> stored = manager.addHostAsync(NETWORK, HOST_2, false);
+        assertFalse("already in the network", await(stored));
+        assertFalse(installed.isDone());
+
+        // the intent may still be queued in the batcher
+        while (intentService.submitted.isEmpty()) {
+            Thread.sleep(10);
+        }
+        intentService.installHeld();
+        assertTrue(await(installed));
+    }
+
+    @Test
+    public void testIntentStats() throws Exception {
+        intentService.setAutoInstall(false);
+        await(manager.createNetworkAsync(NETWORK, ConnectivityMode.MESH));
+        await(manager.addHostAsync(NETWORK, HOST_1, false));
+        CompletableFuture<Boolean> installed = manager.addHostAsync(NETWORK, HOST_2, true);
+        while (intentService.submitted.isEmpty()) {
+            Thread.sleep(10);
+        }
+
+        NetworkIntentStats stats = manager.getIntentStats(NETWORK);
+        assertEquals(1, stats.pending());
+        assertEquals(0, stats.installed());
+        assertEquals(0, stats.converged());
+
+        intentService.installHeld();
+        assertTrue(await(installed));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (manager.getIntentStats(NETWORK).converged() == 0 &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        stats = manager.getIntentStats(NETWORK);
+        assertEquals(0, stats.pending());
+        assertEquals(1, stats.installed());
+        assertEquals(1, stats.converged());
+        assertEquals(0, stats.convergenceFailures());
+        assertTrue(stats.maxConvergenceMillis() > 0);
+    }
+
+    @Test
+    public void testMissingNetwork() throws Exception {
+        try {
+            await(manager.addHostAsync(NETWORK, HOST_1, false));
+            fail("Host added to a missing network");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NullPointerException);
+        }
+    }
+}
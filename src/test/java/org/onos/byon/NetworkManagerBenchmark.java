@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import org.onlab.packet.MacAddress;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.HostId;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.MockIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.onos.byon.NetworkStoreBenchmark.NETWORK;
+import static org.onos.byon.NetworkStoreBenchmark.THREADS;
+import static org.onos.byon.NetworkStoreBenchmark.hostIds;
+
+/**
+ * Measures the cost of connecting hosts through the network manager, with
+ * in-memory intent, core and storage services, as the network grows.
+ * <p>
+ * A mesh of n hosts takes n(n-1)/2 intents, so meshes are only built up
+ * to a thousand hosts. Run {@link #main} to cover 1 to 64 threads, or pass
+ * -t to JMH.
+ * </p>
+ * <p>
+ * Mutations of a network are serialized, so {@link #addRemoveHost} on the
+ * shared network does not scale with threads, while
+ * {@link #addRemoveOwnHost}, with a network per thread, should.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NetworkManagerBenchmark {
+
+    private static final AtomicLong NEXT_HOST = new AtomicLong(1L << 32);
+    private static final AtomicLong NEXT_NETWORK = new AtomicLong();
+
+    @Param({"10", "100", "1000"})
+    private int hosts;
+
+    @Param({"MESH", "HUB_AND_SPOKE"})
+    private ConnectivityMode mode;
+
+    private final IdGenerator idGenerator = new MockIdGenerator();
+    private DistributedNetworkStore store;
+    private NetworkManager manager;
+    private List<HostId> hostIds;
+
+    @Setup
+    public void setUp() {
+        Intent.bindIdGenerator(idGenerator);
+        store = TestNetworks.newStore();
+        manager = TestNetworks.startLocal(TestNetworks.newManager(store, new TestIntentService()));
+
+        hostIds = hostIds(hosts);
+        manager.createNetwork(NETWORK, mode);
+        manager.addHosts(NETWORK, hostIds);
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.deactivate();
+        store.deactivate();
+        Intent.unbindIdGenerator(idGenerator);
+    }
+
+    /**
+     * Host and networks owned by one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        HostId hostId;
+        String network;
+        String ownNetwork;
+
+        @Setup
+        public void setUp(NetworkManagerBenchmark benchmark) {
+            hostId = HostId.hostId(MacAddress.valueOf(NEXT_HOST.getAndIncrement()));
+            network = "bench-" + NEXT_NETWORK.getAndIncrement();
+            // a populated network no other thread changes
+            ownNetwork = "own-" + NEXT_NETWORK.getAndIncrement();
+            benchmark.manager.createNetwork(ownNetwork, benchmark.mode);
+            benchmark.manager.addHosts(ownNetwork, benchmark.hostIds);
+        }
+    }
+
+    /**
+     * Adds a host to the populated network, connecting it to the other
+     * hosts, and removes it again.
+     *
+     * @param state thread state
+     */
+    @Benchmark
+    public void addRemoveHost(ThreadState state) {
+        manager.addHost(NETWORK, state.hostId);
+        manager.removeHost(NETWORK, state.hostId);
+    }
+
+    /**
+     * Adds a host to a populated network of the thread's own, and removes
+     * it again.
+     *
+     * @param state thread state
+     */
+    @Benchmark
+    public void addRemoveOwnHost(ThreadState state) {
+        manager.addHost(state.ownNetwork, state.hostId);
+        manager.removeHost(state.ownNetwork, state.hostId);
+    }
+
+    /**
+     * Builds a whole network from scratch and tears it down.
+     *
+     * @param state thread state
+     */
+    @Benchmark
+    public void buildNetwork(ThreadState state) {
+        manager.createNetwork(state.network, mode);
+        manager.addHosts(state.network, hostIds);
+        manager.deleteNetwork(state.network);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder()
+                               .include(NetworkManagerBenchmark.class.getSimpleName())
+                               .threads(threads)
+                               .addProfiler(GCProfiler.class)
+                               .build()).run();
+        }
+    }
+}
@@ -20,6 +20,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
 import org.onosproject.TestApplicationId;
 import org.onosproject.core.IdGenerator;
 import org.onosproject.net.HostId;
@@ -88,4 +89,71 @@ public class NetworkManagerTest {
         assertFalse(manager.matches(NETWORK_2, Optional.of(HOST_1), intent));
         assertFalse(manager.matches(NETWORK_2, Optional.of(HOST_3), intent));
     }
+
+    @Test
+    public void testMatchesExactNetwork() {
+        Intent intent = HostToHostIntent.builder()
+                .key(manager.generateKey(NETWORK_2, HOST_1, HOST_2))
+                .appId(manager.appId)
+                .one(HOST_1)
+                .two(HOST_2)
+                .build();
+
+        // "test" is a prefix of "test2", but a different network
+        assertTrue(manager.matches(NETWORK_2, Optional.of(HOST_1), intent));
+        assertFalse(manager.matches(NETWORK, Optional.of(HOST_1), intent));
+        assertFalse(manager.matches(NETWORK, Optional.empty(), intent));
+    }
+
+    @Test
+    public void testCreateExistingNetwork() {
+        DistributedNetworkStore store = TestNetworks.newStore();
+        NetworkManager active = TestNetworks.startLocal(TestNetworks.newManager(store, new TestIntentService()));
+        try {
+            active.createNetwork(NETWORK, ConnectivityMode.HUB_AND_SPOKE);
+            active.createNetwork(NETWORK, ConnectivityMode.HUB_AND_SPOKE);
+            try {
+                active.createNetwork(NETWORK, ConnectivityMode.MESH);
+                fail("network re-created with another mode");
+            } catch (IllegalStateException e) {
+                assertEquals(ConnectivityMode.HUB_AND_SPOKE, active.getConnectivityMode(NETWORK));
+            }
+        } finally {
+            active.deactivate();
+            store.deactivate();
+        }
+    }
+
+    @Test
+    public void testKeyCodec() {
+        String key = IntentKeyCodec.encode(NETWORK, HOST_2, HOST_1);
+
+        assertEquals(key, IntentKeyCodec.encode(NETWORK, HOST_1, HOST_2));
+        assertEquals(NETWORK, IntentKeyCodec.network(key));
+        assertTrue(IntentKeyCodec.matches(key, NETWORK, HOST_1));
+        assertTrue(IntentKeyCodec.matches(key, NETWORK, HOST_2));
+        assertFalse(IntentKeyCodec.matches(key, NETWORK, HOST_3));
+        assertFalse(IntentKeyCodec.matches(key, "tes"));
+        assertNull(IntentKeyCodec.host(key));
+
+        String hostKey = IntentKeyCodec.encode(NETWORK, HOST_1);
+        assertEquals(HOST_1, IntentKeyCodec.host(hostKey));
+        assertTrue(IntentKeyCodec.matches(hostKey, NETWORK, HOST_1));
+        assertFalse(IntentKeyCodec.matches(hostKey, NETWORK, HOST_2));
+
+        // hosts are told apart by every octet of their MAC address and by their VLAN
+        HostId tagged = HostId.hostId(MacAddress.valueOf(0xab00000000f1L), VlanId.vlanId((short) 100));
+        HostId retagged = HostId.hostId(tagged.mac(), VlanId.vlanId((short) 10));
+        HostId any = HostId.hostId(tagged.mac(), VlanId.ANY);
+        String taggedKey = IntentKeyCodec.encode(NETWORK, tagged, HOST_1);
+        assertTrue(IntentKeyCodec.matches(taggedKey, NETWORK, tagged));
+        assertTrue(IntentKeyCodec.matches(taggedKey, NETWORK, HOST_1));
+        assertFalse(IntentKeyCodec.matches(taggedKey, NETWORK, retagged));
+        assertFalse(IntentKeyCodec.matches(taggedKey, NETWORK, any));
+        assertFalse(IntentKeyCodec.matches(taggedKey, NETWORK,
+                                           HostId.hostId(MacAddress.valueOf(0xab00000000f2L),
+                                                         VlanId.vlanId((short) 100))));
+        assertTrue(IntentKeyCodec.matches(IntentKeyCodec.encode(NETWORK, any), NETWORK, any));
+        assertFalse(IntentKeyCodec.matches(IntentKeyCodec.encode(NETWORK, any), NETWORK, tagged));
+    }
 }
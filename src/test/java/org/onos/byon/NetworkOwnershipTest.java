@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.MockIdGenerator;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.onos.byon.NetworkManagerTest.HOST_1;
+import static org.onos.byon.NetworkManagerTest.HOST_2;
+import static org.onos.byon.NetworkManagerTest.HOST_3;
+import static org.onos.byon.TestNetworks.waitFor;
+
+/**
+ * Test the spreading of the networks over the nodes of a cluster.
+ */
+public class NetworkOwnershipTest {
+
+    private static final int NETWORKS = 20;
+
+    private final IdGenerator idGenerator = new MockIdGenerator();
+    private final TestStorageService storageService = new TestStorageService();
+    private final TestIntentService intentService = new TestIntentService();
+    private final TestCluster cluster = new TestCluster();
+    private final List<String> networks = Lists.newArrayList();
+
+    private NetworkManager one;
+    private NetworkManager two;
+    private NodeId oneId;
+    private NodeId twoId;
+
+    @Before
+    public void setUp() {
+        Intent.bindIdGenerator(idGenerator);
+        one = newManager();
+        oneId = cluster.join(one, "one");
+        two = newManager();
+        twoId = cluster.join(two, "two");
+        one.activate(null);
+        two.activate(null);
+        for (int i = 0; i < NETWORKS; i++) {
+            networks.add("net-" + i);
+        }
+    }
+
+    // a manager with its own store, sharing the maps and intents of the cluster
+    private NetworkManager newManager() {
+        DistributedNetworkStore store = TestNetworks.activate(new DistributedNetworkStore(), storageService);
+        return TestNetworks.newManager(store, intentService);
+    }
+
+    @After
+    public void tearDown() {
+        for (NetworkManager manager : ImmutableSet.of(one, two)) {
+            manager.deactivate();
+            ((DistributedNetworkStore) manager.store).deactivate();
+        }
+        Intent.unbindIdGenerator(idGenerator);
+    }
+
+    private NetworkManager manager(NodeId nodeId) {
+        return nodeId.equals(oneId) ? one : two;
+    }
+
+    // number of intents of a network tracked by a node
+    private static long tracked(NetworkManager manager, String network) {
+        NetworkIntentStats stats = manager.getIntentStats(network);
+        return stats.pending() + stats.installed() + stats.failed();
+    }
+
+    // creates the networks with three hosts each, through either node
+    private void createNetworks() throws InterruptedException {
+        for (int i = 0; i < NETWORKS; i++) {
+            NetworkManager creator = i % 2 == 0 ? one : two;
+            NetworkManager adder = i % 2 == 0 ? two : one;
+            creator.createNetwork(networks.get(i));
+            adder.addHosts(networks.get(i), ImmutableSet.of(HOST_1, HOST_2));
+            creator.addHostAsync(networks.get(i), HOST_3, true).join();
+        }
+        waitFor(() -> intentService.getIntentCount() == NETWORKS * 3);
+    }
+
+    @Test
+    public void testOwnerDoesTheWork() throws Exception {
+        createNetworks();
+        int owned = 0;
+        for (String network : networks) {
+            NodeId owner = cluster.owner(one, network);
+            NetworkManager other = manager(owner).equals(one) ? two : one;
+            owned += owner.equals(oneId) ? 1 : 0;
+            waitFor(() -> tracked(manager(owner), network) == 3);
+            assertEquals("intents built off the owner", 0, tracked(other, network));
+        }
+        assertTrue("networks not spread over the nodes", owned > 0 && owned < NETWORKS);
+
+        // removals through either node withdraw the intents on the owner
+        for (int i = 0; i < NETWORKS; i++) {
+            (i % 2 == 0 ? one : two).removeHost(networks.get(i), HOST_1);
+        }
+        waitFor(() -> intentService.getIntentCount() == NETWORKS);
+        assertTrue(one.reconcile(true).isEmpty());
+        assertTrue(two.reconcile(true).isEmpty());
+    }
+
+    @Test
+    public void testFailuresReachTheCaller() {
+        String network = networks.stream()
+                .filter(n -> cluster.owner(one, n).equals(twoId))
+                .findFirst().get();
+        try {
+            one.addHost(network, HOST_1);
+            fail("added a host to a network that does not exist");
+        } catch (NullPointerException e) {
+            assertTrue(one.getNetworks(HOST_1).isEmpty());
+        }
+    }
+
+    @Test
+    public void testRebalance() throws Exception {
+        createNetworks();
+        String adopted = networks.stream()
+                .filter(n -> cluster.owner(one, n).equals(twoId))
+                .findFirst().get();
+
+        // node two leaves; node one takes over the networks and their intents
+        cluster.leave(twoId);
+        for (String network : networks) {
+            waitFor(() -> tracked(one, network) == 3);
+        }
+        assertTrue(two.reconcile(true).isEmpty());
+
+        // the adopted intents are withdrawn along with their hosts and networks
+        two.removeHost(adopted, HOST_1);
+        waitFor(() -> intentService.getIntentCount() == NETWORKS * 3 - 2);
+        two.deleteNetworkAsync(adopted).join();
+        assertEquals(NETWORKS * 3 - 3, intentService.getIntentCount());
+        assertTrue(one.reconcile(true).isEmpty());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.MacAddress;
+import org.onosproject.net.HostId;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test paged queries of networks and hosts.
+ */
+public class NetworkPagingTest {
+
+    private NetworkManager manager;
+    private DistributedNetworkStore store;
+
+    @Before
+    public void setUp() {
+        store = TestNetworks.newStore();
+
+        // paged reads only go through the store
+        manager = new NetworkManager();
+        manager.store = store;
+
+        for (int i = 0; i < 25; i++) {
+            store.putNetwork(String.format("blue%02d", i), ConnectivityMode.MESH);
+            store.putNetwork(String.format("red%02d", i), ConnectivityMode.MESH);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        store.deactivate();
+    }
+
+    private List<String> pageThrough(String prefix, int limit) {
+        List<String> names = Lists.newArrayList();
+        String after = null;
+        do {
+            Page<String> page = manager.getNetworks(prefix, after, limit);
+            assertTrue(page.items().size() <= limit);
+            names.addAll(page.items());
+            after = page.next();
+        } while (after != null);
+        return names;
+    }
+
+    @Test
+    public void testNetworkPages() {
+        List<String> all = pageThrough(null, 7);
+        assertEquals(50, all.size());
+        assertEquals("blue00", all.get(0));
+        assertEquals("red24", all.get(49));
+        assertEquals(Lists.newArrayList(store.getNetworks("")), all);
+
+        List<String> red = pageThrough("red", 5);
+        assertEquals(25, red.size());
+        assertTrue(red.stream().allMatch(n -> n.startsWith("red")));
+        assertEquals(25, manager.getNetworkCount("red"));
+        assertEquals(10, manager.getNetworkCount("blue1"));
+        assertEquals(0, manager.getNetworkCount("green"));
+        assertEquals(50, manager.getNetworkCount(null));
+
+        // an exact fit has no next page
+        Page<String> page = manager.getNetworks("blue", null, 25);
+        assertEquals(25, page.items().size());
+        assertFalse(page.hasNext());
+
+        // a cursor that has since been deleted still works
+        store.removeNetwork("red09");
+        page = manager.getNetworks("red", "red09", 3);
+        assertEquals(Lists.newArrayList("red10", "red11", "red12"), page.items());
+    }
+
+    @Test
+    public void testPrefixEdges() {
+        String max = String.valueOf(Character.MAX_VALUE);
+        store.putNetwork("a" + max, ConnectivityMode.MESH);
+        store.putNetwork("a" + max + "z", ConnectivityMode.MESH);
+        store.putNetwork("c", ConnectivityMode.MESH);
+        store.putNetwork(max + max, ConnectivityMode.MESH);
+
+        assertEquals(2, manager.getNetworkCount("a" + max));
+        assertEquals(1, manager.getNetworkCount(max));
+        assertEquals(1, manager.getNetworkCount("c"));
+    }
+
+    @Test
+    public void testHostPages() {
+        store.putNetwork("hosts", ConnectivityMode.MESH);
+        for (int i = 1; i <= 100; i++) {
+            store.addHost("hosts", HostId.hostId(MacAddress.valueOf(i)));
+        }
+
+        List<HostId> hosts = Lists.newArrayList();
+        HostId after = null;
+        do {
+            Page<HostId> page = manager.getHosts("hosts", after, 30);
+            hosts.addAll(page.items());
+            after = page.next();
+        } while (after != null);
+        assertEquals(Lists.newArrayList(store.getHosts("hosts")), hosts);
+
+        // the cursor need not be a member
+        store.removeHost("hosts", HostId.hostId(MacAddress.valueOf(50)));
+        Page<HostId> page = manager.getHosts("hosts", HostId.hostId(MacAddress.valueOf(50)), 1);
+        assertEquals(HostId.hostId(MacAddress.valueOf(51)), page.items().get(0));
+        assertNull(manager.getHosts("hosts", HostId.hostId(MacAddress.valueOf(100)), 10).next());
+    }
+}
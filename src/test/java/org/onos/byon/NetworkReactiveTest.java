@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.MacAddress;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.HostId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.criteria.Criterion;
+import org.onosproject.net.flow.criteria.EthCriterion;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.MockIdGenerator;
+import org.onosproject.net.packet.DefaultInboundPacket;
+import org.onosproject.net.packet.DefaultPacketContext;
+import org.onosproject.net.packet.PacketPriority;
+import org.onosproject.net.packet.PacketProcessor;
+import org.onosproject.net.packet.PacketServiceAdapter;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.onos.byon.NetworkManagerTest.HOST_1;
+import static org.onos.byon.NetworkManagerTest.HOST_2;
+import static org.onos.byon.NetworkManagerTest.HOST_3;
+import static org.onos.byon.NetworkManagerTest.NETWORK;
+import static org.onos.byon.TestNetworks.waitFor;
+
+/**
+ * Test the on-demand connection of the hosts of reactive networks.
+ */
+public class NetworkReactiveTest {
+
+    private static final HostId OUTSIDER = HostId.hostId(MacAddress.valueOf(4L));
+    private static final ConnectPoint CP = new ConnectPoint(DeviceId.deviceId("of:1"), PortNumber.portNumber(1));
+
+    private final IdGenerator idGenerator = new MockIdGenerator();
+    private final TestIntentService intentService = new TestIntentService();
+    private volatile PacketProcessor processor;
+    // source MACs of the packets requested
+    private final Set<MacAddress> requested = Sets.newConcurrentHashSet();
+    private NetworkManager manager;
+    private DistributedNetworkStore store;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        Intent.bindIdGenerator(idGenerator);
+        store = TestNetworks.newStore();
+        manager = TestNetworks.newManager(store, intentService);
+        manager.packetService = new PacketServiceAdapter() {
+            @Override
+            public void addProcessor(PacketProcessor packetProcessor, int priority) {
+                processor = packetProcessor;
+            }
+
+            @Override
+            public void removeProcessor(PacketProcessor packetProcessor) {
+                processor = null;
+            }
+
+            @Override
+            public void requestPackets(TrafficSelector selector, PacketPriority priority, ApplicationId appId) {
+                requested.add(((EthCriterion) selector.getCriterion(Criterion.Type.ETH_SRC)).mac());
+            }
+
+            @Override
+            public void cancelPackets(TrafficSelector selector, PacketPriority priority, ApplicationId appId) {
+                requested.remove(((EthCriterion) selector.getCriterion(Criterion.Type.ETH_SRC)).mac());
+            }
+        };
+        TestNetworks.startLocal(manager);
+
+        manager.createNetwork(NETWORK, ConnectivityMode.REACTIVE);
+        manager.addHosts(NETWORK, ImmutableSet.of(HOST_1, HOST_2, HOST_3));
+        waitFor(() -> requested.size() == 3 && processor != null);
+    }
+
+    @After
+    public void tearDown() {
+        manager.deactivate();
+        store.deactivate();
+        Intent.unbindIdGenerator(idGenerator);
+    }
+
+    // hands a packet from one host to another over to the packet processor
+    private void packet(HostId src, HostId dst) {
+        Ethernet eth = new Ethernet();
+        eth.setSourceMACAddress(src.mac())
+                .setDestinationMACAddress(dst.mac())
+                .setEtherType(Ethernet.TYPE_IPV4);
+        processor.process(new DefaultPacketContext(System.currentTimeMillis(),
+                                                   new DefaultInboundPacket(CP, eth, ByteBuffer.allocate(0)),
+                                                   null, false) {
+            @Override
+            public void send() {
+            }
+        });
+    }
+
+    private Set<Key> installedKeys() {
+        Set<Key> keys = Sets.newHashSet();
+        intentService.getIntents().forEach(intent -> keys.add(intent.key()));
+        return keys;
+    }
+
+    @Test
+    public void testFirstPacket() throws Exception {
+        assertEquals(0, intentService.getIntentCount());
+
+        Key oneTwo = manager.generateKey(NETWORK, HOST_1, HOST_2);
+        packet(HOST_1, HOST_2);
+        waitFor(() -> installedKeys().equals(ImmutableSet.of(oneTwo)));
+
+        // the reply, and traffic with hosts outside the network, add nothing
+        packet(HOST_2, HOST_1);
+        packet(HOST_1, OUTSIDER);
+        packet(HOST_3, HOST_3);
+        Thread.sleep(100);
+        assertEquals(ImmutableSet.of(oneTwo), installedKeys());
+        assertTrue(manager.reconcile(true).isEmpty());
+
+        Key twoThree = manager.generateKey(NETWORK, HOST_3, HOST_2);
+        packet(HOST_3, HOST_2);
+        waitFor(() -> installedKeys().equals(ImmutableSet.of(oneTwo, twoThree)));
+    }
+
+    @Test
+    public void testHostLeaves() throws Exception {
+        packet(HOST_1, HOST_2);
+        packet(HOST_1, HOST_3);
+        waitFor(() -> intentService.getIntentCount() == 2);
+
+        manager.removeHost(NETWORK, HOST_2);
+        waitFor(() -> installedKeys().equals(ImmutableSet.of(manager.generateKey(NETWORK, HOST_1, HOST_3))));
+
+        // a host that left is not connected again
+        packet(HOST_2, HOST_1);
+        Thread.sleep(100);
+        assertEquals(1, intentService.getIntentCount());
+    }
+
+    @Test
+    public void testPacketRequests() throws Exception {
+        // only the packets of the hosts of reactive networks are requested
+        assertEquals(ImmutableSet.of(HOST_1.mac(), HOST_2.mac(), HOST_3.mac()), requested);
+        manager.createNetwork("mesh", ConnectivityMode.MESH);
+        manager.addHosts("mesh", ImmutableSet.of(HOST_1, OUTSIDER));
+        manager.removeHost(NETWORK, HOST_3);
+        waitFor(() -> requested.equals(ImmutableSet.of(HOST_1.mac(), HOST_2.mac())));
+
+        manager.deleteNetwork(NETWORK);
+        waitFor(() -> requested.isEmpty() && processor == null);
+    }
+
+    @Test
+    public void testOtherModes() throws Exception {
+        manager.createNetwork("mesh", ConnectivityMode.MESH);
+        manager.addHosts("mesh", ImmutableSet.of(HOST_1, OUTSIDER));
+        waitFor(() -> intentService.getIntentCount() == 1);
+
+        // members of a mesh are already connected
+        packet(HOST_1, OUTSIDER);
+        Thread.sleep(100);
+        assertEquals(1, intentService.getIntentCount());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.MockIdGenerator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.onos.byon.NetworkManagerTest.HOST_1;
+import static org.onos.byon.NetworkManagerTest.HOST_2;
+import static org.onos.byon.NetworkManagerTest.HOST_3;
+import static org.onos.byon.NetworkManagerTest.NETWORK;
+import static org.onos.byon.NetworkManagerTest.NETWORK_2;
+import static org.onos.byon.TestNetworks.waitFor;
+
+/**
+ * Test reconciliation of the network memberships with the intents.
+ */
+public class NetworkReconcileTest {
+
+    private final IdGenerator idGenerator = new MockIdGenerator();
+    private final TestIntentService intentService = new TestIntentService();
+    private NetworkManager manager;
+    private DistributedNetworkStore store;
+
+    @Before
+    public void setUp() {
+        Intent.bindIdGenerator(idGenerator);
+        store = TestNetworks.newStore();
+        manager = TestNetworks.startLocal(TestNetworks.newManager(store, intentService));
+    }
+
+    @After
+    public void tearDown() {
+        manager.deactivate();
+        store.deactivate();
+        Intent.unbindIdGenerator(idGenerator);
+    }
+
+    @Test
+    public void testRepairDrift() throws Exception {
+        manager.createNetwork(NETWORK);
+        manager.addHosts(NETWORK, ImmutableSet.of(HOST_1, HOST_2, HOST_3));
+        manager.createNetwork(NETWORK_2);
+        manager.addHosts(NETWORK_2, ImmutableSet.of(HOST_1, HOST_2));
+        waitFor(() -> intentService.getIntentCount() == 4);
+
+        // an intent lost by the intent service...
+        Key lost = manager.generateKey(NETWORK, HOST_1, HOST_2);
+        intentService.withdraw(intentService.getIntent(lost));
+        // ...and a network removed without withdrawing its intents
+        Key orphan = manager.generateKey(NETWORK_2, HOST_1, HOST_2);
+        store.removeNetwork(NETWORK_2);
+
+        Map<String, IntentDrift> drifts = byNetwork(manager.reconcile(true));
+        assertEquals(2, drifts.size());
+        assertEquals(ImmutableSet.of(lost), drifts.get(NETWORK).missing());
+        assertTrue(drifts.get(NETWORK).orphaned().isEmpty());
+        assertEquals(3, drifts.get(NETWORK).expected());
+        assertEquals(ImmutableSet.of(orphan), drifts.get(NETWORK_2).orphaned());
+        assertNull("dry run repaired the drift", intentService.getIntent(lost));
+        assertNotNull("dry run repaired the drift", intentService.getIntent(orphan));
+
+        assertEquals(2, manager.reconcile(false).size());
+        waitFor(() -> intentService.getIntent(lost) != null && intentService.getIntent(orphan) == null);
+        waitFor(() -> manager.reconcile(true).isEmpty());
+        assertEquals(3, intentService.getIntentCount());
+    }
+
+    @Test
+    public void testNoDrift() throws Exception {
+        manager.createNetwork(NETWORK, ConnectivityMode.HUB_AND_SPOKE);
+        manager.addHosts(NETWORK, ImmutableSet.of(HOST_1, HOST_2, HOST_3));
+        manager.removeHost(NETWORK, HOST_1);
+        // only the spoke to the new hub remains
+        waitFor(() -> intentService.getIntentCount() == 1);
+        assertTrue(manager.reconcile(true).isEmpty());
+    }
+
+    private static Map<String, IntentDrift> byNetwork(List<IntentDrift> drifts) {
+        return drifts.stream().collect(Collectors.toMap(IntentDrift::network, d -> d));
+    }
+}
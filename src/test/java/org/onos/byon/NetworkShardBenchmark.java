@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import org.onlab.packet.MacAddress;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.net.HostId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the write throughput of tenants working on their own networks
+ * as the network store is split into more shards.
+ * <p>
+ * The in-memory maps commit their updates one at a time, taking
+ * {@link #COMMIT_MICROS} each, as a consistent map orders the updates of
+ * its partition; writes to different shards commit in parallel.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Threads(16)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NetworkShardBenchmark {
+
+    static final long COMMIT_MICROS = 50;
+
+    private static final AtomicLong NEXT_TENANT = new AtomicLong();
+
+    @Param({"1", "2", "4", "8", "16"})
+    private int shards;
+
+    private DistributedNetworkStore store;
+
+    @Setup
+    public void setUp() {
+        store = new DistributedNetworkStore();
+        store.storageService = new TestStorageService(TimeUnit.MICROSECONDS.toNanos(COMMIT_MICROS));
+        store.cfgService = new ComponentConfigAdapter();
+        store.networkShards = shards;
+        store.activate(null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.deactivate();
+    }
+
+    /**
+     * Tenant with a network of its own, one per benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Tenant {
+        String network;
+        HostId hostId;
+
+        @Setup
+        public void setUp(NetworkShardBenchmark benchmark) {
+            long tenant = NEXT_TENANT.getAndIncrement();
+            network = "tenant-" + tenant;
+            hostId = HostId.hostId(MacAddress.valueOf(tenant + 1));
+            benchmark.store.putNetwork(network, ConnectivityMode.MESH);
+        }
+    }
+
+    @Benchmark
+    public boolean addRemoveHost(Tenant tenant) {
+        store.addHost(tenant.network, tenant.hostId);
+        return store.removeHost(tenant.network, tenant.hostId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                           .include(NetworkShardBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+}
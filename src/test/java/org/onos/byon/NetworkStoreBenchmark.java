@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.Lists;
+import org.onlab.packet.MacAddress;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.net.HostId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the membership operations of the distributed network store,
+ * over in-memory consistent maps, as the network grows.
+ * <p>
+ * Run {@link #main} to cover 1 to 64 threads, or pass -t to JMH.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NetworkStoreBenchmark {
+
+    static final String NETWORK = "bench";
+    static final int[] THREADS = {1, 4, 16, 64};
+
+    // hosts outside of the range used to populate the networks
+    private static final AtomicLong NEXT_HOST = new AtomicLong(1L << 32);
+
+    @Param({"10", "100", "1000", "10000"})
+    private int hosts;
+
+    private DistributedNetworkStore store;
+
+    @Setup
+    public void setUp() {
+        store = new DistributedNetworkStore();
+        store.storageService = new TestStorageService();
+        store.cfgService = new ComponentConfigAdapter();
+        store.activate(null);
+        store.putNetwork(NETWORK, ConnectivityMode.MESH);
+        store.addHosts(NETWORK, hostIds(hosts));
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.deactivate();
+    }
+
+    /**
+     * Returns the given number of consecutive host ids.
+     *
+     * @param count number of hosts
+     * @return list of host ids
+     */
+    static List<HostId> hostIds(int count) {
+        List<HostId> hostIds = Lists.newArrayListWithCapacity(count);
+        for (int i = 1; i <= count; i++) {
+            hostIds.add(HostId.hostId(MacAddress.valueOf(i)));
+        }
+        return hostIds;
+    }
+
+    /**
+     * Host that joins and leaves the network, one per benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class ThreadHost {
+        HostId hostId;
+
+        @Setup
+        public void setUp() {
+            hostId = HostId.hostId(MacAddress.valueOf(NEXT_HOST.getAndIncrement()));
+        }
+    }
+
+    @Benchmark
+    public boolean addRemoveHost(ThreadHost host) {
+        store.addHost(NETWORK, host.hostId);
+        return store.removeHost(NETWORK, host.hostId);
+    }
+
+    @Benchmark
+    public Set<HostId> getHosts() {
+        return store.getHosts(NETWORK);
+    }
+
+    @Benchmark
+    public Set<String> getNetworks() {
+        return store.getNetworks();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public Set<HostId> readWhileWriting() {
+        return store.getHosts(NETWORK);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public boolean writeWhileReading(ThreadHost host) {
+        return addRemoveHost(host);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder()
+                               .include(NetworkStoreBenchmark.class.getSimpleName())
+                               .threads(threads)
+                               .addProfiler(GCProfiler.class)
+                               .build()).run();
+        }
+    }
+}
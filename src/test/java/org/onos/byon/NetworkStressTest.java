@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.MacAddress;
+import org.onosproject.core.IdGenerator;
+import org.onosproject.net.HostId;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.MockIdGenerator;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test concurrent membership changes through the network manager.
+ */
+public class NetworkStressTest {
+
+    private static final int THREADS = 32;
+    private static final int HOSTS = 64;
+    private static final String NETWORK = "stress";
+
+    private final IdGenerator idGenerator = new MockIdGenerator();
+    private final TestStorageService storageService = new TestStorageService();
+    private final TestIntentService intentService = new TestIntentService();
+    private final List<HostId> hostIds = Lists.newArrayList();
+
+    private DistributedNetworkStore store;
+    private NetworkManager manager;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        Intent.bindIdGenerator(idGenerator);
+        for (int i = 1; i <= HOSTS; i++) {
+            hostIds.add(HostId.hostId(MacAddress.valueOf(i)));
+        }
+
+        store = TestNetworks.activate(new DistributedNetworkStore(), storageService);
+        manager = TestNetworks.startLocal(TestNetworks.newManager(store, intentService));
+
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        store.deactivate();
+        Intent.unbindIdGenerator(idGenerator);
+    }
+
+    /**
+     * Runs the task on every thread at once and waits for all to finish.
+     *
+     * @param task task to run, given the index of its thread
+     */
+    private void race(ThreadTask task) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        List<Future<?>> futures = Lists.newArrayList();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                barrier.await();
+                task.run(thread);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testConcurrentAddHost() throws Exception {
+        manager.createNetwork(NETWORK);
+
+        // every thread adds every host, each in its own order
+        race(thread -> {
+            List<HostId> order = Lists.newArrayList(hostIds);
+            Collections.shuffle(order, new Random(thread));
+            order.forEach(hostId -> manager.addHost(NETWORK, hostId));
+        });
+        // flushes the intents still queued in the batcher
+        manager.deactivate();
+
+        assertEquals(HOSTS, manager.getHosts(NETWORK).size());
+        int pairs = HOSTS * (HOSTS - 1) / 2;
+        assertEquals(pairs, intentService.submitted.elementSet().size());
+        for (Multiset.Entry<Key> entry : intentService.submitted.entrySet()) {
+            assertEquals("intent " + entry.getElement() + " submitted more than once",
+                         1, entry.getCount());
+        }
+    }
+
+    @Test
+    public void testConcurrentAddRemoveHost() throws Exception {
+        manager.createNetwork(NETWORK);
+
+        // threads add and remove the same few hosts, so joins and leaves interleave
+        race(thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 1000; i++) {
+                HostId hostId = hostIds.get(random.nextInt(4));
+                if (random.nextBoolean()) {
+                    manager.addHost(NETWORK, hostId);
+                } else {
+                    manager.removeHost(NETWORK, hostId);
+                }
+            }
+        });
+        manager.deactivate();
+
+        // the intents left are exactly those of the hosts left
+        Set<Key> expected = Sets.newHashSet();
+        List<HostId> hosts = Lists.newArrayList(manager.getHosts(NETWORK));
+        for (int i = 0; i < hosts.size(); i++) {
+            for (int j = i + 1; j < hosts.size(); j++) {
+                expected.add(manager.generateKey(NETWORK, hosts.get(i), hosts.get(j)));
+            }
+        }
+        Set<Key> installed = Sets.newHashSet();
+        intentService.getIntents().forEach(intent -> installed.add(intent.key()));
+        assertEquals(expected, installed);
+    }
+
+    @Test
+    public void testAddHostWhileDeletingNetwork() throws Exception {
+        manager.createNetwork(NETWORK);
+
+        race(thread -> {
+            if (thread == 0) {
+                manager.deleteNetwork(NETWORK);
+                return;
+            }
+            for (HostId hostId : hostIds) {
+                try {
+                    manager.addHost(NETWORK, hostId);
+                } catch (NullPointerException e) {
+                    // the network is gone
+                    return;
+                }
+            }
+        });
+        manager.deactivate();
+
+        assertFalse(store.getNetworks().contains(NETWORK));
+        TestConsistentMap<Membership, Boolean> memberships =
+                storageService.getMap(DistributedNetworkStore.shardName("byon-memberships",
+                                                                        store.shard(NETWORK)));
+        assertTrue("memberships outlived their network",
+                   memberships.keySet().stream().noneMatch(m -> m.network().equals(NETWORK)));
+    }
+
+    // Task run by one of the racing threads
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Test;
+import org.onosproject.TestApplicationId;
+import org.onosproject.net.intent.Key;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the background withdrawal of the intents of a network.
+ */
+public class NetworkTeardownTest {
+
+    private static final String NETWORK = "teardown";
+    private static final int KEYS = 1000;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final List<Key> keys = Lists.newArrayList();
+
+    public NetworkTeardownTest() {
+        TestApplicationId appId = new TestApplicationId("teardown-test");
+        for (int i = 0; i < KEYS; i++) {
+            keys.add(Key.of(NETWORK + "," + i, appId));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static CompletableFuture<Void> failed() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException("rejected"));
+        return future;
+    }
+
+    @Test
+    public void testWithdrawAll() throws Exception {
+        Set<Key> withdrawn = Sets.newConcurrentHashSet();
+        NetworkTeardown teardown = new NetworkTeardown(NETWORK, keys, key -> {
+            assertTrue("withdrawn twice", withdrawn.add(key));
+            return keys.indexOf(key) % 100 == 0 ? failed() : CompletableFuture.completedFuture(null);
+        }, executor, 64, 4);
+        assertTrue(teardown.start());
+        teardown.future().get(5, TimeUnit.SECONDS);
+
+        assertEquals(KEYS, withdrawn.size());
+        TeardownStatus status = teardown.status();
+        assertEquals(TeardownStatus.State.DONE, status.state());
+        assertEquals(KEYS, status.total());
+        assertEquals(KEYS - KEYS / 100, status.withdrawn());
+        assertEquals(KEYS / 100, status.failed());
+        assertFalse("done teardowns cannot be resumed", teardown.start());
+        assertTrue(teardown.doneBefore(System.currentTimeMillis() + 1));
+        assertFalse(teardown.doneBefore(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1)));
+    }
+
+    @Test
+    public void testNothingToWithdraw() throws Exception {
+        NetworkTeardown teardown = new NetworkTeardown(NETWORK, Lists.newArrayList(),
+                                                       key -> failed(), executor, 64, 4);
+        teardown.start();
+        teardown.future().get(5, TimeUnit.SECONDS);
+        assertEquals(0, teardown.status().total());
+    }
+
+    @Test
+    public void testCancelAndResume() throws Exception {
+        // every withdrawal waits for a permit from the test
+        Semaphore permits = new Semaphore(0);
+        AtomicInteger calls = new AtomicInteger();
+        NetworkTeardown teardown = new NetworkTeardown(NETWORK, keys, key -> {
+            calls.incrementAndGet();
+            permits.acquireUninterruptibly();
+            return CompletableFuture.completedFuture(null);
+        }, executor, 10, 2);
+        teardown.start();
+        // both workers are in their first batch
+        while (calls.get() < 2) {
+            Thread.sleep(10);
+        }
+        assertTrue(teardown.cancel());
+        assertEquals(TeardownStatus.State.CANCELLED, teardown.status().state());
+
+        // lets the two batches in progress finish; nothing more is withdrawn
+        permits.release(KEYS);
+        Thread.sleep(100);
+        assertEquals(20, teardown.status().withdrawn());
+        assertFalse(teardown.isDone());
+        assertFalse(teardown.doneBefore(Long.MAX_VALUE));
+
+        assertTrue(teardown.start());
+        teardown.future().get(5, TimeUnit.SECONDS);
+        assertEquals(KEYS, teardown.status().withdrawn());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.onosproject.TestApplicationId;
+import org.onosproject.net.intent.Key;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onos.byon.NetworkManagerTest.HOST_1;
+import static org.onos.byon.NetworkManagerTest.HOST_2;
+import static org.onos.byon.NetworkManagerTest.HOST_3;
+import static org.onos.byon.NetworkManagerTest.NETWORK;
+
+/**
+ * Test the tracking of the idleness of reactive pairs.
+ */
+public class ReactivePairsTest {
+
+    private static final long IDLE_MS = 1000;
+
+    private final TestApplicationId appId = new TestApplicationId("reactive-test");
+    private final Key oneTwo = Key.of("one-two", appId);
+    private final Key oneThree = Key.of("one-three", appId);
+    private final AtomicLong now = new AtomicLong();
+    private final ReactivePairs pairs = new ReactivePairs(now::get);
+
+    @Test
+    public void testConnected() {
+        assertFalse(pairs.active(oneTwo));
+        assertTrue(pairs.connected(oneTwo, NETWORK, HOST_1, HOST_2));
+        assertFalse(pairs.connected(oneTwo, NETWORK, HOST_1, HOST_2));
+        assertTrue(pairs.active(oneTwo));
+        assertEquals(1, pairs.size());
+    }
+
+    @Test
+    public void testIdle() {
+        pairs.connected(oneTwo, NETWORK, HOST_1, HOST_2);
+        pairs.connected(oneThree, NETWORK, HOST_1, HOST_3);
+        assertTrue(pairs.idle(ImmutableMap.of(oneTwo, 100L), IDLE_MS).isEmpty());
+
+        // one-two keeps forwarding traffic, one-three never did
+        now.set(IDLE_MS);
+        ReactivePairs.Pair idle = pairs.idle(ImmutableMap.of(oneTwo, 200L, oneThree, 0L), IDLE_MS).get(0);
+        assertEquals(oneThree, idle.key());
+        assertEquals(ImmutableList.of(idle), pairs.idle(ImmutableMap.of(oneTwo, 300L), IDLE_MS));
+
+        // one-two stops, but its last change is recent
+        now.set(IDLE_MS + 10);
+        assertEquals(1, pairs.idle(ImmutableMap.of(oneTwo, 300L), IDLE_MS).size());
+        now.set(2 * IDLE_MS);
+        assertEquals(2, pairs.idle(ImmutableMap.of(oneTwo, 300L), IDLE_MS).size());
+
+        // a packet of the pair reaching the controller counts as traffic
+        pairs.active(oneThree);
+        assertEquals(ImmutableList.of(oneTwo),
+                     ImmutableList.copyOf(pairs.idle(ImmutableMap.of(), IDLE_MS).stream()
+                                                  .map(ReactivePairs.Pair::key).iterator()));
+    }
+
+    @Test
+    public void testForget() {
+        pairs.connected(oneTwo, NETWORK, HOST_1, HOST_2);
+        pairs.connected(oneThree, "other", HOST_1, HOST_3);
+        pairs.forget(oneTwo);
+        assertEquals(oneThree, pairs.pairs().get(0).key());
+        pairs.forget("other");
+        assertEquals(0, pairs.size());
+    }
+}
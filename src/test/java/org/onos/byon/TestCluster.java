@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.onlab.packet.IpAddress;
+import org.onosproject.cluster.ClusterServiceAdapter;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.net.intent.Key;
+import org.onosproject.net.intent.PartitionEvent;
+import org.onosproject.net.intent.PartitionEventListener;
+import org.onosproject.net.intent.PartitionService;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationServiceAdapter;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Cluster of local instances, standing in for the cluster, partition and
+ * messaging services of each instance. Every key is led by one of the
+ * member nodes, picked by the hash of the key, and messages are handed to
+ * the subscribers of the receiving node without being encoded.
+ */
+public class TestCluster {
+
+    private final List<NodeId> members = new CopyOnWriteArrayList<>();
+    private final Map<NodeId, Node> nodes = Maps.newConcurrentMap();
+
+    /**
+     * Adds a node to the cluster and wires its services into a manager.
+     *
+     * @param manager network manager of the node
+     * @param id node id
+     * @return id of the new node
+     */
+    NodeId join(NetworkManager manager, String id) {
+        Node node = new Node(NodeId.nodeId(id));
+        nodes.put(node.id, node);
+        manager.clusterService = node.clusterService;
+        manager.partitionService = node.partitionService;
+        manager.clusterCommunicator = node.communicator;
+        members.add(node.id);
+        leadersChanged();
+        return node.id;
+    }
+
+    /**
+     * Removes a node from the members, which no longer lead any key.
+     *
+     * @param id node id
+     */
+    void leave(NodeId id) {
+        members.remove(id);
+        leadersChanged();
+    }
+
+    /**
+     * Returns the node that owns a network.
+     *
+     * @param manager any network manager of the cluster
+     * @param network network name
+     * @return owner node id
+     */
+    NodeId owner(NetworkManager manager, String network) {
+        return leader(Key.of(network, manager.appId));
+    }
+
+    private NodeId leader(Key key) {
+        List<NodeId> current = Lists.newArrayList(members);
+        return current.isEmpty() ? null : current.get((int) Math.floorMod(key.hash(), (long) current.size()));
+    }
+
+    private void leadersChanged() {
+        PartitionEvent event = new PartitionEvent(PartitionEvent.Type.LEADER_CHANGED, "all");
+        nodes.values().forEach(node -> node.partitionListeners.forEach(l -> l.event(event)));
+    }
+
+    // Services of one instance of the cluster
+    private final class Node {
+        private final NodeId id;
+        private final ControllerNode controllerNode;
+        private final List<PartitionEventListener> partitionListeners = new CopyOnWriteArrayList<>();
+        private final Map<MessageSubject, Function<Object, CompletableFuture<Object>>> subscribers =
+                Maps.newConcurrentMap();
+
+        private Node(NodeId id) {
+            this.id = id;
+            this.controllerNode = new DefaultControllerNode(id, IpAddress.valueOf("127.0.0.1"));
+        }
+
+        private final ClusterServiceAdapter clusterService = new ClusterServiceAdapter() {
+            @Override
+            public ControllerNode getLocalNode() {
+                return controllerNode;
+            }
+        };
+
+        private final PartitionService partitionService = new PartitionService() {
+            @Override
+            public boolean isMine(Key intentKey) {
+                return id.equals(leader(intentKey));
+            }
+
+            @Override
+            public NodeId getLeader(Key intentKey) {
+                return leader(intentKey);
+            }
+
+            @Override
+            public void addListener(PartitionEventListener listener) {
+                partitionListeners.add(listener);
+            }
+
+            @Override
+            public void removeListener(PartitionEventListener listener) {
+                partitionListeners.remove(listener);
+            }
+        };
+
+        private final ClusterCommunicationServiceAdapter communicator =
+                new ClusterCommunicationServiceAdapter() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <M, R> CompletableFuture<R> sendAndReceive(M message, MessageSubject subject,
+                                                              Function<M, byte[]> encoder,
+                                                              Function<byte[], R> decoder,
+                                                              NodeId toNodeId) {
+                Node to = nodes.get(toNodeId);
+                Function<Object, CompletableFuture<Object>> subscriber =
+                        to == null ? null : to.subscribers.get(subject);
+                if (subscriber == null) {
+                    CompletableFuture<R> future = new CompletableFuture<>();
+                    future.completeExceptionally(new IllegalStateException("No subscriber on " + toNodeId));
+                    return future;
+                }
+                return (CompletableFuture<R>) subscriber.apply(message);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <M, R> void addSubscriber(MessageSubject subject, Function<byte[], M> decoder,
+                                             Function<M, R> handler, Function<R, byte[]> encoder,
+                                             Executor executor) {
+                subscribers.put(subject, message -> CompletableFuture.supplyAsync(
+                        () -> handler.apply((M) message), executor));
+            }
+
+            @Override
+            public void removeSubscriber(MessageSubject subject) {
+                subscribers.remove(subject);
+            }
+        };
+    }
+}
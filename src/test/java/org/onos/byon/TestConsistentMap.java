@@ -0,0 +1,325 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.onosproject.store.service.ConsistentMap;
+import org.onosproject.store.service.MapEvent;
+import org.onosproject.store.service.MapEventListener;
+import org.onosproject.store.service.Versioned;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory consistent map; every operation is atomic and listeners are
+ * notified synchronously. Updates can be made to take some time each and
+ * to commit one at a time, as they would through the replicated log of the
+ * map.
+ */
+public class TestConsistentMap<K, V> implements ConsistentMap<K, V> {
+
+    private final String name;
+    private final ConcurrentMap<K, Versioned<V>> map = Maps.newConcurrentMap();
+    private final List<MapEventListener<K, V>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong version = new AtomicLong();
+    private final long commitNanos;
+    private final Object commitLock = new Object();
+
+    /**
+     * Creates a new in-memory consistent map.
+     *
+     * @param name map name
+     */
+    public TestConsistentMap(String name) {
+        this(name, 0);
+    }
+
+    /**
+     * Creates a new in-memory consistent map whose updates commit one at a
+     * time.
+     *
+     * @param name map name
+     * @param commitNanos time each update takes to commit; 0 for none
+     */
+    public TestConsistentMap(String name, long commitNanos) {
+        this.name = name;
+        this.commitNanos = commitNanos;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    private Versioned<V> versioned(V value) {
+        commit();
+        return new Versioned<>(value, version.incrementAndGet());
+    }
+
+    // waits for an update to commit, after the updates before it
+    private void commit() {
+        if (commitNanos > 0) {
+            synchronized (commitLock) {
+                LockSupport.parkNanos(commitNanos);
+            }
+        }
+    }
+
+    private void notify(MapEvent.Type type, K key, Versioned<V> value) {
+        MapEvent<K, V> event = new MapEvent<>(name, type, key, value);
+        listeners.forEach(l -> l.event(event));
+    }
+
+    // notifies the listeners of the transition between two versions of an entry
+    private void changed(K key, Versioned<V> before, Versioned<V> after) {
+        if (before == after) {
+            return;
+        }
+        if (before == null) {
+            notify(MapEvent.Type.INSERT, key, after);
+        } else if (after == null) {
+            notify(MapEvent.Type.REMOVE, key, before);
+        } else {
+            notify(MapEvent.Type.UPDATE, key, after);
+        }
+    }
+
+    /**
+     * Returns the version of an entry, as read by a transaction.
+     *
+     * @param key entry key
+     * @return entry version; 0 if there is no entry
+     */
+    long readVersion(K key) {
+        Versioned<V> value = map.get(key);
+        return value == null ? 0 : value.version();
+    }
+
+    /**
+     * Checks that no entry a transaction read has changed since.
+     *
+     * @param reads versions of the entries the transaction read
+     * @return true if the transaction can commit
+     */
+    boolean validate(Map<K, Long> reads) {
+        return reads.entrySet().stream().allMatch(e -> readVersion(e.getKey()) == e.getValue());
+    }
+
+    /**
+     * Applies the updates of a committed transaction.
+     *
+     * @param updates new values of the entries; null to remove an entry
+     */
+    void apply(Map<K, V> updates) {
+        updates.forEach((key, value) -> {
+            Versioned<V> after = value == null ? null : new Versioned<>(value, version.incrementAndGet());
+            Versioned<V> before = after == null ? map.remove(key) : map.put(key, after);
+            changed(key, before, after);
+        });
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        return map.values().stream().anyMatch(v -> Objects.equals(v.value(), value));
+    }
+
+    @Override
+    public Versioned<V> get(K key) {
+        return map.get(key);
+    }
+
+    @Override
+    public Versioned<V> computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return computeIf(key, Objects::isNull, (k, v) -> mappingFunction.apply(k));
+    }
+
+    @Override
+    public Versioned<V> compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return computeIf(key, v -> true, remappingFunction);
+    }
+
+    @Override
+    public Versioned<V> computeIfPresent(K key,
+                                         BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return computeIf(key, Objects::nonNull, remappingFunction);
+    }
+
+    @Override
+    public Versioned<V> computeIf(K key, Predicate<? super V> condition,
+                                  BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        AtomicReference<Versioned<V>> before = new AtomicReference<>();
+        Versioned<V> after = map.compute(key, (k, existing) -> {
+            before.set(existing);
+            V value = existing == null ? null : existing.value();
+            if (!condition.test(value)) {
+                return existing;
+            }
+            V computed = remappingFunction.apply(k, value);
+            return computed == null ? null : versioned(computed);
+        });
+        changed(key, before.get(), after);
+        return after;
+    }
+
+    @Override
+    public Versioned<V> put(K key, V value) {
+        Versioned<V> after = versioned(value);
+        Versioned<V> before = map.put(key, after);
+        changed(key, before, after);
+        return before;
+    }
+
+    @Override
+    public Versioned<V> putAndGet(K key, V value) {
+        Versioned<V> after = versioned(value);
+        changed(key, map.put(key, after), after);
+        return after;
+    }
+
+    @Override
+    public Versioned<V> remove(K key) {
+        commit();
+        Versioned<V> before = map.remove(key);
+        changed(key, before, null);
+        return before;
+    }
+
+    @Override
+    public void clear() {
+        map.keySet().forEach(this::remove);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return ImmutableSet.copyOf(map.keySet());
+    }
+
+    @Override
+    public Collection<Versioned<V>> values() {
+        return map.values().stream().collect(Collectors.toList());
+    }
+
+    @Override
+    public Set<Map.Entry<K, Versioned<V>>> entrySet() {
+        return ImmutableMap.copyOf(map).entrySet();
+    }
+
+    @Override
+    public Versioned<V> putIfAbsent(K key, V value) {
+        Versioned<V> after = versioned(value);
+        Versioned<V> before = map.putIfAbsent(key, after);
+        if (before == null) {
+            changed(key, null, after);
+        }
+        return before;
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        commit();
+        Versioned<V> before = map.get(key);
+        if (before != null && Objects.equals(before.value(), value) && map.remove(key, before)) {
+            changed(key, before, null);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(K key, long version) {
+        commit();
+        Versioned<V> before = map.get(key);
+        if (before != null && before.version() == version && map.remove(key, before)) {
+            changed(key, before, null);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Versioned<V> before = map.get(key);
+        if (before == null || !Objects.equals(before.value(), oldValue)) {
+            return false;
+        }
+        Versioned<V> after = versioned(newValue);
+        if (map.replace(key, before, after)) {
+            changed(key, before, after);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean replace(K key, long oldVersion, V newValue) {
+        Versioned<V> before = map.get(key);
+        if (before == null || before.version() != oldVersion) {
+            return false;
+        }
+        Versioned<V> after = versioned(newValue);
+        if (map.replace(key, before, after)) {
+            changed(key, before, after);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void addListener(MapEventListener<K, V> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(MapEventListener<K, V> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public Map<K, V> asJavaMap() {
+        return Maps.transformValues(map, Versioned::value);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import org.onosproject.net.intent.Intent;
+import org.onosproject.net.intent.IntentEvent;
+import org.onosproject.net.intent.IntentListener;
+import org.onosproject.net.intent.IntentServiceAdapter;
+import org.onosproject.net.intent.IntentState;
+import org.onosproject.net.intent.Key;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory intent service that installs and withdraws intents right away,
+ * notifying its listeners on the calling thread. Installation can also be
+ * held back and completed by the test.
+ */
+public class TestIntentService extends IntentServiceAdapter {
+
+    private final Map<Key, Intent> intents = Maps.newConcurrentMap();
+    private final List<IntentListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Keys of all the intents ever submitted, with the number of submissions.
+     */
+    final Multiset<Key> submitted = ConcurrentHashMultiset.create();
+
+    private final Map<Key, Intent> held = Maps.newConcurrentMap();
+    private volatile boolean autoInstall = true;
+
+    /**
+     * Sets whether submitted intents are installed right away, or held
+     * until {@link #installHeld()} is called.
+     *
+     * @param autoInstall true to install intents right away
+     */
+    void setAutoInstall(boolean autoInstall) {
+        this.autoInstall = autoInstall;
+    }
+
+    /**
+     * Installs all the intents held back so far.
+     */
+    void installHeld() {
+        for (Key key : held.keySet()) {
+            Intent intent = held.remove(key);
+            if (intent != null) {
+                post(new IntentEvent(IntentEvent.Type.INSTALLED, intent));
+            }
+        }
+    }
+
+    @Override
+    public void submit(Intent intent) {
+        submitted.add(intent.key());
+        intents.put(intent.key(), intent);
+        if (autoInstall) {
+            post(new IntentEvent(IntentEvent.Type.INSTALLED, intent));
+        } else {
+            held.put(intent.key(), intent);
+        }
+    }
+
+    @Override
+    public void withdraw(Intent intent) {
+        intents.remove(intent.key());
+        post(new IntentEvent(IntentEvent.Type.WITHDRAWN, intent));
+    }
+
+    @Override
+    public Intent getIntent(Key key) {
+        return intents.get(key);
+    }
+
+    @Override
+    public Iterable<Intent> getIntents() {
+        return ImmutableList.copyOf(intents.values());
+    }
+
+    @Override
+    public long getIntentCount() {
+        return intents.size();
+    }
+
+    @Override
+    public IntentState getIntentState(Key key) {
+        return intents.containsKey(key) ? IntentState.INSTALLED : null;
+    }
+
+    @Override
+    public void addListener(IntentListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(IntentListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void post(IntentEvent event) {
+        listeners.forEach(l -> l.event(event));
+    }
+}
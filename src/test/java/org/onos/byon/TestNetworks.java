@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import org.onlab.metrics.MetricsManager;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.net.flow.FlowRuleServiceAdapter;
+import org.onosproject.net.host.HostServiceAdapter;
+import org.onosproject.net.intent.IntentService;
+import org.onosproject.net.packet.PacketServiceAdapter;
+import org.onosproject.store.service.StorageService;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Network stores and managers wired to in-memory services, shared by the
+ * tests and benchmarks of the manager.
+ */
+public final class TestNetworks {
+
+    private static final long WAIT_MS = 5000;
+
+    // non-instantiable
+    private TestNetworks() {
+    }
+
+    /**
+     * Activates a store on the maps of a storage service.
+     *
+     * @param store store to activate
+     * @param storageService storage service holding the maps
+     * @param <S> store type
+     * @return the store
+     */
+    static <S extends DistributedNetworkStore> S activate(S store, StorageService storageService) {
+        store.storageService = storageService;
+        store.cfgService = new ComponentConfigAdapter();
+        store.activate(null);
+        return store;
+    }
+
+    /**
+     * Creates and activates a store on maps of its own.
+     *
+     * @return active store
+     */
+    static DistributedNetworkStore newStore() {
+        return activate(new DistributedNetworkStore(), new TestStorageService());
+    }
+
+    /**
+     * Creates a manager of a store and an intent service, with adapters for
+     * the other services. Any service can be replaced before the manager is
+     * activated.
+     *
+     * @param store network store
+     * @param intentService intent service
+     * @return inactive manager
+     */
+    static NetworkManager newManager(NetworkStore store, IntentService intentService) {
+        NetworkManager manager = new NetworkManager();
+        manager.store = store;
+        manager.coreService = new TestCoreService();
+        manager.metricsService = new MetricsManager();
+        manager.intentService = intentService;
+        manager.cfgService = new ComponentConfigAdapter();
+        manager.hostService = new HostServiceAdapter();
+        manager.packetService = new PacketServiceAdapter();
+        manager.flowRuleService = new FlowRuleServiceAdapter();
+        manager.eventDispatcher = new TestEventDispatcher();
+        return manager;
+    }
+
+    /**
+     * Activates a manager as the only node of its cluster.
+     *
+     * @param manager manager to activate
+     * @return the manager
+     */
+    static NetworkManager startLocal(NetworkManager manager) {
+        new TestCluster().join(manager, "local");
+        manager.activate(null);
+        return manager;
+    }
+
+    /**
+     * Waits for a condition to hold, failing after a few seconds.
+     *
+     * @param condition condition to wait for
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onos.byon;
+
+import com.google.common.collect.Maps;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.store.service.ConsistentMap;
+import org.onosproject.store.service.ConsistentMapBuilder;
+import org.onosproject.store.service.Serializer;
+import org.onosproject.store.service.StorageServiceAdapter;
+import org.onosproject.store.service.TransactionContext;
+import org.onosproject.store.service.TransactionContextBuilder;
+import org.onosproject.store.service.TransactionalMap;
+import org.onosproject.store.service.Versioned;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Storage service that builds in-memory consistent maps. Maps built with
+ * the same name are shared, as they would be across cluster nodes.
+ */
+public class TestStorageService extends StorageServiceAdapter {
+
+    private final Map<String, TestConsistentMap<?, ?>> maps = Maps.newConcurrentMap();
+    private final long commitNanos;
+    private final AtomicLong transactionIds = new AtomicLong();
+
+    /**
+     * Creates a storage service whose maps update right away.
+     */
+    public TestStorageService() {
+        this(0);
+    }
+
+    /**
+     * Creates a storage service whose maps commit their updates one at a
+     * time, each taking the given time.
+     *
+     * @param commitNanos time each update takes to commit
+     */
+    public TestStorageService(long commitNanos) {
+        this.commitNanos = commitNanos;
+    }
+
+    @Override
+    public <K, V> ConsistentMapBuilder<K, V> consistentMapBuilder() {
+        return new TestConsistentMapBuilder<>();
+    }
+
+    @Override
+    public TransactionContextBuilder transactionContextBuilder() {
+        return new TestTransactionContextBuilder();
+    }
+
+    /**
+     * Returns a map previously built with the given name.
+     *
+     * @param name map name
+     * @param <K> key type
+     * @param <V> value type
+     * @return consistent map; null if none was built
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> TestConsistentMap<K, V> getMap(String name) {
+        return (TestConsistentMap<K, V>) maps.get(name);
+    }
+
+    private class TestConsistentMapBuilder<K, V> implements ConsistentMapBuilder<K, V> {
+        private String name;
+
+        @Override
+        public ConsistentMapBuilder<K, V> withName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        @Override
+        public ConsistentMapBuilder<K, V> withApplicationId(ApplicationId id) {
+            return this;
+        }
+
+        @Override
+        public ConsistentMapBuilder<K, V> withSerializer(Serializer serializer) {
+            return this;
+        }
+
+        @Override
+        public ConsistentMapBuilder<K, V> withPartitionsDisabled() {
+            return this;
+        }
+
+        @Override
+        public ConsistentMapBuilder<K, V> withUpdatesDisabled() {
+            return this;
+        }
+
+        @Override
+        public ConsistentMapBuilder<K, V> withRelaxedReadConsistency() {
+            return this;
+        }
+
+        @Override
+        public ConsistentMapBuilder<K, V> withPurgeOnUninstall() {
+            return this;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ConsistentMap<K, V> build() {
+            return (ConsistentMap<K, V>) maps.computeIfAbsent(
+                    name, k -> new TestConsistentMap<>(k, commitNanos));
+        }
+    }
+
+    private class TestTransactionContextBuilder implements TransactionContextBuilder {
+        @Override
+        public TransactionContextBuilder withPartitionsDisabled() {
+            return this;
+        }
+
+        @Override
+        public TransactionContext build() {
+            return new TestTransactionContext(transactionIds.incrementAndGet());
+        }
+    }
+
+    // Transaction committed optimistically: it fails if an entry it read
+    // has changed by the time it commits. Commits are serialized with each
+    // other, and take as long as a single map update.
+    private class TestTransactionContext implements TransactionContext {
+        private final long id;
+        private final Map<String, TestTransactionalMap<?, ?>> txMaps = Maps.newLinkedHashMap();
+        private boolean open;
+
+        TestTransactionContext(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public long transactionId() {
+            return id;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void begin() {
+            checkState(!open, "transaction already open");
+            open = true;
+        }
+
+        @Override
+        public boolean commit() {
+            checkState(open, "transaction not open");
+            open = false;
+            if (commitNanos > 0) {
+                LockSupport.parkNanos(commitNanos);
+            }
+            synchronized (TestStorageService.this) {
+                if (!txMaps.values().stream().allMatch(TestTransactionalMap::validate)) {
+                    return false;
+                }
+                txMaps.values().forEach(TestTransactionalMap::apply);
+                return true;
+            }
+        }
+
+        @Override
+        public void abort() {
+            open = false;
+            txMaps.clear();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, V> TransactionalMap<K, V> getTransactionalMap(String mapName, Serializer serializer) {
+            checkState(open, "transaction not open");
+            return (TransactionalMap<K, V>) txMaps.computeIfAbsent(mapName, name -> new TestTransactionalMap<>(
+                    (TestConsistentMap<K, V>) maps.computeIfAbsent(
+                            name, k -> new TestConsistentMap<>(k, commitNanos))));
+        }
+    }
+
+    private static class TestTransactionalMap<K, V> implements TransactionalMap<K, V> {
+        private final TestConsistentMap<K, V> map;
+        private final Map<K, Long> reads = Maps.newHashMap();
+        private final Map<K, V> updates = Maps.newLinkedHashMap();
+
+        TestTransactionalMap(TestConsistentMap<K, V> map) {
+            this.map = map;
+        }
+
+        boolean validate() {
+            return map.validate(reads);
+        }
+
+        void apply() {
+            map.apply(updates);
+        }
+
+        @Override
+        public V get(K key) {
+            if (updates.containsKey(key)) {
+                return updates.get(key);
+            }
+            reads.putIfAbsent(key, map.readVersion(key));
+            return Versioned.valueOrNull(map.get(key));
+        }
+
+        @Override
+        public boolean containsKey(K key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            V before = get(key);
+            updates.put(key, value);
+            return before;
+        }
+
+        @Override
+        public V remove(K key) {
+            V before = get(key);
+            if (before != null) {
+                updates.put(key, null);
+            }
+            return before;
+        }
+
+        @Override
+        public V putIfAbsent(K key, V value) {
+            V before = get(key);
+            if (before == null) {
+                updates.put(key, value);
+            }
+            return before;
+        }
+
+        @Override
+        public boolean remove(K key, V value) {
+            V before = get(key);
+            if (before != null && before.equals(value)) {
+                updates.put(key, null);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean replace(K key, V oldValue, V newValue) {
+            V before = get(key);
+            if (before != null && before.equals(oldValue)) {
+                updates.put(key, newValue);
+                return true;
+            }
+            return false;
+        }
+    }
+}